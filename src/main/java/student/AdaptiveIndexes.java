@@ -0,0 +1,218 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The sorted indexes of a table's numeric columns, built as the workload asks for them.
+ *
+ * Every condition on a numeric column evaluated is counted, by column and operation. Once
+ * a column has had as many conditions an index could answer as the threshold, its index is
+ * built on a background thread while those conditions keep scanning, then published; the
+ * next condition finds it and the planner weighs it as it would any index. A collection
+ * that is never filtered on a column never pays for its index.
+ *
+ * The counts are statistics, kept in a {@link LongAdder} per slot, so planners evaluating
+ * conditions on many threads do not contend on them.
+ *
+ * Indexes built up front, or read from an {@link IndexFile}, are simply published at once.
+ */
+final class AdaptiveIndexes {
+    /** Conditions on a column an index could answer before it is built, by default. */
+    static final int DEFAULT_THRESHOLD = 8;
+
+    /** Builds the indexes of every table, one at a time, at low priority. */
+    private static final ExecutorService BUILDER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "planner-index-builder");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    /** Number of operations. */
+    private static final int OPS = Operations.values().length;
+
+    /** The table indexed. */
+    private final GameTable table;
+    /** The published index of each column, by ordinal. */
+    private final AtomicReferenceArray<ColumnIndex> indexes;
+    /** The state of each column's index, by ordinal. */
+    private final AtomicReferenceArray<IndexStatus.State> states;
+    /** Conditions evaluated on each column, by ordinal. */
+    private final LongAdder[] queries;
+    /** Conditions an index could answer on each column until its build starts, by ordinal. */
+    private final LongAdder[] indexable;
+    /** Conditions evaluated on each column and operation, by column ordinal * OPS + op. */
+    private final LongAdder[] operations;
+    /** Time each index took to build, by ordinal. */
+    private final AtomicLongArray buildNanos;
+    /** Indexable conditions on a column before its index is built. */
+    private final AtomicInteger threshold = new AtomicInteger(DEFAULT_THRESHOLD);
+
+    /**
+     * Starts with no index built.
+     *
+     * @param table the table, whose values are read when an index is built
+     */
+    AdaptiveIndexes(GameTable table) {
+        this.table = table;
+        int columns = GameData.values().length;
+        this.indexes = new AtomicReferenceArray<>(columns);
+        this.states = new AtomicReferenceArray<>(columns);
+        this.queries = adders(columns);
+        this.indexable = adders(columns);
+        this.operations = adders(columns * OPS);
+        this.buildNanos = new AtomicLongArray(columns);
+        for (GameData column : GameData.values()) {
+            states.set(column.ordinal(), IndexStatus.State.NOT_BUILT);
+        }
+    }
+
+    /**
+     * Makes counters.
+     *
+     * @param n the number of counters
+     * @return the counters, all 0
+     */
+    private static LongAdder[] adders(int n) {
+        LongAdder[] result = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = new LongAdder();
+        }
+        return result;
+    }
+
+    /**
+     * Gets the index of a column, if it is ready.
+     *
+     * @param column the column
+     * @return the index, or null if it is not built
+     */
+    ColumnIndex get(GameData column) {
+        return indexes.get(column.ordinal());
+    }
+
+    /**
+     * Publishes an index built up front or read from a file.
+     *
+     * @param index the index
+     */
+    void put(ColumnIndex index) {
+        int c = index.getColumn().ordinal();
+        indexes.set(c, index);
+        states.set(c, IndexStatus.State.READY);
+    }
+
+    /**
+     * Sets the number of indexable conditions on a column before its index is built.
+     *
+     * @param queries the threshold, 1 to build on the first condition
+     * @throws IllegalArgumentException if the threshold is less than 1
+     */
+    void setThreshold(int queries) {
+        if (queries < 1) {
+            throw new IllegalArgumentException("Index threshold must be at least 1");
+        }
+        threshold.set(queries);
+        for (GameData column : GameData.values()) {
+            if (indexable[column.ordinal()].sum() >= queries) {
+                startBuild(column);
+            }
+        }
+    }
+
+    /**
+     * Counts a condition being evaluated, and starts building the column's index if it has
+     * now been asked for often enough.
+     *
+     * @param column the column
+     * @param op     the operation
+     */
+    void record(GameData column, Operations op) {
+        if (!GameTable.isNumeric(column)) {
+            return;
+        }
+        int c = column.ordinal();
+        queries[c].increment();
+        operations[c * OPS + op.ordinal()].increment();
+        if (ColumnIndex.supports(op) && states.get(c) == IndexStatus.State.NOT_BUILT) {
+            indexable[c].increment();
+            if (indexable[c].sum() >= threshold.get()) {
+                startBuild(column);
+            }
+        }
+    }
+
+    /**
+     * Hands a column's index to the builder, unless it is built or being built.
+     *
+     * @param column the column
+     */
+    private void startBuild(GameData column) {
+        if (states.compareAndSet(column.ordinal(), IndexStatus.State.NOT_BUILT,
+                IndexStatus.State.BUILDING)) {
+            BUILDER.execute(() -> build(column));
+        }
+    }
+
+    /**
+     * Builds and publishes a column's index.
+     *
+     * @param column the column
+     */
+    private void build(GameData column) {
+        int c = column.ordinal();
+        boolean built = false;
+        try {
+            long start = System.nanoTime();
+            double[] values = new double[table.size()];
+            for (int row = 0; row < values.length; row++) {
+                values[row] = table.value(row, column);
+            }
+            ColumnIndex index = new ColumnIndex(column, values);
+            buildNanos.set(c, System.nanoTime() - start);
+            indexes.set(c, index);
+            states.set(c, IndexStatus.State.READY);
+            built = true;
+        } catch (RuntimeException e) {
+            System.err.println("Unable to build the index of " + column + ": " + e);
+        } finally {
+            // an Error, such as running out of memory, must not leave it BUILDING forever
+            if (!built) {
+                states.set(c, IndexStatus.State.FAILED);
+            }
+        }
+    }
+
+    /**
+     * Describes every numeric column's index.
+     *
+     * @return the status of each, in column order
+     */
+    List<IndexStatus> status() {
+        List<IndexStatus> result = new ArrayList<>();
+        for (GameData column : GameData.values()) {
+            if (!GameTable.isNumeric(column)) {
+                continue;
+            }
+            int c = column.ordinal();
+            Map<Operations, Long> ops = new EnumMap<>(Operations.class);
+            for (Operations op : Operations.values()) {
+                long count = operations[c * OPS + op.ordinal()].sum();
+                if (count > 0) {
+                    ops.put(op, count);
+                }
+            }
+            result.add(new IndexStatus(column, states.get(c), queries[c].sum(), ops,
+                    buildNanos.get(c)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,473 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plans an arena event: packs the selected games into tables and time slots so as many
+ * attendees as possible are playing at any time.
+ *
+ * The event is cut into slots of equal length. A game takes as many consecutive slots at
+ * a table as its longest play time needs (the larger of its min and max time, so it is
+ * sure to finish) and seats between its min and max players. At no slot are more people
+ * seated than attend. Among schedules seating the same number, ones playing more different
+ * games are preferred.
+ *
+ * The search is simulated annealing: each chain starts from a random greedy schedule, then
+ * tries small changes (add a game, drop one, change its player count or swap its game)
+ * for the time budget, taking every improvement and, while hot, some changes for the worse
+ * to get out of local optima. Every change is scored incrementally, so a chain tries
+ * millions of changes a second however many tables there are. One chain runs per thread of
+ * a {@link ForkJoinPool}, each with its own seed, and the best schedule wins.
+ */
+public final class ArenaScheduler {
+    /** Score gained for each different game played. */
+    private static final double VARIETY_BONUS = 0.5;
+    /** Temperature at the start of the search. */
+    private static final double START_TEMPERATURE = 0.5;
+    /** Temperature at the end of the search. */
+    private static final double END_TEMPERATURE = 0.01;
+    /** Changes tried between looks at the clock. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /** Number of tables. */
+    private final int tables;
+    /** Number of people attending. */
+    private final int attendees;
+    /** Number of time slots. */
+    private final int slots;
+    /** Length of a slot in minutes. */
+    private final int slotMinutes;
+    /** Pool the chains run on. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for a scheduler running on the common pool.
+     *
+     * @param tables          the number of tables
+     * @param attendees       the number of people attending
+     * @param durationMinutes the length of the event
+     * @param slotMinutes     the length of a slot; the event holds as many as fit
+     */
+    public ArenaScheduler(int tables, int attendees, int durationMinutes, int slotMinutes) {
+        this(tables, attendees, durationMinutes, slotMinutes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for a scheduler.
+     *
+     * @param tables          the number of tables
+     * @param attendees       the number of people attending
+     * @param durationMinutes the length of the event
+     * @param slotMinutes     the length of a slot; the event holds as many as fit
+     * @param pool            the pool to run the search on, one chain per thread
+     */
+    public ArenaScheduler(int tables, int attendees, int durationMinutes, int slotMinutes,
+            ForkJoinPool pool) {
+        if (tables < 1 || attendees < 1 || slotMinutes < 1 || durationMinutes < slotMinutes) {
+            throw new IllegalArgumentException("Need at least one table, one attendee and one"
+                    + " slot within the event");
+        }
+        this.tables = tables;
+        this.attendees = attendees;
+        this.slots = durationMinutes / slotMinutes;
+        this.slotMinutes = slotMinutes;
+        this.pool = pool;
+    }
+
+    /**
+     * Schedules the games of a list.
+     *
+     * @param list         the games to choose from
+     * @param budgetMillis how long to search
+     * @return the best schedule found
+     */
+    public Schedule schedule(GameList list, long budgetMillis) {
+        return schedule(list.getGames(), budgetMillis, System.nanoTime());
+    }
+
+    /**
+     * Schedules a selection of games.
+     *
+     * Games that cannot be played at this event (more min players than attendees, no play
+     * time recorded, or longer than the event) are left out.
+     *
+     * @param games        the games to choose from
+     * @param budgetMillis how long to search
+     * @param seed         seeds the random choices of the chains
+     * @return the best schedule found
+     */
+    public Schedule schedule(List<BoardGame> games, long budgetMillis, long seed) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("Budget cannot be negative");
+        }
+        List<BoardGame> playable = new ArrayList<>();
+        for (BoardGame game : games) {
+            if (game.getMinPlayers() <= attendees && game.getMaxPlayers() >= 1
+                    && game.getMinPlayers() <= game.getMaxPlayers()
+                    && length(game) >= 1 && length(game) <= slots) {
+                playable.add(game);
+            }
+        }
+        if (playable.isEmpty()) {
+            return new Schedule(tables, slots, slotMinutes, attendees, List.of());
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<Callable<Chain>> chains = new ArrayList<>();
+        for (int i = 0; i < pool.getParallelism(); i++) {
+            Chain chain = new Chain(playable, seeds.split());
+            chains.add(() -> chain.run(deadline));
+        }
+        Chain best = null;
+        try {
+            for (Future<Chain> result : pool.invokeAll(chains)) {
+                Chain chain = result.get();
+                if (best == null || chain.bestScore > best.bestScore) {
+                    best = chain;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Scheduling interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Scheduling failed", e.getCause());
+        }
+        return best.toSchedule();
+    }
+
+    /**
+     * Counts the slots a game takes.
+     *
+     * @param game the game
+     * @return the slots needed to finish it, 0 if it has no play time
+     */
+    private int length(BoardGame game) {
+        int longest = Math.max(game.getMinPlayTime(), game.getMaxPlayTime());
+        return (longest + slotMinutes - 1) / slotMinutes;
+    }
+
+    /**
+     * One annealing run. Sessions are kept in parallel arrays, and every cell of the table
+     * by slot grid holds the session there or -1.
+     */
+    private final class Chain {
+        /** The games to choose from. */
+        private final BoardGame[] games;
+        /** Slots each game takes. */
+        private final int[] lengths;
+        /** Random choices. */
+        private final SplittableRandom random;
+        /** Session at each table and slot, or -1. */
+        private final int[][] grid = new int[tables][slots];
+        /** Players seated in each slot. */
+        private final int[] seated = new int[slots];
+        /** Times each game is scheduled. */
+        private final int[] uses;
+        /** Game of each session. */
+        private final int[] game;
+        /** Table of each session. */
+        private final int[] table;
+        /** First slot of each session. */
+        private final int[] start;
+        /** Players of each session. */
+        private final int[] players;
+        /** Number of sessions. */
+        private int count;
+        /** Score of the current schedule. */
+        private double score;
+        /** Sessions of the best schedule seen, as {game, table, start, players}. */
+        private int[][] best = new int[0][];
+        /** Score of the best schedule seen. */
+        private double bestScore;
+
+        /**
+         * Constructor for a chain.
+         *
+         * @param playable the games to choose from
+         * @param random   the chain's random choices
+         */
+        Chain(List<BoardGame> playable, SplittableRandom random) {
+            this.games = playable.toArray(new BoardGame[0]);
+            this.lengths = new int[games.length];
+            for (int g = 0; g < games.length; g++) {
+                lengths[g] = length(games[g]);
+            }
+            this.random = random;
+            this.uses = new int[games.length];
+            int capacity = tables * slots;
+            this.game = new int[capacity];
+            this.table = new int[capacity];
+            this.start = new int[capacity];
+            this.players = new int[capacity];
+            for (int[] row : grid) {
+                Arrays.fill(row, -1);
+            }
+        }
+
+        /**
+         * Fills the grid greedily, then anneals until the deadline.
+         *
+         * @param deadline when to stop, from {@link System#nanoTime()}
+         * @return this chain, holding its best schedule
+         */
+        Chain run(long deadline) {
+            for (int s = 0; s < slots; s++) {
+                for (int t = 0; t < tables; t++) {
+                    if (grid[t][s] < 0) {
+                        tryInsert(t, s, Double.POSITIVE_INFINITY);
+                    }
+                }
+            }
+            keepBest();
+            long begin = System.nanoTime();
+            double span = Math.max(1, deadline - begin);
+            double perfect = (double) attendees * slots
+                    + VARIETY_BONUS * Math.min(games.length, tables * slots);
+            double temperature = START_TEMPERATURE;
+            for (long step = 1; bestScore < perfect; step++) {
+                if (step % CHECK_INTERVAL == 0) {
+                    long now = System.nanoTime();
+                    if (now >= deadline) {
+                        break;
+                    }
+                    double progress = (now - begin) / span;
+                    temperature = START_TEMPERATURE
+                            * Math.pow(END_TEMPERATURE / START_TEMPERATURE, progress);
+                    if (score > bestScore) {
+                        keepBest();
+                    }
+                }
+                change(temperature);
+            }
+            if (score > bestScore) {
+                keepBest();
+            }
+            return this;
+        }
+
+        /**
+         * Tries one random change.
+         *
+         * @param temperature how readily to accept a worse schedule
+         */
+        private void change(double temperature) {
+            int move = count == 0 ? 0 : random.nextInt(4);
+            if (move == 0) {
+                tryInsert(random.nextInt(tables), random.nextInt(slots), temperature);
+                return;
+            }
+            int s = random.nextInt(count);
+            if (move == 1) {
+                double delta = -(double) players[s] * lengths[game[s]]
+                        - (uses[game[s]] == 1 ? VARIETY_BONUS : 0);
+                if (accept(delta, temperature)) {
+                    remove(s);
+                }
+            } else if (move == 2) {
+                int g = game[s];
+                int room = players[s] + free(start[s], lengths[g]);
+                int n = seats(g, room);
+                if (n > 0 && accept((double) (n - players[s]) * lengths[g], temperature)) {
+                    setPlayers(s, n);
+                }
+            } else {
+                trySwap(s, temperature);
+            }
+        }
+
+        /**
+         * Tries to start a random game at a free cell.
+         *
+         * @param t           the table
+         * @param slot        the first slot
+         * @param temperature how readily to accept a worse schedule
+         */
+        private void tryInsert(int t, int slot, double temperature) {
+            if (grid[t][slot] >= 0) {
+                return;
+            }
+            int g = random.nextInt(games.length);
+            int len = lengths[g];
+            if (slot + len > slots) {
+                return;
+            }
+            for (int s = slot; s < slot + len; s++) {
+                if (grid[t][s] >= 0) {
+                    return;
+                }
+            }
+            int n = seats(g, free(slot, len));
+            if (n == 0) {
+                return;
+            }
+            double delta = (double) n * len + (uses[g] == 0 ? VARIETY_BONUS : 0);
+            if (accept(delta, temperature)) {
+                add(g, t, slot, n);
+            }
+        }
+
+        /**
+         * Tries to play another game in a session's place, in no more slots than it has.
+         *
+         * @param s           the session
+         * @param temperature how readily to accept a worse schedule
+         */
+        private void trySwap(int s, double temperature) {
+            int old = game[s];
+            int g = random.nextInt(games.length);
+            if (g == old || lengths[g] > lengths[old]) {
+                return;
+            }
+            int room = players[s] + free(start[s], lengths[g]);
+            int n = seats(g, room);
+            if (n == 0) {
+                return;
+            }
+            double delta = (double) n * lengths[g] - (double) players[s] * lengths[old]
+                    - (uses[old] == 1 ? VARIETY_BONUS : 0) + (uses[g] == 0 ? VARIETY_BONUS : 0);
+            if (accept(delta, temperature)) {
+                int t = table[s];
+                int slot = start[s];
+                remove(s);
+                add(g, t, slot, n);
+            }
+        }
+
+        /**
+         * Picks a player count for a game, favouring the most that fit.
+         *
+         * @param g    the game
+         * @param room the most players that can be seated
+         * @return the count, 0 if the game cannot be seated
+         */
+        private int seats(int g, int room) {
+            int low = games[g].getMinPlayers();
+            int high = Math.min(games[g].getMaxPlayers(), room);
+            if (high < Math.max(1, low)) {
+                return 0;
+            }
+            low = Math.max(1, low);
+            return random.nextInt(4) == 0 ? low + random.nextInt(high - low + 1) : high;
+        }
+
+        /**
+         * Counts the seats left over a run of slots.
+         *
+         * @param slot the first slot
+         * @param len  the number of slots
+         * @return the fewest attendees not seated in any of them
+         */
+        private int free(int slot, int len) {
+            int room = attendees;
+            for (int s = slot; s < slot + len; s++) {
+                room = Math.min(room, attendees - seated[s]);
+            }
+            return room;
+        }
+
+        /**
+         * Decides whether to take a change.
+         *
+         * @param delta       the change in score
+         * @param temperature how readily to accept a worse schedule
+         * @return true to take it
+         */
+        private boolean accept(double delta, double temperature) {
+            return delta >= 0 || random.nextDouble() < Math.exp(delta / temperature);
+        }
+
+        /**
+         * Adds a session.
+         *
+         * @param g    the game
+         * @param t    the table
+         * @param slot the first slot
+         * @param n    the players
+         */
+        private void add(int g, int t, int slot, int n) {
+            int s = count++;
+            game[s] = g;
+            table[s] = t;
+            start[s] = slot;
+            players[s] = n;
+            for (int i = slot; i < slot + lengths[g]; i++) {
+                grid[t][i] = s;
+                seated[i] += n;
+            }
+            score += (double) n * lengths[g] + (uses[g] == 0 ? VARIETY_BONUS : 0);
+            uses[g]++;
+        }
+
+        /**
+         * Removes a session, moving the last one into its place.
+         *
+         * @param s the session
+         */
+        private void remove(int s) {
+            int g = game[s];
+            uses[g]--;
+            score -= (double) players[s] * lengths[g] + (uses[g] == 0 ? VARIETY_BONUS : 0);
+            for (int i = start[s]; i < start[s] + lengths[g]; i++) {
+                grid[table[s]][i] = -1;
+                seated[i] -= players[s];
+            }
+            int last = --count;
+            if (s != last) {
+                game[s] = game[last];
+                table[s] = table[last];
+                start[s] = start[last];
+                players[s] = players[last];
+                for (int i = start[s]; i < start[s] + lengths[game[s]]; i++) {
+                    grid[table[s]][i] = s;
+                }
+            }
+        }
+
+        /**
+         * Changes the players of a session.
+         *
+         * @param s the session
+         * @param n the new count
+         */
+        private void setPlayers(int s, int n) {
+            int len = lengths[game[s]];
+            for (int i = start[s]; i < start[s] + len; i++) {
+                seated[i] += n - players[s];
+            }
+            score += (double) (n - players[s]) * len;
+            players[s] = n;
+        }
+
+        /**
+         * Copies the current schedule as the best.
+         */
+        private void keepBest() {
+            best = new int[count][];
+            for (int s = 0; s < count; s++) {
+                best[s] = new int[] {game[s], table[s], start[s], players[s]};
+            }
+            bestScore = score;
+        }
+
+        /**
+         * Builds the best schedule seen.
+         *
+         * @return the schedule
+         */
+        Schedule toSchedule() {
+            List<Schedule.Session> sessions = new ArrayList<>(best.length);
+            for (int[] s : best) {
+                sessions.add(new Schedule.Session(games[s[0]], s[1], s[2], lengths[s[0]], s[3]));
+            }
+            return new Schedule(tables, slots, slotMinutes, attendees, sessions);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package student;
+
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the filters of a planner on a pool of threads, so a caller can start many queries
+ * and collect the results as they complete.
+ *
+ * Only a bounded number of queries are admitted at a time, running or waiting for a thread.
+ * A caller asking for more waits for one to finish, up to the admission timeout, then gets a
+ * future failed with a {@link RejectedExecutionException}, so a burst slows its callers down
+ * or is turned away instead of queuing without end.
+ *
+ * Queries with the same filter and order share one run: while one is in flight, asking for it
+ * again returns a copy of its future, without taking a slot, so a popular filter requested by
+ * many callers at once is computed once. Each copy can be cancelled on its own.
+ *
+ * The planner must be safe for concurrent queries, as {@link Planner} is. Close the async
+ * planner to stop its threads once the queries admitted have run.
+ */
+public final class AsyncPlanner implements Closeable {
+    /** Numbers the threads of all async planners. */
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    /** The planner running the queries. */
+    private final IPlanner planner;
+    /** Threads running the queries. */
+    private final ExecutorService executor;
+    /** A slot for every query admitted and not yet finished. */
+    private final Semaphore slots;
+    /** Most queries admitted at a time. */
+    private final int maxPending;
+    /** How long a caller waits for a slot. */
+    private final long admitNanos;
+    /** The queries in flight, by filter and order. */
+    private final ConcurrentHashMap<Key, CompletableFuture<QueryResult>> inFlight =
+            new ConcurrentHashMap<>();
+    /** Queries that joined one in flight. */
+    private final LongAdder coalesced = new LongAdder();
+    /** Queries turned away. */
+    private final LongAdder rejected = new LongAdder();
+    /** Set once closed. */
+    private volatile boolean closed;
+
+    /**
+     * Constructor for an async planner with a thread per processor, that queues up to four
+     * queries per thread and turns a caller away at once when they are all taken.
+     *
+     * @param planner the planner running the queries
+     */
+    public AsyncPlanner(IPlanner planner) {
+        this(planner, Runtime.getRuntime().availableProcessors(),
+                4 * Runtime.getRuntime().availableProcessors(), 0);
+    }
+
+    /**
+     * Constructor for an async planner.
+     *
+     * @param planner            the planner running the queries
+     * @param threads            the threads running queries
+     * @param maxPending         the most queries admitted at a time, running or waiting
+     * @param admitTimeoutMillis how long a caller waits for room before being turned away
+     */
+    public AsyncPlanner(IPlanner planner, int threads, int maxPending, long admitTimeoutMillis) {
+        if (planner == null || threads <= 0 || maxPending < threads || admitTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Invalid async planner settings");
+        }
+        this.planner = planner;
+        this.maxPending = maxPending;
+        this.slots = new Semaphore(maxPending);
+        this.admitNanos = TimeUnit.MILLISECONDS.toNanos(admitTimeoutMillis);
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "planner-async-" + THREADS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // the slots bound the queue, so it never grows past maxPending
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), factory);
+    }
+
+    /**
+     * Runs a filter, the games in name order.
+     *
+     * @param filter the filter, as for {@link IPlanner#filter(String)}
+     * @return the result once the query has run, failed if it was turned away or failed
+     */
+    public CompletableFuture<QueryResult> filter(String filter) {
+        return submit(filter == null ? "" : filter, null);
+    }
+
+    /**
+     * Runs a filter and sorts the games.
+     *
+     * @param filter the filter, as for {@link IPlanner#filter(String, SortOrder)}
+     * @param order  the order of the games
+     * @return the result once the query has run, failed if it was turned away or failed
+     */
+    public CompletableFuture<QueryResult> filter(String filter, SortOrder order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Sort order cannot be null");
+        }
+        return submit(filter == null ? "" : filter, order);
+    }
+
+    /**
+     * Joins the query in flight with the same filter and order, or starts one if there is
+     * room.
+     *
+     * @param filter the filter text
+     * @param order  the order, null for name order
+     * @return a copy of the query's future
+     */
+    private CompletableFuture<QueryResult> submit(String filter, SortOrder order) {
+        Key key = new Key(filter, order);
+        CompletableFuture<QueryResult> running = inFlight.get(key);
+        if (running != null) {
+            coalesced.increment();
+            return running.copy();
+        }
+        if (closed) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Async planner is closed"));
+        }
+        if (!admit()) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "Too many queries in flight: " + maxPending));
+        }
+        CompletableFuture<QueryResult> created = new CompletableFuture<>();
+        running = inFlight.putIfAbsent(key, created);
+        if (running != null) {
+            // another caller started the same query while this one waited for a slot
+            slots.release();
+            coalesced.increment();
+            return running.copy();
+        }
+        try {
+            executor.execute(() -> run(key, created));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            slots.release();
+            rejected.increment();
+            created.completeExceptionally(e);
+        }
+        return created.copy();
+    }
+
+    /**
+     * Takes a slot, waiting up to the admission timeout.
+     *
+     * @return true if a slot was taken
+     */
+    private boolean admit() {
+        if (slots.tryAcquire()) {
+            return true;
+        }
+        if (admitNanos == 0) {
+            return false;
+        }
+        try {
+            return slots.tryAcquire(admitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Runs a query on a pool thread and completes its future.
+     *
+     * @param key    the filter and order
+     * @param result the future to complete
+     */
+    private void run(Key key, CompletableFuture<QueryResult> result) {
+        QueryResult done = null;
+        Throwable failure = null;
+        try {
+            long start = System.nanoTime();
+            done = new QueryResult(key.filter, key.order,
+                    (key.order == null ? planner.filter(key.filter)
+                            : planner.filter(key.filter, key.order)).toList(),
+                    System.nanoTime() - start);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+        // leave the map and free the slot first, so a caller woken by the result can run
+        // the query afresh and finds room for it
+        inFlight.remove(key, result);
+        slots.release();
+        if (failure == null) {
+            result.complete(done);
+        } else {
+            result.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Get the number of queries that joined one already in flight.
+     *
+     * @return the coalesced queries
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Get the number of queries turned away.
+     *
+     * @return the rejected queries
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Get the number of queries admitted and not yet finished.
+     *
+     * @return the queries running or waiting for a thread
+     */
+    public int getPending() {
+        return maxPending - slots.availablePermits();
+    }
+
+    /**
+     * Stops admitting queries. Those already admitted still run, then the threads end.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdown();
+    }
+
+    /**
+     * A filter and order, the identity of a query.
+     */
+    private static final class Key {
+        /** The filter text. */
+        private final String filter;
+        /** The order, null for name order. */
+        private final SortOrder order;
+
+        /**
+         * Constructor for a key.
+         *
+         * @param filter the filter text
+         * @param order  the order, null for name order
+         */
+        Key(String filter, SortOrder order) {
+            this.filter = filter;
+            this.order = order;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return filter.equals(other.filter) && Objects.equals(order, other.order);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * filter.hashCode() + Objects.hashCode(order);
+        }
+    }
+}
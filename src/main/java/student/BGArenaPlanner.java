@@ -1,5 +1,17 @@
 package student;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.Set;
 
 /**
  * Main entry point for the program.
@@ -13,18 +25,200 @@ public final class BGArenaPlanner {
 
     }
 
+    /** Option to run a command file instead of the console. */
+    private static final String BATCH = "--batch";
+    /** Option to drop the output of the commands in a batch run. */
+    private static final String QUIET = "--quiet";
+    /** Option to write the batch summary to a file. */
+    private static final String SUMMARY = "--summary";
+    /** Option to choose where the planner keeps the games. */
+    private static final String STORAGE = "--storage";
+    /** Option to choose the directory of index files. */
+    private static final String INDEXES = "--indexes";
+    /** Option to build the indexes without index files. */
+    private static final String NO_INDEXES = "--no-indexes";
+    /** Option to keep the game list on disk between runs. */
+    private static final String LIST = "--list";
+    /** How to use the options. */
+    private static final String USAGE = "Usage: BGArenaPlanner [--storage heap|off_heap]"
+            + " [--indexes dir|--no-indexes] [--list file]"
+            + " [--batch file|- [--quiet] [--summary file]]";
+
     /**
      * Main entry point for the program.
      *
-     * @param args command line arguments - not used at this time.
+     * With no arguments, starts the console. With --batch, runs the commands of a file,
+     * or of standard input if the file is -, without prompts, then writes a JSON summary
+     * of their timings to the --summary file, or to standard output after the commands'
+     * own output. --quiet drops that output, leaving only the summary. --storage keeps the
+     * games on the heap or off it, see {@link Storage}; it defaults to the
+     * {@value Storage#PROPERTY} system property. --indexes keeps the index files shared
+     * with other planners in a directory, see {@link IndexFile}; it defaults to the
+     * {@value IndexFile#PROPERTY} system property, then to the directory of the collection
+     * when that is a file. --no-indexes builds the indexes without index files. --list
+     * opens the game list saved under that name, or starts it, and saves every change to
+     * it as it is made.
+     *
+     * @param args command line arguments, see above.
      */
     public static void main(String[] args) {
-        IPlanner planner = new Planner(GamesLoader.loadGamesFile(DEFAULT_COLLECTION));
-        IGameList list = new GameList();
-        ConsoleApp app = new ConsoleApp(list, planner);
-        app.start();
+        String script = null;
+        String summaryFile = null;
+        String listFile = null;
+        boolean quiet = false;
+        Path indexDir = IndexFile.configuredDirectory();
+        boolean indexFiles = true;
+        Storage storage;
+        try {
+            storage = Storage.configured();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (STORAGE.equals(args[i]) && i + 1 < args.length) {
+                try {
+                    storage = Storage.fromString(args[++i]);
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    System.err.println(USAGE);
+                    return;
+                }
+            } else if (LIST.equals(args[i]) && i + 1 < args.length) {
+                listFile = args[++i];
+            } else if (INDEXES.equals(args[i]) && i + 1 < args.length) {
+                indexDir = Path.of(args[++i]);
+            } else if (NO_INDEXES.equals(args[i])) {
+                indexFiles = false;
+            } else if (BATCH.equals(args[i]) && i + 1 < args.length) {
+                script = args[++i];
+            } else if (SUMMARY.equals(args[i]) && i + 1 < args.length) {
+                summaryFile = args[++i];
+            } else if (QUIET.equals(args[i])) {
+                quiet = true;
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+        if (script == null && (summaryFile != null || quiet)) {
+            System.err.println(USAGE);
+            return;
+        }
+
+        if (!indexFiles) {
+            indexDir = null;
+        } else if (indexDir == null) {
+            indexDir = besideCollection();
+        }
+        Session session;
+        try {
+            session = open(storage, indexDir, listFile);
+        } catch (IOException e) {
+            System.err.println("Unable to open list " + listFile + ": " + e.getMessage());
+            return;
+        }
+        try (GameList list = session.list) {
+            run(list, session.planner, script, summaryFile, quiet);
+        } catch (IOException e) {
+            System.err.println("Unable to close list " + listFile + ": " + e.getMessage());
+        }
     }
 
+    /**
+     * Loads the collection and builds the planner and game list over it. The loaded games
+     * are not returned: main runs for the whole session, and a set held there would keep
+     * every game on the heap even when the planner stores them off it.
+     *
+     * @param storage  where the planner keeps the games
+     * @param indexDir the directory of index files, or null
+     * @param listFile the saved game list, or null for one kept in memory
+     * @return the planner and the list
+     * @throws IOException if the saved list cannot be opened
+     */
+    private static Session open(Storage storage, Path indexDir, String listFile)
+            throws IOException {
+        Set<BoardGame> games = GamesLoader.loadGamesFile(DEFAULT_COLLECTION);
+        IPlanner planner = new Planner(games, PlannerMetrics.getDefault(), storage, indexDir);
+        GameList list = listFile == null ? new GameList() : new GameList(Path.of(listFile), games);
+        return new Session(planner, list);
+    }
 
+    /**
+     * The planner and game list of a run.
+     */
+    private static final class Session {
+        /** The planner. */
+        private final IPlanner planner;
+        /** The game list. */
+        private final GameList list;
+
+        /**
+         * Constructor for the session.
+         *
+         * @param planner the planner
+         * @param list    the game list
+         */
+        Session(IPlanner planner, GameList list) {
+            this.planner = planner;
+            this.list = list;
+        }
+    }
 
+    /**
+     * Runs the console, or the commands of a file, see {@link #main(String[])}.
+     *
+     * @param list        the game list
+     * @param planner     the planner
+     * @param script      the command file, - for standard input, null for the console
+     * @param summaryFile where to write the batch summary, null for standard output
+     * @param quiet       whether to drop the output of the commands in a batch run
+     */
+    private static void run(IGameList list, IPlanner planner, String script,
+            String summaryFile, boolean quiet) {
+        if (script == null) {
+            ConsoleApp app = new ConsoleApp(list, planner);
+            app.start();
+            return;
+        }
+
+        BatchSummary summary;
+        try (InputStream input = "-".equals(script) ? System.in
+                : Files.newInputStream(Path.of(script));
+                Scanner in = new Scanner(input, StandardCharsets.UTF_8)) {
+            PrintStream out = quiet ? new PrintStream(OutputStream.nullOutputStream())
+                    : new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+            summary = new ConsoleApp(list, planner, in, out, false).runBatch();
+        } catch (IOException e) {
+            System.err.println("Unable to read commands from " + script + ": " + e.getMessage());
+            return;
+        }
+        if (summaryFile == null) {
+            System.out.println(summary.toJson());
+            return;
+        }
+        try {
+            Files.writeString(Path.of(summaryFile), summary.toJson() + System.lineSeparator(),
+                    StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Unable to write summary to " + summaryFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the directory of the collection, where its index files go by default.
+     *
+     * @return the directory, or null if the collection is not a file, such as inside a jar
+     */
+    private static Path besideCollection() {
+        URL url = BGArenaPlanner.class.getResource(DEFAULT_COLLECTION);
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Path.of(url.toURI()).getParent();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
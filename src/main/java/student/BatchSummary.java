@@ -0,0 +1,226 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Timings of the commands of a batch run of the {@link ConsoleApp}, see
+ * {@link ConsoleApp#runBatch()}.
+ *
+ * Each command keeps its line in the script, its text, how long it took, how many games it
+ * printed and whether it was rejected. {@link #toJson()} writes them out with the totals and
+ * percentiles as one object per run, so runs can be compared by a tool.
+ */
+public final class BatchSummary {
+    /** The commands run, in order. */
+    private final List<Command> commands = new ArrayList<>();
+    /** Durations of the commands. */
+    private final LatencyHistogram latency = new LatencyHistogram();
+    /** Sum of the durations. */
+    private long totalNanos;
+    /** Games printed by all the commands. */
+    private long totalRows;
+    /** Commands rejected. */
+    private int failed;
+
+    /**
+     * Records a command.
+     *
+     * @param line    its line in the script, from 1
+     * @param text    the command as written
+     * @param nanos   how long it took
+     * @param rows    the games it printed
+     * @param ok      false if it was rejected
+     */
+    void record(int line, String text, long nanos, int rows, boolean ok) {
+        commands.add(new Command(line, text, nanos, rows, ok));
+        latency.record(nanos);
+        totalNanos += nanos;
+        totalRows += rows;
+        if (!ok) {
+            failed++;
+        }
+    }
+
+    /**
+     * Get the commands run.
+     *
+     * @return the commands, in script order
+     */
+    public List<Command> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    /**
+     * Get the number of commands rejected.
+     *
+     * @return the failed commands
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Get the time taken by all the commands.
+     *
+     * @return the sum of their durations in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Get the games printed by all the commands.
+     *
+     * @return the rows
+     */
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * Get the durations of the commands.
+     *
+     * @return the histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Writes the summary as a JSON object: the totals, the 50th, 99th percentile and largest
+     * durations, then every command.
+     *
+     * @return the JSON text, on one line
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"commands\":").append(commands.size())
+                .append(",\"failed\":").append(failed)
+                .append(",\"rows\":").append(totalRows)
+                .append(",\"totalNanos\":").append(totalNanos)
+                .append(",\"p50Nanos\":").append(latency.getPercentile(50))
+                .append(",\"p99Nanos\":").append(latency.getPercentile(99))
+                .append(",\"maxNanos\":").append(latency.getMax())
+                .append(",\"results\":[");
+        for (int i = 0; i < commands.size(); i++) {
+            Command c = commands.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"line\":").append(c.getLine()).append(",\"command\":");
+            appendString(sb, c.getText());
+            sb.append(",\"nanos\":").append(c.getNanos())
+                    .append(",\"rows\":").append(c.getRows())
+                    .append(",\"ok\":").append(c.isOk()).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * Appends a JSON string, quoted and escaped.
+     *
+     * @param sb   where to append it
+     * @param text the text
+     */
+    private static void appendString(StringBuilder sb, String text) {
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                sb.append('\\').append(ch);
+            } else if (ch < ' ') {
+                sb.append(String.format("\\u%04x", (int) ch));
+            } else {
+                sb.append(ch);
+            }
+        }
+        sb.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d commands, %d failed, %d rows, %.3f ms total, p50 %.3f ms,"
+                + " p99 %.3f ms", commands.size(), failed, totalRows, totalNanos / 1e6,
+                latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6);
+    }
+
+    /**
+     * One command of a batch run.
+     */
+    public static final class Command {
+        /** Line in the script, from 1. */
+        private final int line;
+        /** The command as written. */
+        private final String text;
+        /** How long it took. */
+        private final long nanos;
+        /** Games printed. */
+        private final int rows;
+        /** False if it was rejected. */
+        private final boolean ok;
+
+        /**
+         * Constructor for a command.
+         *
+         * @param line  its line in the script, from 1
+         * @param text  the command as written
+         * @param nanos how long it took
+         * @param rows  the games it printed
+         * @param ok    false if it was rejected
+         */
+        Command(int line, String text, long nanos, int rows, boolean ok) {
+            this.line = line;
+            this.text = text;
+            this.nanos = nanos;
+            this.rows = rows;
+            this.ok = ok;
+        }
+
+        /**
+         * Get the line in the script.
+         *
+         * @return the line, from 1
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * Get the command as written.
+         *
+         * @return the text
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Get how long the command took.
+         *
+         * @return the duration in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Get the games printed.
+         *
+         * @return the rows
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * Whether the command was accepted.
+         *
+         * @return false if it was rejected
+         */
+        public boolean isOk() {
+            return ok;
+        }
+    }
+}
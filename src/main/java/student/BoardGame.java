@@ -1,6 +1,7 @@
 package student;
 
 
+import java.util.Formatter;
 import java.util.List;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -165,27 +166,52 @@ public class BoardGame {
      * @return value of Name (value) pair
      */
     public String toStringWithInfo(GameData col) {
+        StringBuilder sb = new StringBuilder();
+        appendWithInfo(sb, new Formatter(sb), col);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the Name (value) pair, as {@link #toStringWithInfo(GameData)} returns it, so a
+     * long listing can be built in one buffer.
+     * 
+     * @param sb        where to append
+     * @param formatter a formatter writing to sb, for the decimal values
+     * @param col       GameData enum value
+     */
+    void appendWithInfo(StringBuilder sb, Formatter formatter, GameData col) {
+        sb.append(name);
         switch (col) {
-            case NAME:
-                return name;
             case RATING:
-                return String.format("%s (%.2f)", name, averageRating);
+                sb.append(" (");
+                formatter.format("%.2f", averageRating);
+                sb.append(')');
+                break;
             case DIFFICULTY:
-                return String.format("%s (%.2f)", name, difficulty);
+                sb.append(" (");
+                formatter.format("%.2f", difficulty);
+                sb.append(')');
+                break;
             case RANK:
-                return String.format("%s (%d)", name, rank);
+                sb.append(" (").append(rank).append(')');
+                break;
             case MIN_PLAYERS:
-                return String.format("%s (%d)", name, minPlayers);
+                sb.append(" (").append(minPlayers).append(')');
+                break;
             case MAX_PLAYERS:
-                return String.format("%s (%d)", name, maxPlayers);
+                sb.append(" (").append(maxPlayers).append(')');
+                break;
             case MIN_TIME:
-                return String.format("%s (%d)", name, minPlayTime);
+                sb.append(" (").append(minPlayTime).append(')');
+                break;
             case MAX_TIME:
-                return String.format("%s (%d)", name, maxPlayTime);
+                sb.append(" (").append(maxPlayTime).append(')');
+                break;
             case YEAR:
-                return String.format("%s (%d)", name, yearPublished);
+                sb.append(" (").append(yearPublished).append(')');
+                break;
             default:
-                return name;
+                break;
         }
     }
 
@@ -0,0 +1,245 @@
+package student;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A sorted index over a numeric column.
+ *
+ * Rows are kept in order of their value, so every comparison except != and IN is a single
+ * contiguous range found with two binary searches. IN is one such range per member.
+ *
+ * The entries are read through buffers, so they can live in an {@link IndexFile}.
+ */
+public final class ColumnIndex {
+    /** The column indexed. */
+    private final GameData column;
+    /** Values in ascending order. */
+    private final DoubleBuffer sortedValues;
+    /** Row of each entry in sortedValues. */
+    private final IntBuffer rowIds;
+    /** Number of entries. */
+    private final int size;
+
+    /**
+     * Builds the index for a column.
+     *
+     * @param column the column indexed
+     * @param values the value of every row
+     */
+    public ColumnIndex(GameData column, double[] values) {
+        this.column = column;
+        int n = values.length;
+        // sort (value, row) pairs; ties keep row order, so ranges come out in name order
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sorted = new double[n];
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = order[i];
+            sorted[i] = values[order[i]];
+        }
+        this.sortedValues = DoubleBuffer.wrap(sorted);
+        this.rowIds = IntBuffer.wrap(rows);
+        this.size = n;
+    }
+
+    /**
+     * Reads the index for a column from a file, see {@link #save(IndexFile.Writer)}.
+     *
+     * @param column the column indexed
+     * @param in     the file, positioned at this index
+     * @throws IllegalArgumentException if the file does not hold an index here
+     */
+    ColumnIndex(GameData column, IndexFile in) {
+        this.column = column;
+        this.sortedValues = in.doubles();
+        this.rowIds = in.ints();
+        this.size = rowIds.limit();
+        if (sortedValues.limit() != size) {
+            throw new IllegalArgumentException("Index of " + column + " is damaged");
+        }
+    }
+
+    /**
+     * Writes the index, for {@link #ColumnIndex(GameData, IndexFile)} to read back.
+     *
+     * @param out where to write
+     */
+    void save(IndexFile.Writer out) {
+        out.doubles(sortedValues);
+        out.ints(rowIds);
+    }
+
+    /**
+     * Copies the values of the column, in ascending order.
+     *
+     * @return the values
+     */
+    double[] sortedValues() {
+        double[] result = new double[size];
+        sortedValues.get(0, result);
+        return result;
+    }
+
+    /**
+     * Get the column indexed.
+     *
+     * @return the column
+     */
+    public GameData getColumn() {
+        return column;
+    }
+
+    /**
+     * Numbers the distinct values of the column in ascending order, 0 for the smallest.
+     *
+     * @param ranks receives the number of every row's value
+     * @return the number of distinct values
+     */
+    public int ranks(int[] ranks) {
+        int rank = -1;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || Double.compare(sortedValues.get(i), sortedValues.get(i - 1)) != 0) {
+                rank++;
+            }
+            ranks[rowIds.get(i)] = rank;
+        }
+        return rank + 1;
+    }
+
+    /**
+     * Whether the index can answer the comparison with range lookups.
+     *
+     * @param op the comparison
+     * @return true if {@link #lookup(Operations, double[])} supports it
+     */
+    public static boolean supports(Operations op) {
+        switch (op) {
+            case BETWEEN:
+            case IN:
+            case EQUALS:
+            case GREATER_THAN:
+            case GREATER_THAN_EQUALS:
+            case LESS_THAN:
+            case LESS_THAN_EQUALS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Finds every row matching the comparison.
+     *
+     * @param op      the comparison, one that {@link #supports(Operations)}
+     * @param numbers the parsed value, see {@link Filters#parseNumbers}
+     * @return the matching rows
+     */
+    public BitSet lookup(Operations op, double[] numbers) {
+        BitSet result = new BitSet(size);
+        // nothing compares true with NaN, which the searches would place before every value
+        if (op == Operations.IN) {
+            for (double member : numbers) {
+                if (!Double.isNaN(member)) {
+                    addRange(result, lowerBound(member), upperBound(member));
+                }
+            }
+            return result;
+        }
+        double value = numbers[0];
+        if (Double.isNaN(value) || op == Operations.BETWEEN && Double.isNaN(numbers[1])) {
+            return result;
+        }
+        int from;
+        int to;
+        switch (op) {
+            case BETWEEN:
+                from = lowerBound(value);
+                to = Math.max(from, upperBound(numbers[1]));
+                break;
+            case EQUALS:
+                from = lowerBound(value);
+                to = upperBound(value);
+                break;
+            case GREATER_THAN:
+                from = upperBound(value);
+                to = size;
+                break;
+            case GREATER_THAN_EQUALS:
+                from = lowerBound(value);
+                to = size;
+                break;
+            case LESS_THAN:
+                from = 0;
+                to = lowerBound(value);
+                break;
+            case LESS_THAN_EQUALS:
+                from = 0;
+                to = upperBound(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Index does not support " + op);
+        }
+        addRange(result, from, to);
+        return result;
+    }
+
+    /**
+     * Sets the rows of a range of index entries.
+     *
+     * @param result where to set the rows
+     * @param from   first entry, inclusive
+     * @param to     last entry, exclusive
+     */
+    private void addRange(BitSet result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result.set(rowIds.get(i));
+        }
+    }
+
+    /**
+     * Finds the first entry not less than the value.
+     *
+     * @param value the value
+     * @return the position in sortedValues
+     */
+    private int lowerBound(double value) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedValues.get(mid) < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Finds the first entry greater than the value.
+     *
+     * @param value the value
+     * @return the position in sortedValues
+     */
+    private int upperBound(double value) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedValues.get(mid) <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
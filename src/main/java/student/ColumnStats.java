@@ -0,0 +1,299 @@
+package student;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Statistics about the values of a single column, used to estimate how many rows a
+ * condition will match.
+ *
+ * Numeric columns keep their minimum, maximum and number of distinct values, plus a
+ * histogram. Columns with few distinct values (players, times) keep an exact count per
+ * value; the others keep an equal height histogram, which copes with skewed columns such
+ * as a publication year that runs from -3500 to today. The name column keeps the number
+ * of distinct names and a small, evenly spaced sample of names, as substring matches
+ * cannot be estimated from a histogram.
+ */
+public final class ColumnStats {
+    /** Number of buckets in an equal height histogram. */
+    private static final int BUCKETS = 32;
+    /** Columns with at most this many distinct values keep an exact count per value. */
+    private static final int MAX_EXACT = 64;
+    /** Number of names kept in the sample. */
+    private static final int SAMPLE_SIZE = 128;
+
+    /** The column described. */
+    private final GameData column;
+    /** Number of rows. */
+    private final int rows;
+    /** Number of distinct values. */
+    private final int distinct;
+    /** Smallest value, numeric columns only. */
+    private final double min;
+    /** Largest value, numeric columns only. */
+    private final double max;
+    /**
+     * Numeric columns only. Either every distinct value (exact histogram), or the lower
+     * bound of each bucket followed by the maximum (equal height histogram).
+     */
+    private final double[] bounds;
+    /** Rows per distinct value for an exact histogram, null otherwise. */
+    private final int[] counts;
+    /** Sample of names, name column only. */
+    private final String[] sample;
+
+    /**
+     * Builds the statistics for a numeric column.
+     *
+     * @param column the column
+     * @param values the value of every row
+     */
+    public ColumnStats(GameData column, double[] values) {
+        this.column = column;
+        this.rows = values.length;
+        this.sample = null;
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int count = sorted.length == 0 ? 0 : 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[i - 1]) {
+                count++;
+            }
+        }
+        this.distinct = count;
+        this.min = sorted.length == 0 ? 0 : sorted[0];
+        this.max = sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+        if (distinct <= MAX_EXACT) {
+            this.bounds = new double[distinct];
+            this.counts = new int[distinct];
+            int b = -1;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    bounds[++b] = sorted[i];
+                }
+                counts[b]++;
+            }
+        } else {
+            this.counts = null;
+            this.bounds = new double[BUCKETS + 1];
+            for (int b = 0; b < BUCKETS; b++) {
+                bounds[b] = sorted[(int) ((long) b * rows / BUCKETS)];
+            }
+            bounds[BUCKETS] = max;
+        }
+    }
+
+    /**
+     * Builds the statistics for the name column.
+     *
+     * @param column the column, GameData.NAME
+     * @param names  the names of the rows
+     */
+    public ColumnStats(GameData column, NameArena names) {
+        this.column = column;
+        this.rows = names.size();
+        this.min = 0;
+        this.max = 0;
+        this.bounds = null;
+        this.counts = null;
+        Set<String> unique = new HashSet<>();
+        for (int row = 0; row < rows; row++) {
+            unique.add(names.foldedName(row));
+        }
+        this.distinct = unique.size();
+        int size = Math.min(SAMPLE_SIZE, rows);
+        this.sample = new String[size];
+        for (int i = 0; i < size; i++) {
+            sample[i] = names.name((int) ((long) i * rows / size));
+        }
+    }
+
+    /**
+     * Get the column described.
+     *
+     * @return the column
+     */
+    public GameData getColumn() {
+        return column;
+    }
+
+    /**
+     * Get the number of distinct values.
+     *
+     * @return the number of distinct values
+     */
+    public int getDistinct() {
+        return distinct;
+    }
+
+    /**
+     * Get the smallest value of a numeric column.
+     *
+     * @return the smallest value
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Get the largest value of a numeric column.
+     *
+     * @return the largest value
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Estimates the fraction of rows matching a comparison against this column.
+     *
+     * @param op    the comparison
+     * @param value the value compared against, as typed in the filter
+     * @return a value between 0 and 1
+     */
+    public double estimate(Operations op, String value) {
+        if (rows == 0) {
+            return 0;
+        }
+        if (bounds == null) {
+            return estimateName(op, value);
+        }
+        return estimate(op, Filters.parseNumbers(op, value, !GameTable.isDecimal(column)));
+    }
+
+    /**
+     * Estimates the fraction of rows matching a comparison against this numeric column.
+     *
+     * @param op      the comparison
+     * @param numbers the parsed value, null if it was not valid
+     * @return a value between 0 and 1
+     */
+    public double estimate(Operations op, double[] numbers) {
+        if (rows == 0 || numbers == null) {
+            return 0; // Filters rejects every row when the value is not a number
+        }
+        double v = numbers[0];
+        double equal = fractionEqual(v);
+        switch (op) {
+            case EQUALS:
+                return equal;
+            case NOT_EQUALS:
+                return 1.0 - equal;
+            case LESS_THAN:
+                return fractionBelow(v);
+            case LESS_THAN_EQUALS:
+                return Math.min(1.0, fractionBelow(v) + equal);
+            case GREATER_THAN:
+                return Math.max(0, 1.0 - fractionBelow(v) - equal);
+            case GREATER_THAN_EQUALS:
+                return 1.0 - fractionBelow(v);
+            case BETWEEN:
+                if (numbers[1] < v) {
+                    return 0;
+                }
+                return Math.max(0, Math.min(1.0,
+                        fractionBelow(numbers[1]) + fractionEqual(numbers[1]) - fractionBelow(v)));
+            case IN:
+                double total = 0;
+                for (int i = 0; i < numbers.length; i++) {
+                    if (i == 0 || numbers[i] != numbers[i - 1]) {
+                        total += fractionEqual(numbers[i]);
+                    }
+                }
+                return Math.min(1.0, total);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Estimates a name comparison by running it over the sample.
+     *
+     * @param op    the comparison
+     * @param value the value compared against
+     * @return a value between 0 and 1
+     */
+    private double estimateName(Operations op, String value) {
+        if (op == Operations.EQUALS) {
+            return 1.0 / distinct;
+        }
+        if (op == Operations.NOT_EQUALS) {
+            return 1.0 - 1.0 / distinct;
+        }
+        if (op == Operations.IN) {
+            return Math.min(1.0, (double) Filters.parseList(value).length / distinct);
+        }
+        int hits = 0;
+        for (String name : sample) {
+            if (Filters.filterString(name, op, value)) {
+                hits++;
+            }
+        }
+        // never estimate zero from a sample, the rows may just not have been sampled
+        return Math.max(hits, 0.5) / sample.length;
+    }
+
+    /**
+     * Estimates the fraction of rows equal to the value.
+     *
+     * @param v the value
+     * @return a value between 0 and 1
+     */
+    private double fractionEqual(double v) {
+        if (v < min || v > max) {
+            return 0;
+        }
+        if (counts != null) {
+            int i = Arrays.binarySearch(bounds, v);
+            return i < 0 ? 0 : (double) counts[i] / rows;
+        }
+        // a value filling several buckets is common, each bucket it starts is 1/BUCKETS
+        int spanned = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            if (bounds[b] == v) {
+                spanned++;
+            }
+        }
+        return Math.max(1.0 / distinct, (double) spanned / BUCKETS);
+    }
+
+    /**
+     * Estimates the fraction of rows below the value.
+     *
+     * @param v the value
+     * @return a value between 0 and 1
+     */
+    private double fractionBelow(double v) {
+        if (v <= min) {
+            return 0;
+        }
+        if (v > max) {
+            return 1.0;
+        }
+        if (counts != null) {
+            int below = 0;
+            for (int i = 0; i < bounds.length && bounds[i] < v; i++) {
+                below += counts[i];
+            }
+            return (double) below / rows;
+        }
+        // every bucket holds the same number of rows, interpolate within the one holding v
+        int b = 0;
+        while (b < BUCKETS - 1 && bounds[b + 1] <= v) {
+            b++;
+        }
+        double width = bounds[b + 1] - bounds[b];
+        double part = width == 0 ? 0 : (v - bounds[b]) / width;
+        return Math.min(1.0, (b + Math.min(1.0, part)) / BUCKETS);
+    }
+
+    @Override
+    public String toString() {
+        if (bounds == null) {
+            return column.getColumnName() + "{distinct=" + distinct + "}";
+        }
+        return column.getColumnName() + "{min=" + min + ", max=" + max + ", distinct=" + distinct
+                + "}";
+    }
+}
@@ -1,6 +1,9 @@
 package student;
 
-import java.util.Collections;
+import java.io.BufferedOutputStream;
+import java.io.PrintStream;
+import java.util.Formatter;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
@@ -19,16 +22,41 @@ import java.util.Random;
 public class ConsoleApp {
     /** Interaction with the system terminal/command line. */
     private static final Scanner IN = new Scanner(System.in);
+    /** Characters of output gathered before they are written out in one go. */
+    private static final int CHUNK = 1 << 16;
+    /** Output to the terminal, only written when flushed or a chunk is full. */
+    private static final PrintStream OUT = new PrintStream(
+            new BufferedOutputStream(System.out, CHUNK), false);
     /** Default name to save the game list to. */
     private static final String DEFAULT_FILENAME = "games_list.txt";
     /** random number generator only needs to be built once. */
     private static final Random RND = new Random();
+    /** Most typos allowed when suggesting a game name. */
+    private static final int MAX_TYPOS = 2;
+    /** Most game names suggested at once. */
+    private static final int MAX_SUGGESTIONS = 3;
     /** scanner to help with processing the command string. */
     private Scanner current;
     /** The game list to manage. */
     private final IGameList gameList;
     /** The planner to help filter games. */
     private final IPlanner planner;
+    /** Lines of filter output not yet written, reused between filters. */
+    private final StringBuilder lines = new StringBuilder(CHUNK);
+    /** Formats decimal values straight into the lines. */
+    private final Formatter formatter = new Formatter(lines);
+    /** Games shown before asking for more, 0 to show them all at once. */
+    private int pageSize;
+    /** Where commands are read from. */
+    private final Scanner in;
+    /** Where output is written to. */
+    private final PrintStream out;
+    /** Whether a person is typing, so prompts are shown and paging is possible. */
+    private final boolean interactive;
+    /** Games printed by the last filter. */
+    private int shown;
+    /** Invalid command messages printed so far. */
+    private int rejected;
 
     /**
      * Constructor for the console app.
@@ -37,9 +65,27 @@ public class ConsoleApp {
      * @param planner  the planner to help filter games.
      */
     public ConsoleApp(IGameList gameList, IPlanner planner) {
+        this(gameList, planner, IN, OUT, true);
+    }
+
+    /**
+     * Constructor for the console app reading from and writing to other places, such
+     * as a script for {@link #runBatch()}.
+     * 
+     * @param gameList    the game list to manage.
+     * @param planner     the planner to help filter games.
+     * @param in          where commands are read from.
+     * @param out         where output is written to.
+     * @param interactive whether a person is typing, false to show no prompts.
+     */
+    public ConsoleApp(IGameList gameList, IPlanner planner, Scanner in, PrintStream out,
+            boolean interactive) {
         this.gameList = gameList;
         this.planner = planner;
-    }    
+        this.in = in;
+        this.out = out;
+        this.interactive = interactive;
+    }
 
     /**
      * Start the console application.
@@ -50,24 +96,7 @@ public class ConsoleApp {
         printOutput("%s%n", ConsoleText.WELCOME);
         ConsoleText ct = nextCommand();
         while (ct != ConsoleText.CMD_EXIT) {
-            switch (ct) {
-                case CMD_QUESTION: // same as help
-                case CMD_HELP:
-                    processHelp();
-                    break;
-                case CMD_FILTER:
-                    processFilter();
-                    break;
-                case CMD_LIST:
-                    processListCommands();
-                    break;
-                case CMD_EASTER_EGG:
-                    randomNumber();
-                    break;
-                case INVALID:
-                default:
-                    printOutput("%s%n", ConsoleText.INVALID);
-            }
+            process(ct);
 
             // clean up scanner.
             current.close();
@@ -79,6 +108,72 @@ public class ConsoleApp {
         printOutput("%s%n", ConsoleText.GOODBYE);
     }
 
+    /**
+     * Runs every command of the input without prompts, until the input ends or exit.
+     * 
+     * Blank lines and lines starting with # are skipped. Each command is timed from
+     * reading it to its last line of output. Paging is off, as there is nobody to ask.
+     * 
+     * @return the timings of the commands.
+     */
+    public BatchSummary runBatch() {
+        BatchSummary summary = new BatchSummary();
+        int lineNumber = 0;
+        while (in.hasNextLine()) {
+            String line = in.nextLine().trim();
+            lineNumber++;
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            long start = System.nanoTime();
+            current = new Scanner(line);
+            ConsoleText ct = ConsoleText.fromString(current.next());
+            if (ct == ConsoleText.CMD_EXIT) {
+                current.close();
+                current = null;
+                break;
+            }
+            shown = 0;
+            int rejectedBefore = rejected;
+            process(ct);
+            current.close();
+            current = null;
+            summary.record(lineNumber, line, System.nanoTime() - start, shown,
+                    rejected == rejectedBefore);
+        }
+        out.flush();
+        return summary;
+    }
+
+    /**
+     * Runs one command, the rest of its line still in the current scanner.
+     * 
+     * @param ct the command.
+     */
+    private void process(ConsoleText ct) {
+        switch (ct) {
+            case CMD_QUESTION: // same as help
+            case CMD_HELP:
+                processHelp();
+                break;
+            case CMD_FILTER:
+                processFilter();
+                break;
+            case CMD_LIST:
+                processListCommands();
+                break;
+            case CMD_EASTER_EGG:
+                randomNumber();
+                break;
+            case CMD_PAGE:
+                processPage();
+                break;
+            case INVALID:
+            default:
+                printOutput("%s%n", ConsoleText.INVALID);
+        }
+    }
+
     /**
      * Generate a random number based on the current filter.
      */
@@ -136,6 +231,18 @@ public class ConsoleApp {
                 // break it up, figure out sort
                 boolean ascending = true; // default
                 String[] parts = filter.split(ConsoleText.CMD_SORT_OPTION.toString());
+                if (parts.length == 2 && parts[1].contains(",")) {
+                    // several keys, such as rating desc, difficulty asc, name
+                    SortOrder order;
+                    try {
+                        order = SortOrder.parse(parts[1]);
+                    } catch (IllegalArgumentException e) {
+                        printOutput("%s%n", ConsoleText.INVALID);
+                        return; // leave early.
+                    }
+                    printFilterStream(planner.filter(parts[0], order), order.getFirstColumn());
+                    return;
+                }
                 if (parts.length == 2) {
                     String sort = parts[1];
                     if (sort.contains(ConsoleText.CMD_SORT_OPTION_DIRECTION_ASC.toString())) {
@@ -167,19 +274,77 @@ public class ConsoleApp {
         printFilterStream(result, sortON);
     }
 
+    /**
+     * Process the page command, setting how many games a filter shows at a time.
+     */
+    private void processPage() {
+        String size = remainder();
+        if (size.isEmpty() || size.equalsIgnoreCase(ConsoleText.CMD_PAGE_OFF.toString())) {
+            pageSize = 0;
+            printOutput("%s%n", ConsoleText.PAGE_OFF);
+            return;
+        }
+        try {
+            pageSize = Integer.parseInt(size);
+        } catch (NumberFormatException e) {
+            pageSize = 0;
+        }
+        if (pageSize <= 0) {
+            pageSize = 0;
+            printOutput("%s%n", ConsoleText.INVALID);
+            return;
+        }
+        printOutput("%s %d%n", ConsoleText.PAGE_ON, pageSize);
+    }
+
     /**
      * Print the filtered stream of games.
      * 
+     * The games are read from the stream one at a time, and the lines gathered
+     * and written out a chunk at a time, so a long list neither waits for the
+     * whole list nor writes to the terminal line by line. With paging on, it stops
+     * after each page to ask for more, and games past the last page shown are
+     * never read.
+     * 
      * @param games  the stream of games to print.
      * @param sortON also is the column used for 'extra info' based on the sort
      *               type.
      */
-    private static void printFilterStream(Stream<BoardGame> games, GameData sortON) {
+    private void printFilterStream(Stream<BoardGame> games, GameData sortON) {
+        shown = 0;
+        if (games == null) {
+            return;
+        }
+        lines.setLength(0);
         int counter = 1;
-        List<BoardGame> gameList = games != null ? games.toList() : Collections.emptyList();
-        for (BoardGame game : gameList) {
-            printOutput("%d: %s%n", counter++, game.toStringWithInfo(sortON));
+        Iterator<BoardGame> it = games.iterator();
+        while (it.hasNext()) {
+            lines.append(counter).append(": ");
+            it.next().appendWithInfo(lines, formatter, sortON);
+            lines.append(System.lineSeparator());
+            if (lines.length() >= CHUNK) {
+                flushLines();
+            }
+            shown = counter;
+            if (interactive && pageSize > 0 && counter % pageSize == 0 && it.hasNext()) {
+                flushLines();
+                String more = getInput("%s", ConsoleText.PAGE_MORE).trim();
+                if (more.equalsIgnoreCase(ConsoleText.CMD_PAGE_QUIT.toString())) {
+                    break;
+                }
+            }
+            counter++;
         }
+        flushLines();
+        out.flush();
+    }
+
+    /**
+     * Writes out the lines gathered so far.
+     */
+    private void flushLines() {
+        out.append(lines);
+        lines.setLength(0);
     }
 
     /**
@@ -206,6 +371,7 @@ public class ConsoleApp {
                         gameList.addToList(toAdd, planner.filter(""));
                     } catch (IllegalArgumentException e) {
                         printOutput("%s %s%n", ConsoleText.INVALID_LIST, toAdd);
+                        suggestNames(toAdd, null);
                     }
                     break;
                 case CMD_REMOVE:
@@ -217,6 +383,7 @@ public class ConsoleApp {
                         gameList.removeFromList(remove);
                     } catch (IllegalArgumentException e) {
                         printOutput("%s %s%n", ConsoleText.INVALID_LIST, remove);
+                        suggestNames(remove, gameList.getGameNames());
                     }
                     break;
                 case CMD_SAVE:
@@ -240,6 +407,29 @@ public class ConsoleApp {
         }
     }
 
+    /**
+     * Suggest game names close to a name that was not found.
+     *
+     * Numbers, ranges and "all" are not names, so nothing is suggested for them.
+     *
+     * @param input  what the client typed.
+     * @param within only suggest these names, or null to suggest any game.
+     */
+    private void suggestNames(String input, List<String> within) {
+        if (input.matches("[\\d\\s-]+") || input.equalsIgnoreCase(IGameList.ADD_ALL)) {
+            return;
+        }
+        List<String> names = planner.fuzzyMatch(input, MAX_TYPOS).stream()
+                .map(BoardGame::getName)
+                .filter(name -> within == null || within.contains(name))
+                .distinct()
+                .limit(MAX_SUGGESTIONS)
+                .toList();
+        if (!names.isEmpty()) {
+            printOutput("%s %s%n", ConsoleText.DID_YOU_MEAN, String.join(", ", names));
+        }
+    }
+
     /**
      * Print the current list of games.
      */
@@ -285,15 +475,18 @@ public class ConsoleApp {
      * 
      * @return the input from the client as a string, one line at a time.
      */
-    private static String getInput(String format, Object... args) {
-        System.out.printf(format, args);
-        if (IN == null) {
+    private String getInput(String format, Object... args) {
+        if (interactive) {
+            out.printf(format, args);
+            out.flush();
+        }
+        if (in == null) {
             return "";
         }
-        if (!IN.hasNextLine()) {
+        if (!in.hasNextLine()) {
             return "";
         }
-        return IN.nextLine();
+        return in.nextLine();
     }
 
 
@@ -302,13 +495,20 @@ public class ConsoleApp {
      * 
      * We could call printf directly, but this gives us one location in case
      * we want to change the output to a file or other location.
-     * 
+     * Flushed right away, so it stays in order with anything written to
+     * System.err. Invalid command messages are counted, so a batch run can
+     * tell which commands were rejected.
      * 
      * @param format the format string to print.
      * @param output the output to print (array to match the format).
      */
-    private static void printOutput(String format, Object... output) {
-        System.out.printf(format, output);
+    private void printOutput(String format, Object... output) {
+        if (output.length > 0
+                && (output[0] == ConsoleText.INVALID || output[0] == ConsoleText.INVALID_LIST)) {
+            rejected++;
+        }
+        out.printf(format, output);
+        out.flush();
     }
 
     /**
@@ -328,13 +528,15 @@ public class ConsoleApp {
         /** various commands and text. */
         WELCOME, HELP, INVALID, GOODBYE, PROMPT, NO_FILTER, NO_GAMES_LIST, FILTERED_CLEAR, LIST_HELP, FILTER_HELP,
         /** commands continued. */
-        INVALID_LIST, EASTER_EGG, CMD_EASTER_EGG,
+        INVALID_LIST, DID_YOU_MEAN, EASTER_EGG, CMD_EASTER_EGG, PAGE_ON, PAGE_OFF, PAGE_MORE,
         /** commands general. */
-        CMD_EXIT, CMD_HELP, CMD_QUESTION, CMD_FILTER, CMD_LIST,
+        CMD_EXIT, CMD_HELP, CMD_QUESTION, CMD_FILTER, CMD_LIST, CMD_PAGE,
         /** commands specific to lists and filters. */
         CMD_SHOW, CMD_ADD, CMD_REMOVE, CMD_CLEAR, CMD_SAVE,
         /** more options on commands. */
-        CMD_OPTION_ALL, CMD_SORT_OPTION, CMD_SORT_OPTION_DIRECTION_ASC, CMD_SORT_OPTION_DIRECTION_DESC;
+        CMD_OPTION_ALL, CMD_SORT_OPTION, CMD_SORT_OPTION_DIRECTION_ASC, CMD_SORT_OPTION_DIRECTION_DESC,
+        /** options of the page command. */
+        CMD_PAGE_OFF, CMD_PAGE_QUIT;
 
         /** load the files on class load. */
         private static final Properties CTEXT = new Properties();
@@ -0,0 +1,365 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summary of one numeric column over the games matching a filter: the count, minimum,
+ * maximum and mean of its values, and the number of games in each bucket.
+ *
+ * Every column has a fixed set of buckets chosen for browsing (player counts one by one,
+ * play time in familiar steps, years by era, difficulty and rating by whole points), so
+ * facets of the same column always line up and can be merged, for example across shards.
+ *
+ * Facets are computed by {@link #count(GameTable, BitSet, GameData...)}, which visits
+ * every matching row once for all the requested columns, using primitive counters.
+ */
+public final class Facet {
+    /** Lower bounds of the player count buckets, the first holding games with none given. */
+    private static final double[] PLAYERS = {
+        Double.NEGATIVE_INFINITY, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+    /** Lower bounds of the play time buckets, in minutes. */
+    private static final double[] TIMES = {0, 15, 30, 45, 60, 90, 120, 180, 240};
+    /** Lower bounds of the difficulty and rating buckets. */
+    private static final double[] POINTS = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+    /** Lower bounds of the year buckets. */
+    private static final double[] YEARS = {
+        Double.NEGATIVE_INFINITY, 1900, 1950, 1970, 1980, 1990, 2000, 2010, 2020};
+    /** Lower bounds of the rank buckets, the first holding the unranked games. */
+    private static final double[] RANKS = {Double.NEGATIVE_INFINITY, 1, 101, 501, 1001, 5001};
+
+    /** The column summarized. */
+    private final GameData column;
+    /** Number of values. */
+    private final long count;
+    /** Smallest value, NaN if there are none. */
+    private final double min;
+    /** Largest value, NaN if there are none. */
+    private final double max;
+    /** Sum of the values. */
+    private final double sum;
+    /** Number of values in each bucket. */
+    private final long[] bucketCounts;
+
+    /**
+     * Constructor for a facet.
+     *
+     * @param column       the column summarized
+     * @param count        the number of values
+     * @param min          the smallest value, NaN if there are none
+     * @param max          the largest value, NaN if there are none
+     * @param sum          the sum of the values
+     * @param bucketCounts the number of values in each of the column's buckets
+     */
+    public Facet(GameData column, long count, double min, double max, double sum,
+            long[] bucketCounts) {
+        if (bucketCounts.length != bounds(column).length) {
+            throw new IllegalArgumentException("Wrong number of buckets for " + column);
+        }
+        this.column = column;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.bucketCounts = bucketCounts.clone();
+    }
+
+    /**
+     * Computes the facets of several columns in a single pass over the rows.
+     *
+     * @param table   the table the rows belong to
+     * @param rows    the rows to summarize
+     * @param columns the numeric columns to summarize
+     * @return a facet per distinct column, in the order requested
+     */
+    public static Map<GameData, Facet> count(GameTable table, BitSet rows, GameData... columns) {
+        GameData[] cols = Arrays.stream(columns).distinct().toArray(GameData[]::new);
+        int k = cols.length;
+        double[][] bounds = new double[k][];
+        long[][] buckets = new long[k][];
+        double[] min = new double[k];
+        double[] max = new double[k];
+        double[] sum = new double[k];
+        for (int c = 0; c < k; c++) {
+            bounds[c] = bounds(cols[c]);
+            buckets[c] = new long[bounds[c].length];
+            min[c] = Double.POSITIVE_INFINITY;
+            max[c] = Double.NEGATIVE_INFINITY;
+        }
+        long count = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            count++;
+            for (int c = 0; c < k; c++) {
+                double v = table.value(row, cols[c]);
+                buckets[c][bucket(bounds[c], v)]++;
+                min[c] = Math.min(min[c], v);
+                max[c] = Math.max(max[c], v);
+                sum[c] += v;
+            }
+        }
+        Map<GameData, Facet> result = new LinkedHashMap<>();
+        for (int c = 0; c < k; c++) {
+            result.put(cols[c], new Facet(cols[c], count, count == 0 ? Double.NaN : min[c],
+                    count == 0 ? Double.NaN : max[c], sum[c], buckets[c]));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the lower bounds of a column's buckets. Each bucket runs up to the next bound,
+     * and the last one has no upper bound.
+     *
+     * @param column a numeric column
+     * @return the lower bounds, ascending
+     */
+    static double[] bounds(GameData column) {
+        switch (column) {
+            case MIN_PLAYERS:
+            case MAX_PLAYERS:
+                return PLAYERS;
+            case MIN_TIME:
+            case MAX_TIME:
+                return TIMES;
+            case DIFFICULTY:
+            case RATING:
+                return POINTS;
+            case YEAR:
+                return YEARS;
+            case RANK:
+                return RANKS;
+            default:
+                throw new IllegalArgumentException("Cannot facet on " + column);
+        }
+    }
+
+    /**
+     * Finds the bucket holding a value. Values below the first bound go in the first bucket.
+     *
+     * @param bounds the lower bounds of the buckets
+     * @param v      the value
+     * @return the bucket
+     */
+    private static int bucket(double[] bounds, double v) {
+        int i = Arrays.binarySearch(bounds, v);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+
+    /**
+     * Combines this facet with another of the same column, as if computed over both sets
+     * of rows at once.
+     *
+     * @param other a facet of the same column
+     * @return the combined facet
+     */
+    public Facet merge(Facet other) {
+        if (other.column != column) {
+            throw new IllegalArgumentException("Cannot merge facets of " + column + " and "
+                    + other.column);
+        }
+        long[] merged = bucketCounts.clone();
+        for (int b = 0; b < merged.length; b++) {
+            merged[b] += other.bucketCounts[b];
+        }
+        return new Facet(column, count + other.count, minOf(min, other.min),
+                maxOf(max, other.max), sum + other.sum, merged);
+    }
+
+    /**
+     * Smaller of two values, ignoring NaN.
+     *
+     * @param a a value or NaN
+     * @param b a value or NaN
+     * @return the smaller value, NaN if both are
+     */
+    private static double minOf(double a, double b) {
+        return Double.isNaN(a) ? b : Double.isNaN(b) ? a : Math.min(a, b);
+    }
+
+    /**
+     * Larger of two values, ignoring NaN.
+     *
+     * @param a a value or NaN
+     * @param b a value or NaN
+     * @return the larger value, NaN if both are
+     */
+    private static double maxOf(double a, double b) {
+        return Double.isNaN(a) ? b : Double.isNaN(b) ? a : Math.max(a, b);
+    }
+
+    /**
+     * Get the column summarized.
+     *
+     * @return the column
+     */
+    public GameData getColumn() {
+        return column;
+    }
+
+    /**
+     * Get the number of games summarized.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the smallest value.
+     *
+     * @return the smallest value, NaN if there are no games
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Get the largest value.
+     *
+     * @return the largest value, NaN if there are no games
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Get the mean value.
+     *
+     * @return the mean, NaN if there are no games
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Get the buckets, including the empty ones.
+     *
+     * @return the buckets in ascending order
+     */
+    public List<Bucket> getBuckets() {
+        double[] bounds = bounds(column);
+        boolean whole = !GameTable.isDecimal(column);
+        List<Bucket> result = new ArrayList<>(bounds.length);
+        for (int b = 0; b < bounds.length; b++) {
+            double upper = b + 1 < bounds.length ? bounds[b + 1] : Double.POSITIVE_INFINITY;
+            result.add(new Bucket(label(bounds[b], upper, whole), bounds[b], upper,
+                    bucketCounts[b]));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Describes a bucket, such as "3", "30-44", "2010+", "<1900" or "2.0-3.0".
+     *
+     * @param lower the lower bound, included
+     * @param upper the upper bound, excluded
+     * @param whole whether the column holds whole numbers
+     * @return the label
+     */
+    private static String label(double lower, double upper, boolean whole) {
+        if (lower == Double.NEGATIVE_INFINITY) {
+            return "<" + format(upper, whole);
+        }
+        if (upper == Double.POSITIVE_INFINITY) {
+            return format(lower, whole) + "+";
+        }
+        if (whole) {
+            long last = (long) Math.ceil(upper) - 1;
+            return last == (long) lower ? format(lower, true)
+                    : format(lower, true) + "-" + last;
+        }
+        return format(lower, false) + "-" + format(upper, false);
+    }
+
+    /**
+     * Formats a bound.
+     *
+     * @param v     the bound
+     * @param whole whether the column holds whole numbers
+     * @return the bound as text
+     */
+    private static String format(double v, boolean whole) {
+        return whole ? Long.toString((long) v) : Double.toString(v);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(column.getColumnName()).append(": count=")
+                .append(count).append(", min=").append(min).append(", max=").append(max)
+                .append(", mean=").append(String.format("%.2f", getMean()));
+        for (Bucket bucket : getBuckets()) {
+            sb.append(", ").append(bucket.getLabel()).append('=').append(bucket.getCount());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The games of a facet falling in one range of values.
+     */
+    public static final class Bucket {
+        /** Readable description of the range. */
+        private final String label;
+        /** Lower bound, included, negative infinity for the first bucket of some columns. */
+        private final double lower;
+        /** Upper bound, excluded, positive infinity for the last bucket. */
+        private final double upper;
+        /** Number of games in the range. */
+        private final long count;
+
+        /**
+         * Constructor for a bucket.
+         *
+         * @param label readable description of the range
+         * @param lower lower bound, included
+         * @param upper upper bound, excluded
+         * @param count number of games in the range
+         */
+        Bucket(String label, double lower, double upper, long count) {
+            this.label = label;
+            this.lower = lower;
+            this.upper = upper;
+            this.count = count;
+        }
+
+        /**
+         * Get the readable description of the range.
+         *
+         * @return the label
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Get the lower bound, included.
+         *
+         * @return the lower bound
+         */
+        public double getLower() {
+            return lower;
+        }
+
+        /**
+         * Get the upper bound, excluded.
+         *
+         * @return the upper bound
+         */
+        public double getUpper() {
+            return upper;
+        }
+
+        /**
+         * Get the number of games in the range.
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return count;
+        }
+    }
+}
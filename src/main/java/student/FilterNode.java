@@ -0,0 +1,598 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A compiled filter expression.
+ *
+ * The {@link FilterParser} turns a filter string into a tree of these nodes. Each node
+ * can test a single game, or evaluate itself over a set of candidate rows of a
+ * {@link GameTable} and return the matching rows as a bitmap.
+ *
+ * Every node also carries a rough per-row cost and an estimated selectivity (the fraction
+ * of rows expected to pass), taken from the table's column statistics. AND and OR nodes
+ * use those numbers to run their cheapest and most decisive children first, and stop as
+ * soon as the answer is known. Conditions use them to choose between an index lookup and
+ * a scan of the candidate rows.
+ */
+public abstract class FilterNode {
+
+    /** Package-private so only the nested node types extend this class. */
+    FilterNode() { }
+
+    /**
+     * Tests a single game against this node.
+     *
+     * @param game the game to test
+     * @return true if the game matches
+     */
+    public abstract boolean test(BoardGame game);
+
+    /**
+     * Evaluates this node over the candidate rows.
+     *
+     * @param table      the table the rows belong to
+     * @param candidates the rows to consider, never modified
+     * @param rows       counts the rows examined
+     * @param trace      the plan step to record into, or null when not explaining
+     * @return a new bitmap of the candidate rows that match
+     */
+    public abstract BitSet evaluate(GameTable table, BitSet candidates, RowCounter rows,
+            QueryPlan.Step trace);
+
+    /**
+     * Estimated cost of evaluating this node for a single row.
+     *
+     * @param table the table the node will run against
+     * @return relative cost, 1.0 being a single integer comparison
+     */
+    public abstract double cost(GameTable table);
+
+    /**
+     * Estimated fraction of rows that pass this node.
+     *
+     * @param table the table the node will run against
+     * @return a value between 0 and 1
+     */
+    public abstract double selectivity(GameTable table);
+
+    /**
+     * Starts the plan step for this node, if explaining.
+     *
+     * @param table      the table the node runs against
+     * @param candidates the rows the node will consider
+     * @param trace      the parent step, or null when not explaining
+     * @param label      what the node does
+     * @return the new step, or null when not explaining
+     */
+    QueryPlan.Step startStep(GameTable table, BitSet candidates, QueryPlan.Step trace,
+            String label) {
+        if (trace == null) {
+            return null;
+        }
+        QueryPlan.Step step = trace.child(label);
+        step.setEstimatedRows(candidates.cardinality() * selectivity(table));
+        return step;
+    }
+
+    /**
+     * Records the result of a node in its plan step, if explaining.
+     *
+     * @param step   the step, or null when not explaining
+     * @param result the rows the node returned
+     * @return the result, for chaining
+     */
+    static BitSet endStep(QueryPlan.Step step, BitSet result) {
+        if (step != null) {
+            step.setActualRows(result.cardinality());
+        }
+        return result;
+    }
+
+    /**
+     * A single column comparison, such as minPlayers>4.
+     */
+    public static final class Condition extends FilterNode {
+        /** Selectivity for equality when a column has no statistics. */
+        private static final double EQUALS_SELECTIVITY = 0.1;
+        /** Selectivity for range comparisons when a column has no statistics. */
+        private static final double RANGE_SELECTIVITY = 1.0 / 3.0;
+        /** Selectivity for a substring match when a column has no statistics. */
+        private static final double CONTAINS_SELECTIVITY = 0.25;
+        /** Largest member an IN keeps in a bitmap rather than a sorted array. */
+        private static final int MAX_BITMAP = 1 << 16;
+
+        /** The column to compare. */
+        private final GameData column;
+        /** The comparison to run. */
+        private final Operations op;
+        /** The right hand side of the comparison. */
+        private final String value;
+        /** The value parsed once for a numeric column, null if it is not valid. */
+        private final double[] numbers;
+        /** Members of an IN on a whole number column, when small enough for a bitmap. */
+        private final BitSet members;
+        /** The value parsed once for the name column, lower cased UTF-8, null if not valid. */
+        private final byte[][] nameKeys;
+
+        /**
+         * Constructor for a condition.
+         *
+         * @param column the column to compare
+         * @param op     the comparison to run
+         * @param value  the value to compare against
+         */
+        public Condition(GameData column, Operations op, String value) {
+            this.column = column;
+            this.op = op;
+            this.value = value;
+            this.numbers = GameTable.isNumeric(column)
+                    ? Filters.parseNumbers(op, value, !GameTable.isDecimal(column)) : null;
+            this.members = op == Operations.IN && numbers != null && !GameTable.isDecimal(column)
+                    ? smallMembers(numbers) : null;
+            this.nameKeys = column == GameData.NAME ? Filters.parseNameKeys(op, value) : null;
+        }
+
+        /**
+         * Builds a bitmap of the members of an IN, if they are all small and non-negative.
+         *
+         * @param values the members, whole numbers in ascending order
+         * @return the bitmap, or null if a member does not fit
+         */
+        private static BitSet smallMembers(double[] values) {
+            if (values.length == 0 || values[0] < 0 || values[values.length - 1] > MAX_BITMAP) {
+                return null;
+            }
+            BitSet bits = new BitSet();
+            for (double v : values) {
+                bits.set((int) v);
+            }
+            return bits;
+        }
+
+        /**
+         * Get the column of this condition.
+         *
+         * @return the column
+         */
+        public GameData getColumn() {
+            return column;
+        }
+
+        /**
+         * Get the operation of this condition.
+         *
+         * @return the operation
+         */
+        public Operations getOperation() {
+            return op;
+        }
+
+        /**
+         * Get the value of this condition.
+         *
+         * @return the value
+         */
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            if (column == GameData.NAME) {
+                return Filters.filterString(game.getName(), op, value);
+            }
+            return matches(GameTable.numericValue(game, column));
+        }
+
+        /**
+         * Tests a value of this condition's numeric column, using the parsed value.
+         *
+         * @param v the value
+         * @return true if it matches
+         */
+        private boolean matches(double v) {
+            if (numbers == null) {
+                return false; // not a valid number, Filters rejects every row
+            }
+            if (members != null) {
+                return Filters.filterIn((int) v, members);
+            }
+            return Filters.filterNumber(v, op, numbers);
+        }
+
+        @Override
+        public BitSet evaluate(GameTable table, BitSet candidates, RowCounter rows,
+                QueryPlan.Step trace) {
+            QueryPlan.Step step = startStep(table, candidates, trace, toString());
+            table.adaptiveIndexes().record(column, op);
+            BitSet result;
+            if (useIndex(table, candidates)) {
+                if (step != null) {
+                    step.setAccess("INDEX");
+                }
+                result = table.index(column).lookup(op, numbers);
+                rows.add(result.cardinality());
+                result.and(candidates);
+            } else {
+                if (step != null) {
+                    step.setAccess("SCAN");
+                }
+                result = scan(table, candidates);
+                rows.add(candidates.cardinality());
+            }
+            return endStep(step, result);
+        }
+
+        /**
+         * Tests every candidate row. Names are compared on the table's packed bytes, numbers
+         * on the table's columns.
+         *
+         * @param table      the table the condition runs against
+         * @param candidates the rows to consider
+         * @return the matching rows
+         */
+        private BitSet scan(GameTable table, BitSet candidates) {
+            BitSet result = new BitSet(table.size());
+            if (column == GameData.NAME) {
+                NameArena names = table.names();
+                for (int row = candidates.nextSetBit(0); row >= 0;
+                        row = candidates.nextSetBit(row + 1)) {
+                    if (Filters.filterName(names, row, op, nameKeys)) {
+                        result.set(row);
+                    }
+                }
+                return result;
+            }
+            for (int row = candidates.nextSetBit(0); row >= 0;
+                    row = candidates.nextSetBit(row + 1)) {
+                if (matches(table.value(row, column))) {
+                    result.set(row);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Decides whether an index lookup is cheaper than scanning the candidates.
+         *
+         * An index lookup costs a binary search per range (one for most comparisons, one
+         * per member for IN) plus one bit per row in the matching ranges, then an
+         * intersection with the candidates. A scan costs one comparison per candidate row.
+         *
+         * @param table      the table the condition runs against
+         * @param candidates the rows to consider
+         * @return true to use the index
+         */
+        private boolean useIndex(GameTable table, BitSet candidates) {
+            if (table.index(column) == null || !ColumnIndex.supports(op)) {
+                return false;
+            }
+            if (numbers == null) {
+                return false; // the scan rejects every row, let it
+            }
+            int n = table.size();
+            int searches = op == Operations.IN ? numbers.length : 1;
+            double indexCost = searches * Math.log(n + 1) / Math.log(2)
+                    + table.stats(column).estimate(op, numbers) * n + n / 64.0;
+            double scanCost = candidates.cardinality() * cost(table);
+            return indexCost < scanCost;
+        }
+
+        @Override
+        public double cost(GameTable table) {
+            switch (column) {
+                case NAME:
+                    return op == Operations.CONTAINS ? 4.0 : 3.0;
+                case RATING:
+                case DIFFICULTY:
+                    return 1.5;
+                default:
+                    return 1.0;
+            }
+        }
+
+        @Override
+        public double selectivity(GameTable table) {
+            ColumnStats stats = table.stats(column);
+            if (stats != null) {
+                return numbers != null ? stats.estimate(op, numbers) : stats.estimate(op, value);
+            }
+            switch (op) {
+                case EQUALS:
+                    return EQUALS_SELECTIVITY;
+                case NOT_EQUALS:
+                    return 1.0 - EQUALS_SELECTIVITY;
+                case CONTAINS:
+                    return CONTAINS_SELECTIVITY;
+                default:
+                    return RANGE_SELECTIVITY;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return column.getColumnName() + op.getOperator() + value;
+        }
+    }
+
+    /**
+     * Matches rows that pass every child (the comma in a filter).
+     */
+    public static final class And extends FilterNode {
+        /** Children, in the order they were written. */
+        private final List<FilterNode> children;
+
+        /**
+         * Constructor for an AND node.
+         *
+         * @param children the nodes to combine, at least one
+         */
+        public And(List<FilterNode> children) {
+            this.children = new ArrayList<>(children);
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            for (FilterNode child : children) {
+                if (!child.test(game)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public BitSet evaluate(GameTable table, BitSet candidates, RowCounter rows,
+                QueryPlan.Step trace) {
+            QueryPlan.Step step = startStep(table, candidates, trace, "AND");
+            List<FilterNode> ordered = ordered(table);
+            BitSet remaining = candidates;
+            int done = 0;
+            while (done < ordered.size() && !remaining.isEmpty()) {
+                remaining = ordered.get(done++).evaluate(table, remaining, rows, step);
+            }
+            skipped(ordered, done, step);
+            BitSet result = remaining == candidates ? (BitSet) candidates.clone() : remaining;
+            return endStep(step, result);
+        }
+
+        /**
+         * Orders the children by cost per row rejected, lowest first.
+         *
+         * @param table the table the node runs against
+         * @return the children in the order to run them
+         */
+        List<FilterNode> ordered(GameTable table) {
+            List<FilterNode> ordered = new ArrayList<>(children);
+            ordered.sort(Comparator.comparingDouble(
+                    n -> n.cost(table) / Math.max(1e-9, 1.0 - n.selectivity(table))));
+            return ordered;
+        }
+
+        @Override
+        public double cost(GameTable table) {
+            // later children only see the rows that survived the earlier ones
+            double cost = 0;
+            double passing = 1.0;
+            for (FilterNode child : ordered(table)) {
+                cost += passing * child.cost(table);
+                passing *= child.selectivity(table);
+            }
+            return cost;
+        }
+
+        @Override
+        public double selectivity(GameTable table) {
+            double passing = 1.0;
+            for (FilterNode child : children) {
+                passing *= child.selectivity(table);
+            }
+            return passing;
+        }
+
+        @Override
+        public String toString() {
+            return join(children, ",");
+        }
+    }
+
+    /**
+     * Matches rows that pass any child (the | in a filter).
+     */
+    public static final class Or extends FilterNode {
+        /** Children, in the order they were written. */
+        private final List<FilterNode> children;
+
+        /**
+         * Constructor for an OR node.
+         *
+         * @param children the nodes to combine, at least one
+         */
+        public Or(List<FilterNode> children) {
+            this.children = new ArrayList<>(children);
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            for (FilterNode child : children) {
+                if (child.test(game)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public BitSet evaluate(GameTable table, BitSet candidates, RowCounter rows,
+                QueryPlan.Step trace) {
+            QueryPlan.Step step = startStep(table, candidates, trace, "OR");
+            List<FilterNode> ordered = ordered(table);
+            BitSet matched = new BitSet(table.size());
+            BitSet remaining = (BitSet) candidates.clone();
+            int done = 0;
+            while (done < ordered.size() && !remaining.isEmpty()) {
+                // each child returns its own bitmap, which may come straight from an index
+                BitSet hits = ordered.get(done++).evaluate(table, remaining, rows, step);
+                matched.or(hits);
+                remaining.andNot(hits);
+            }
+            skipped(ordered, done, step);
+            return endStep(step, matched);
+        }
+
+        /**
+         * Orders the children by cost per row accepted, lowest first.
+         *
+         * @param table the table the node runs against
+         * @return the children in the order to run them
+         */
+        List<FilterNode> ordered(GameTable table) {
+            List<FilterNode> ordered = new ArrayList<>(children);
+            ordered.sort(Comparator.comparingDouble(
+                    n -> n.cost(table) / Math.max(1e-9, n.selectivity(table))));
+            return ordered;
+        }
+
+        @Override
+        public double cost(GameTable table) {
+            double cost = 0;
+            double remaining = 1.0;
+            for (FilterNode child : ordered(table)) {
+                cost += remaining * child.cost(table);
+                remaining *= 1.0 - child.selectivity(table);
+            }
+            return cost;
+        }
+
+        @Override
+        public double selectivity(GameTable table) {
+            double rejected = 1.0;
+            for (FilterNode child : children) {
+                rejected *= 1.0 - child.selectivity(table);
+            }
+            return 1.0 - rejected;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + join(children, "|") + ")";
+        }
+    }
+
+    /**
+     * Matches rows that fail the child (the ! in a filter).
+     */
+    public static final class Not extends FilterNode {
+        /** The negated node. */
+        private final FilterNode child;
+
+        /**
+         * Constructor for a NOT node.
+         *
+         * @param child the node to negate
+         */
+        public Not(FilterNode child) {
+            this.child = child;
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            return !child.test(game);
+        }
+
+        @Override
+        public BitSet evaluate(GameTable table, BitSet candidates, RowCounter rows,
+                QueryPlan.Step trace) {
+            QueryPlan.Step step = startStep(table, candidates, trace, "NOT");
+            BitSet result = (BitSet) candidates.clone();
+            result.andNot(child.evaluate(table, candidates, rows, step));
+            return endStep(step, result);
+        }
+
+        @Override
+        public double cost(GameTable table) {
+            return child.cost(table);
+        }
+
+        @Override
+        public double selectivity(GameTable table) {
+            return 1.0 - child.selectivity(table);
+        }
+
+        @Override
+        public String toString() {
+            return "!" + child;
+        }
+    }
+
+    /**
+     * Matches every row. Used for empty filters, or when every condition was ignored.
+     */
+    public static final class All extends FilterNode {
+
+        @Override
+        public boolean test(BoardGame game) {
+            return true;
+        }
+
+        @Override
+        public BitSet evaluate(GameTable table, BitSet candidates, RowCounter rows,
+                QueryPlan.Step trace) {
+            QueryPlan.Step step = startStep(table, candidates, trace, "ALL");
+            return endStep(step, (BitSet) candidates.clone());
+        }
+
+        @Override
+        public double cost(GameTable table) {
+            return 0;
+        }
+
+        @Override
+        public double selectivity(GameTable table) {
+            return 1.0;
+        }
+
+        @Override
+        public String toString() {
+            return "*";
+        }
+    }
+
+    /**
+     * Records the children an AND or OR never ran, if explaining.
+     *
+     * @param ordered the children in the order they would have run
+     * @param done    how many of them ran
+     * @param step    the parent step, or null when not explaining
+     */
+    private static void skipped(List<FilterNode> ordered, int done, QueryPlan.Step step) {
+        if (step == null) {
+            return;
+        }
+        for (int i = done; i < ordered.size(); i++) {
+            step.child(ordered.get(i).toString()).setEstimatedRows(0);
+        }
+    }
+
+    /**
+     * Joins the string form of the nodes with the separator.
+     *
+     * @param nodes     the nodes to join
+     * @param separator the separator to place between them
+     * @return the joined string
+     */
+    private static String join(List<FilterNode> nodes, String separator) {
+        StringBuilder sb = new StringBuilder();
+        for (FilterNode node : nodes) {
+            if (sb.length() > 0) {
+                sb.append(separator);
+            }
+            sb.append(node);
+        }
+        return sb.toString();
+    }
+}
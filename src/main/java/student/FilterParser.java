@@ -0,0 +1,220 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses a text filter into a tree of {@link FilterNode}s.
+ *
+ * The grammar, from lowest to highest precedence:
+ *
+ * <pre>
+ *  or        := and ('|' and)*
+ *  and       := unary (',' unary)*
+ *  unary     := '!' unary | '(' or ')' | condition
+ *  condition := column operator value
+ * </pre>
+ *
+ * The parser is lenient, like the original comma-only filter. Conditions that cannot be
+ * understood are ignored, a missing closing parenthesis is assumed at the end, and a '!'
+ * or parenthesis inside a condition (for example name==BANG! or name~=(second) is kept as
+ * part of the value.
+ */
+public final class FilterParser {
+    /** Pattern for the contains operator, allowing spaces around "~=". */
+    private static final Pattern CONTAINS_PATTERN = Pattern.compile("(\\S+)\\s*~=\\s*(.+)");
+
+    /** The filter being parsed. */
+    private final String text;
+    /** Current position in the filter. */
+    private int pos;
+
+    /**
+     * Private constructor, use {@link #parse(String)}.
+     *
+     * @param text the filter to parse
+     */
+    private FilterParser(String text) {
+        this.text = text;
+        this.pos = 0;
+    }
+
+    /**
+     * Parses the filter into a node tree.
+     *
+     * @param filter the filter text, may be null or empty
+     * @return the root of the tree, never null
+     */
+    public static FilterNode parse(String filter) {
+        if (filter == null || filter.trim().isEmpty()) {
+            return new FilterNode.All();
+        }
+        FilterParser parser = new FilterParser(filter);
+        List<FilterNode> parts = new ArrayList<>();
+        parts.add(parser.parseOr());
+        // a stray ')' ends the expression early, treat what follows as another AND term
+        while (parser.pos < parser.text.length()) {
+            parser.pos++;
+            parts.add(parser.parseOr());
+        }
+        FilterNode root = and(parts);
+        return root == null ? new FilterNode.All() : root;
+    }
+
+    /**
+     * Parses a single condition, such as "minPlayers &gt; 4".
+     *
+     * @param filter the condition text
+     * @return the condition, or null if it is not a valid condition
+     */
+    public static FilterNode.Condition parseCondition(String filter) {
+        filter = filter.trim();
+        Operations operator;
+        String columnStr;
+        String value;
+
+        // If the condition uses the CONTAINS operator, use a regex to allow spaces around "~="
+        if (filter.contains("~=")) {
+            operator = Operations.CONTAINS;
+            Matcher matcher = CONTAINS_PATTERN.matcher(filter);
+            if (!matcher.matches()) {
+                return null;
+            }
+            columnStr = matcher.group(1).trim().toLowerCase();
+            value = matcher.group(2).trim();
+        } else {
+            operator = Operations.getOperatorFromStr(filter);
+            if (operator == null) {
+                return null;
+            }
+            int opIndex = filter.indexOf(operator.getOperator());
+            if (opIndex < 0) {
+                return null;
+            }
+            columnStr = filter.substring(0, opIndex).trim().toLowerCase();
+            value = filter.substring(opIndex + operator.getOperator().length()).trim();
+        }
+        try {
+            return new FilterNode.Condition(GameData.fromString(columnStr), operator, value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses alternatives separated by '|'.
+     *
+     * @return the node, or null if every alternative was ignored
+     */
+    private FilterNode parseOr() {
+        List<FilterNode> parts = new ArrayList<>();
+        parts.add(parseAnd());
+        while (peek() == '|') {
+            pos++;
+            parts.add(parseAnd());
+        }
+        parts.removeIf(n -> n == null);
+        if (parts.isEmpty()) {
+            return null;
+        }
+        return parts.size() == 1 ? parts.get(0) : new FilterNode.Or(parts);
+    }
+
+    /**
+     * Parses terms separated by ','.
+     *
+     * @return the node, or null if every term was ignored
+     */
+    private FilterNode parseAnd() {
+        List<FilterNode> parts = new ArrayList<>();
+        parts.add(parseUnary());
+        while (peek() == ',') {
+            pos++;
+            parts.add(parseUnary());
+        }
+        return and(parts);
+    }
+
+    /**
+     * Parses a negation, a group or a single condition.
+     *
+     * @return the node, or null if it was ignored
+     */
+    private FilterNode parseUnary() {
+        skipSpaces();
+        char c = peek();
+        if (c == '!' && (pos + 1 >= text.length() || text.charAt(pos + 1) != '=')) {
+            pos++;
+            FilterNode child = parseUnary();
+            return child == null ? null : new FilterNode.Not(child);
+        }
+        if (c == '(') {
+            pos++;
+            FilterNode group = parseOr();
+            if (peek() == ')') {
+                pos++;
+            }
+            return group;
+        }
+        return parseCondition(readCondition());
+    }
+
+    /**
+     * Reads the text of a condition up to the next separator.
+     *
+     * Parentheses opened inside the condition are part of it, so a ',', '|' or ')' only
+     * ends the condition when they are balanced.
+     *
+     * @return the condition text
+     */
+    private String readCondition() {
+        int start = pos;
+        int depth = 0;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (depth == 0 && (c == ',' || c == '|' || c == ')')) {
+                break;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            }
+            pos++;
+        }
+        return text.substring(start, pos);
+    }
+
+    /**
+     * Gets the next non-space character without consuming it.
+     *
+     * @return the character, or 0 at the end of the filter
+     */
+    private char peek() {
+        skipSpaces();
+        return pos < text.length() ? text.charAt(pos) : 0;
+    }
+
+    /** Moves past any whitespace. */
+    private void skipSpaces() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    /**
+     * Combines the nodes with AND, dropping ignored (null) nodes.
+     *
+     * @param parts the nodes to combine
+     * @return the combined node, or null if every node was ignored
+     */
+    private static FilterNode and(List<FilterNode> parts) {
+        parts.removeIf(n -> n == null);
+        if (parts.isEmpty()) {
+            return null;
+        }
+        return parts.size() == 1 ? parts.get(0) : new FilterNode.And(parts);
+    }
+}
@@ -1,5 +1,9 @@
 package student;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import org.apache.commons.lang3.StringUtils;
+
 /**
  * Utility class that provides filtering methods for BoardGame objects.
  */
@@ -62,7 +66,7 @@ public final class Filters {
             case NOT_EQUALS:
                 return !trimmedData.equalsIgnoreCase(trimmedValue);
             case CONTAINS:
-                return trimmedData.toLowerCase().contains(trimmedValue.toLowerCase());
+                return StringUtils.containsIgnoreCase(trimmedData, trimmedValue);
             case GREATER_THAN:
                 return trimmedData.compareToIgnoreCase(trimmedValue) > 0;
             case LESS_THAN:
@@ -71,11 +75,88 @@ public final class Filters {
                 return trimmedData.compareToIgnoreCase(trimmedValue) >= 0;
             case LESS_THAN_EQUALS:
                 return trimmedData.compareToIgnoreCase(trimmedValue) <= 0;
+            case BETWEEN:
+                String[] bounds = parseList(trimmedValue);
+                return bounds.length == 2 && trimmedData.compareToIgnoreCase(bounds[0]) >= 0
+                        && trimmedData.compareToIgnoreCase(bounds[1]) <= 0;
+            case IN:
+                for (String member : parseList(trimmedValue)) {
+                    if (trimmedData.equalsIgnoreCase(member)) {
+                        return true;
+                    }
+                }
+                return false;
             default:
                 return false;
         }
     }
 
+    /**
+     * Filters the name of a table row, comparing the packed lower cased bytes directly.
+     *
+     * Matches the same names as {@link #filterString(String, Operations, String)}, without
+     * trimming or lower casing the name of every row.
+     *
+     * @param names the packed names of the table
+     * @param row   the row
+     * @param op    the operation to perform
+     * @param keys  the parsed value, see {@link #parseNameKeys(Operations, String)}
+     * @return true if the filter criteria is met, false otherwise
+     */
+    public static boolean filterName(NameArena names, int row, Operations op, byte[][] keys) {
+        if (keys == null) {
+            return false;
+        }
+        switch (op) {
+            case EQUALS:
+                return names.equalsFolded(row, keys[0]);
+            case NOT_EQUALS:
+                return !names.equalsFolded(row, keys[0]);
+            case CONTAINS:
+                return names.containsFolded(row, keys[0]);
+            case GREATER_THAN:
+                return names.compareFolded(row, keys[0]) > 0;
+            case LESS_THAN:
+                return names.compareFolded(row, keys[0]) < 0;
+            case GREATER_THAN_EQUALS:
+                return names.compareFolded(row, keys[0]) >= 0;
+            case LESS_THAN_EQUALS:
+                return names.compareFolded(row, keys[0]) <= 0;
+            case BETWEEN:
+                return names.compareFolded(row, keys[0]) >= 0
+                        && names.compareFolded(row, keys[1]) <= 0;
+            case IN:
+                for (byte[] member : keys) {
+                    if (names.equalsFolded(row, member)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses the value of a name filter once, so it can be reused for every row.
+     *
+     * @param op    the operation the value belongs to
+     * @param value the value from the filter
+     * @return the trimmed, lower cased parts as UTF-8, or null if the value is not valid
+     */
+    public static byte[][] parseNameKeys(Operations op, String value) {
+        String[] parts = op == Operations.BETWEEN || op == Operations.IN ? parseList(value)
+                : new String[] {value};
+        if (op == Operations.BETWEEN && parts.length != 2) {
+            return null;
+        }
+        byte[][] keys = new byte[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            keys[i] = NameArena.fold(parts[i]);
+        }
+        return keys;
+    }
+
     /**
      * Filters integer data based on the specified operation.
      *
@@ -85,27 +166,8 @@ public final class Filters {
      * @return true if the integer data matches the filter, false otherwise
      */
     public static boolean filterInt(int gameData, Operations op, String value) {
-        try {
-            int numValue = Integer.parseInt(value);
-            switch (op) {
-                case GREATER_THAN_EQUALS:  // Check >= first.
-                    return gameData >= numValue;
-                case LESS_THAN_EQUALS:     // Check <= first.
-                    return gameData <= numValue;
-                case GREATER_THAN:         // Then check >.
-                    return gameData > numValue;
-                case LESS_THAN:            // Then check <.
-                    return gameData < numValue;
-                case EQUALS:
-                    return gameData == numValue;
-                case NOT_EQUALS:
-                    return gameData != numValue;
-                default:
-                    return false;
-            }
-        } catch (NumberFormatException e) {
-            return false;
-        }
+        double[] numbers = parseNumbers(op, value, true);
+        return numbers != null && filterNumber(gameData, op, numbers);
     }
 
     /**
@@ -117,26 +179,122 @@ public final class Filters {
      * @return true if the double data matches the filter, false otherwise
      */
     public static boolean filterDouble(double gameData, Operations op, String value) {
+        double[] numbers = parseNumbers(op, value, false);
+        return numbers != null && filterNumber(gameData, op, numbers);
+    }
+
+    /**
+     * Filters numeric data against a value that has already been parsed.
+     *
+     * @param gameData the data to filter
+     * @param op       the operation to perform
+     * @param numbers  the parsed value, see {@link #parseNumbers(Operations, String, boolean)}
+     * @return true if the data matches the filter, false otherwise
+     */
+    public static boolean filterNumber(double gameData, Operations op, double[] numbers) {
+        switch (op) {
+            case GREATER_THAN_EQUALS:
+                return gameData >= numbers[0];
+            case LESS_THAN_EQUALS:
+                return gameData <= numbers[0];
+            case GREATER_THAN:
+                return gameData > numbers[0];
+            case LESS_THAN:
+                return gameData < numbers[0];
+            case EQUALS:
+                return gameData == numbers[0];
+            case NOT_EQUALS:
+                return gameData != numbers[0];
+            case BETWEEN:
+                return filterBetween(gameData, numbers[0], numbers[1]);
+            case IN:
+                return filterIn(gameData, numbers);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks that numeric data is within a range, both ends included.
+     *
+     * @param gameData the data to filter
+     * @param low      the lowest value allowed
+     * @param high     the highest value allowed
+     * @return true if the data is in the range
+     */
+    public static boolean filterBetween(double gameData, double low, double high) {
+        return gameData >= low && gameData <= high;
+    }
+
+    /**
+     * Checks that numeric data is one of a set of values.
+     *
+     * @param gameData the data to filter
+     * @param members  the values allowed, in ascending order
+     * @return true if the data is one of the values
+     */
+    public static boolean filterIn(double gameData, double[] members) {
+        return Arrays.binarySearch(members, gameData) >= 0;
+    }
+
+    /**
+     * Checks that whole number data is one of a set of small, non-negative values.
+     *
+     * @param gameData the data to filter
+     * @param members  the values allowed, as set bits
+     * @return true if the data is one of the values
+     */
+    public static boolean filterIn(int gameData, BitSet members) {
+        return gameData >= 0 && members.get(gameData);
+    }
+
+    /**
+     * Parses the value of a numeric filter once, so it can be reused for every row.
+     *
+     * A range gives its low and high bound, a set gives its members in ascending order, and
+     * every other operation gives a single number.
+     *
+     * @param op           the operation the value belongs to
+     * @param value        the value from the filter
+     * @param wholeNumbers true if only whole numbers are valid, as for an int column
+     * @return the parsed numbers, or null if the value is not valid
+     */
+    public static double[] parseNumbers(Operations op, String value, boolean wholeNumbers) {
+        String[] parts = op == Operations.BETWEEN || op == Operations.IN ? parseList(value)
+                : new String[] {value.trim()};
+        if (op == Operations.BETWEEN && parts.length != 2) {
+            return null;
+        }
+        double[] numbers = new double[parts.length];
         try {
-            double numValue = Double.parseDouble(value);
-            switch (op) {
-                case GREATER_THAN_EQUALS:
-                    return gameData >= numValue;
-                case LESS_THAN_EQUALS:
-                    return gameData <= numValue;
-                case GREATER_THAN:
-                    return gameData > numValue;
-                case LESS_THAN:
-                    return gameData < numValue;
-                case EQUALS:
-                    return gameData == numValue;
-                case NOT_EQUALS:
-                    return gameData != numValue;
-                default:
-                    return false;
+            for (int i = 0; i < parts.length; i++) {
+                numbers[i] = wholeNumbers ? Integer.parseInt(parts[i])
+                        : Double.parseDouble(parts[i]);
             }
         } catch (NumberFormatException e) {
-            return false;
+            return null;
+        }
+        if (op == Operations.IN) {
+            Arrays.sort(numbers);
+        }
+        return numbers;
+    }
+
+    /**
+     * Splits the value of a range or set, such as (2,3,4), into its parts.
+     *
+     * @param value the value from the filter, the parentheses are optional
+     * @return the trimmed parts
+     */
+    public static String[] parseList(String value) {
+        String list = value.trim();
+        if (list.startsWith("(") && list.endsWith(")")) {
+            list = list.substring(1, list.length() - 1);
+        }
+        String[] parts = list.split(",");
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = parts[i].trim();
         }
+        return parts;
     }
 }
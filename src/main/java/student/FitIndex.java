@@ -0,0 +1,154 @@
+package student;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Index answering "which games fit this many players in this much time".
+ *
+ * A game fits a player count when the count lies within its [minPlayers, maxPlayers]
+ * range, and fits a time budget when it can be finished within it: its longest play time
+ * (the larger of its min and max time) is at most the budget. Games with no play time
+ * recorded (0) never fit a time budget.
+ *
+ * Player counts are small whole numbers, so the index is a grid: one slot per player count
+ * from 1 to {@value #MAX_SLOT}, each listing the games whose player range contains that
+ * count, sorted by longest play time. A query is a binary search in one slot, then the
+ * matching prefix of it, so it costs O(log n + k) for k matches. The last slot also holds
+ * every game for more players, and queries for that many players check each game's range.
+ */
+public final class FitIndex {
+    /** Highest player count with a slot of its own. */
+    static final int MAX_SLOT = 16;
+
+    /** Start of each slot in rows and times, with one extra entry at the end. */
+    private final int[] offsets;
+    /** Rows of every slot, each slot sorted by play time. */
+    private final int[] rows;
+    /** Longest play time of each entry in rows. */
+    private final int[] times;
+    /** Player range of every row, for the shared last slot. */
+    private final int[] minPlayers;
+    /** Player range of every row, for the shared last slot. */
+    private final int[] maxPlayers;
+    /** Number of rows in the table. */
+    private final int size;
+
+    /**
+     * Builds the index over every row.
+     *
+     * @param games the games, in row order
+     */
+    public FitIndex(List<BoardGame> games) {
+        this.size = games.size();
+        this.minPlayers = new int[size];
+        this.maxPlayers = new int[size];
+        int[] longest = new int[size];
+        int[] counts = new int[MAX_SLOT + 1];
+        for (int row = 0; row < size; row++) {
+            BoardGame game = games.get(row);
+            minPlayers[row] = game.getMinPlayers();
+            maxPlayers[row] = game.getMaxPlayers();
+            longest[row] = Math.max(game.getMinPlayTime(), game.getMaxPlayTime());
+            if (longest[row] <= 0) {
+                continue; // no play time, fits no budget
+            }
+            for (int slot = firstSlot(row); slot <= lastSlot(row); slot++) {
+                counts[slot]++;
+            }
+        }
+        this.offsets = new int[MAX_SLOT + 2];
+        for (int slot = 1; slot <= MAX_SLOT; slot++) {
+            offsets[slot + 1] = offsets[slot] + counts[slot];
+        }
+        int total = offsets[MAX_SLOT + 1];
+        long[] entries = new long[total];
+        int[] next = offsets.clone();
+        for (int row = 0; row < size; row++) {
+            if (longest[row] <= 0) {
+                continue;
+            }
+            for (int slot = firstSlot(row); slot <= lastSlot(row); slot++) {
+                // time in the high half, row in the low half: sorting orders by time, then row
+                entries[next[slot]++] = ((long) longest[row] << Integer.SIZE) | row;
+            }
+        }
+        this.rows = new int[total];
+        this.times = new int[total];
+        for (int slot = 1; slot <= MAX_SLOT; slot++) {
+            Arrays.sort(entries, offsets[slot], offsets[slot + 1]);
+        }
+        for (int i = 0; i < total; i++) {
+            rows[i] = (int) entries[i];
+            times[i] = (int) (entries[i] >>> Integer.SIZE);
+        }
+    }
+
+    /**
+     * First slot a row belongs to.
+     *
+     * @param row the row
+     * @return the slot
+     */
+    private int firstSlot(int row) {
+        return Math.min(Math.max(1, minPlayers[row]), MAX_SLOT);
+    }
+
+    /**
+     * Last slot a row belongs to, less than the first if the range is empty.
+     *
+     * @param row the row
+     * @return the slot
+     */
+    private int lastSlot(int row) {
+        return Math.min(maxPlayers[row], MAX_SLOT);
+    }
+
+    /**
+     * Finds the games that fit a player count and a time budget.
+     *
+     * @param players the number of players
+     * @param minutes the time budget in minutes
+     * @return the matching rows
+     */
+    public BitSet fits(int players, int minutes) {
+        BitSet result = new BitSet(size);
+        if (players < 1 || minutes <= 0) {
+            return result;
+        }
+        int slot = Math.min(players, MAX_SLOT);
+        int from = offsets[slot];
+        int to = upperBound(from, offsets[slot + 1], minutes);
+        boolean check = slot == MAX_SLOT;
+        for (int i = from; i < to; i++) {
+            int row = rows[i];
+            if (!check || (minPlayers[row] <= players && players <= maxPlayers[row])) {
+                result.set(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the first entry of a slot whose play time is over the budget.
+     *
+     * @param from    first entry of the slot
+     * @param to      end of the slot, exclusive
+     * @param minutes the budget
+     * @return the position in rows
+     */
+    private int upperBound(int from, int to, int minutes) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= minutes) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,50 @@
+package student;
+
+/**
+ * Where a {@link GameTable} keeps the values of its rows, see {@link Storage}.
+ *
+ * Filters, facets and sorts read single values through {@link #value(int, GameData)}, so
+ * only the games a query returns are ever turned into {@link BoardGame} objects.
+ */
+interface GameColumns {
+
+    /**
+     * Get the number of rows.
+     *
+     * @return the rows
+     */
+    int size();
+
+    /**
+     * Gets the game at a row.
+     *
+     * @param row the row
+     * @return the game, a new object each time unless the games are kept as they are
+     */
+    BoardGame game(int row);
+
+    /**
+     * Gets the name of a row, as it was loaded.
+     *
+     * @param row the row
+     * @return the name
+     */
+    String name(int row);
+
+    /**
+     * Gets the id of a row.
+     *
+     * @param row the row
+     * @return the id
+     */
+    int id(int row);
+
+    /**
+     * Gets the value of a numeric column at a row.
+     *
+     * @param row    the row
+     * @param column the column, see {@link GameTable#isNumeric(GameData)}
+     * @return the value
+     */
+    double value(int row, GameData column);
+}
@@ -1,29 +1,101 @@
 package student;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * Implementation of the IGameList interface.
  *
- * This class manages the selected board games.
+ * This class manages the selected board games. A list opened with
+ * {@link #GameList(Path, Collection)} is kept on disk as it changes, see {@link ListLog}.
  */
-public class GameList implements IGameList {
+public class GameList implements IGameList, Closeable {
+    /**
+     * System property, set to false to stop forcing each change of a saved list to the
+     * disk: changes then survive the process crashing, but not always the machine.
+     */
+    public static final String SYNC_PROPERTY = "bgarena.lists.sync";
 
     /** Internal storage for selected games. */
-    private final List<BoardGame> selectedGames;
+    private final Set<BoardGame> selectedGames;
+    /** Where changes are logged, null for a list kept only in memory. */
+    private final ListLog log;
 
     /**
      * Constructs a new GameList.
      */
     public GameList() {
-        this.selectedGames = new ArrayList<>();
+        this.selectedGames = new LinkedHashSet<>();
+        this.log = null;
+    }
+
+    /**
+     * Opens a saved list, or starts one, and keeps every change to it on disk: each
+     * change appends to a log next to it, compacted into a snapshot now and then. Saved
+     * games no longer in the collection are left out, with a note on System.err.
+     *
+     * Each add, remove or clear is forced to the disk before it returns, and survives a
+     * power loss, unless {@value #SYNC_PROPERTY} is false.
+     *
+     * @param file  the name of the saved list
+     * @param games the collection, to find the saved games by id
+     * @throws IOException if the saved list cannot be read or written
+     */
+    public GameList(Path file, Collection<BoardGame> games) throws IOException {
+        this(file, byId(games));
+    }
+
+    /**
+     * Opens a saved list, see {@link #GameList(Path, Collection)}.
+     *
+     * @param file  the name of the saved list
+     * @param games the games of the collection by id, see {@link #byId(Collection)}
+     * @throws IOException if the saved list cannot be read or written
+     */
+    GameList(Path file, Map<Integer, BoardGame> games) throws IOException {
+        this.selectedGames = new LinkedHashSet<>();
+        this.log = new ListLog(file,
+                !"false".equalsIgnoreCase(System.getProperty(SYNC_PROPERTY)));
+        int missing = 0;
+        for (int id : log.ids()) {
+            BoardGame game = games.get(id);
+            if (game == null) {
+                missing++;
+            } else {
+                selectedGames.add(game);
+            }
+        }
+        if (missing > 0) {
+            System.err.println(missing + " saved games in " + file
+                    + " are no longer in the collection");
+        }
+    }
+
+    /**
+     * Maps the games of a collection by id, to open saved lists with.
+     *
+     * @param games the collection
+     * @return the games by id
+     */
+    static Map<Integer, BoardGame> byId(Collection<BoardGame> games) {
+        Map<Integer, BoardGame> result = new HashMap<>();
+        for (BoardGame game : games) {
+            result.put(game.getId(), game);
+        }
+        return result;
     }
 
     @Override
@@ -35,9 +107,80 @@ public class GameList implements IGameList {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Gets the games in the list, in the same order as {@link #getGameNames()}.
+     *
+     * @return a new list of the games
+     */
+    public List<BoardGame> getGames() {
+        return selectedGames.stream()
+                .sorted(Comparator.comparing(BoardGame::getName))
+                .collect(Collectors.toList());
+    }
+
     @Override
     public void clear() {
         selectedGames.clear();
+        if (log != null) {
+            log.clear();
+            persist();
+        }
+    }
+
+    /**
+     * Writes the list to a new snapshot and empties its log, rather than waiting for the log
+     * to grow. Does nothing for a list kept only in memory.
+     */
+    public void compact() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.compact(ids());
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving list: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Closes the saved list. Every change is already on disk.
+     *
+     * @throws IOException if the log cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    /**
+     * Appends the changes made to the log, compacting it if it has grown large enough.
+     */
+    private void persist() {
+        if (log == null) {
+            return;
+        }
+        try {
+            if (log.commit(selectedGames.size())) {
+                log.compact(ids());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving list: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets the ids of the games in the list.
+     *
+     * @return the ids, in the order the games were added
+     */
+    private List<Integer> ids() {
+        List<Integer> ids = new ArrayList<>(selectedGames.size());
+        for (BoardGame game : selectedGames) {
+            ids.add(game.getId());
+        }
+        return ids;
     }
 
     @Override
@@ -67,6 +210,27 @@ public class GameList implements IGameList {
     @Override
     public void addToList(String str, Stream<BoardGame> filtered)
             throws IllegalArgumentException {
+        PlannerEvents.ListChange event = new PlannerEvents.ListChange();
+        event.begin();
+        int before = selectedGames.size();
+        boolean succeeded = false;
+        try {
+            add(str, filtered);
+            succeeded = true;
+        } finally {
+            persist();
+            commit(event, "add", str, before, succeeded);
+        }
+    }
+
+    /**
+     * Adds games to the list, see {@link #addToList(String, Stream)}.
+     *
+     * @param str      the string to parse and add games to the list
+     * @param filtered the filtered list to use as a basis for adding
+     * @throws IllegalArgumentException if the string is not valid
+     */
+    private void add(String str, Stream<BoardGame> filtered) throws IllegalArgumentException {
         if (str == null || str.trim().isEmpty()) {
             throw new IllegalArgumentException("Input is empty");
         }
@@ -130,6 +294,26 @@ public class GameList implements IGameList {
 
     @Override
     public void removeFromList(String str) throws IllegalArgumentException {
+        PlannerEvents.ListChange event = new PlannerEvents.ListChange();
+        event.begin();
+        int before = selectedGames.size();
+        boolean succeeded = false;
+        try {
+            remove(str);
+            succeeded = true;
+        } finally {
+            persist();
+            commit(event, "remove", str, before, succeeded);
+        }
+    }
+
+    /**
+     * Removes games from the list, see {@link #removeFromList(String)}.
+     *
+     * @param str the string to parse and remove games from the list
+     * @throws IllegalArgumentException if the string is not valid
+     */
+    private void remove(String str) throws IllegalArgumentException {
         if (str == null || str.trim().isEmpty()) {
             throw new IllegalArgumentException("Input is empty");
         }
@@ -165,7 +349,9 @@ public class GameList implements IGameList {
                 if (toRemove.isEmpty()) {
                     throw new IllegalArgumentException("No games to remove in range");
                 }
-                selectedGames.removeAll(toRemove);
+                for (BoardGame game : toRemove) {
+                    removeGame(game);
+                }
             } catch (NumberFormatException e) {
                 throw new IllegalArgumentException("Invalid number in range");
             }
@@ -179,27 +365,65 @@ public class GameList implements IGameList {
                 throw new IllegalArgumentException("Index out of bounds");
             }
             BoardGame gameToRemove = sortedList.get(index - 1);
-            selectedGames.remove(gameToRemove);
+            removeGame(gameToRemove);
             return;
         } catch (NumberFormatException e) {
             // Not a number—treat as a game name.
         }
 
         // Remove by game name (case-insensitive).
-        boolean removed = selectedGames.removeIf(game -> game.getName().equalsIgnoreCase(input));
+        boolean removed = false;
+        for (BoardGame game : sortedList) {
+            if (game.getName().equalsIgnoreCase(input)) {
+                removeGame(game);
+                removed = true;
+            }
+        }
         if (!removed) {
             throw new IllegalArgumentException("No game found with name: " + input);
         }
     }
 
+    /**
+     * Fills in and commits a list change event, if a recording wants it.
+     *
+     * @param event     the event, begun before the change
+     * @param operation "add" or "remove"
+     * @param input     what the user typed
+     * @param before    games in the list before the change
+     * @param succeeded whether the input was valid
+     */
+    private void commit(PlannerEvents.ListChange event, String operation, String input,
+            int before, boolean succeeded) {
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.input = input;
+            event.sizeBefore = before;
+            event.sizeAfter = selectedGames.size();
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
     /**
      * Helper method to add a game if it is not already in the list.
      *
      * @param game the board game to add
      */
     private void addGame(BoardGame game) {
-        if (!selectedGames.contains(game)) {
-            selectedGames.add(game);
+        if (selectedGames.add(game) && log != null) {
+            log.add(game.getId());
+        }
+    }
+
+    /**
+     * Helper method to remove a game if it is in the list.
+     *
+     * @param game the board game to remove
+     */
+    private void removeGame(BoardGame game) {
+        if (selectedGames.remove(game) && log != null) {
+            log.remove(game.getId());
         }
     }
 }
@@ -0,0 +1,387 @@
+package student;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The saved game lists of many users in one process, each kept on disk as a
+ * {@link GameList} opened with {@link GameList#GameList(Path, Collection)}.
+ *
+ * A {@link GameList} is not thread safe, so every call on a user's list holds a lock. The
+ * locks are striped: a user's name picks one of a fixed number of them, so users on other
+ * stripes go ahead in parallel and the registry holds no lock per user. The open lists are
+ * found in a concurrent map, without a lock of their own.
+ *
+ * At most {@code maxOpen} lists are held in memory. When a call opens one more, the least
+ * recently used lists are closed until an eighth of the room is free again, and
+ * {@link #evictIdle(Duration)} closes lists that have not been used for a while. Every
+ * change is already in a list's log, so closing one writes nothing; the next call for that
+ * user replays it from disk.
+ *
+ * User names are folded to lower case, since they name the files {@code <user>.log} and
+ * {@code <user>.snapshot}: "Alice" and "alice" are one user with one list.
+ */
+public final class GameListRegistry implements Closeable {
+    /** Number of lock stripes, by default. */
+    public static final int DEFAULT_STRIPES = 64;
+
+    /** Names a user may have: they name the user's files. */
+    private static final Pattern USER = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    /** Device names Windows will not open as files, whatever the extension. */
+    private static final Pattern RESERVED = Pattern.compile("con|prn|aux|nul|com[1-9]|lpt[1-9]");
+
+    /** The directory the lists are saved in. */
+    private final Path dir;
+    /** The games of the collection by id. */
+    private final Map<Integer, BoardGame> games;
+    /** Most lists held open. */
+    private final int maxOpen;
+    /** The locks, a user's chosen by the hash of the name. */
+    private final ReentrantLock[] stripes;
+    /** The open lists by user. */
+    private final ConcurrentHashMap<String, Entry> open = new ConcurrentHashMap<>();
+    /** Set while a thread is closing the least recently used lists. */
+    private final AtomicBoolean trimming = new AtomicBoolean();
+    /** Lists opened. */
+    private final LongAdder opened = new LongAdder();
+    /** Lists closed to make room or because they were idle. */
+    private final LongAdder evicted = new LongAdder();
+    /** Set once the registry is closed. */
+    private volatile boolean closed;
+
+    /** An open list and when it was last used. */
+    private static final class Entry {
+        /** The list. */
+        private final GameList list;
+        /** When the list was last used, in {@link System#nanoTime()}. */
+        private volatile long lastUsed;
+
+        /**
+         * Constructor for the entry.
+         *
+         * @param list the list, just opened
+         */
+        Entry(GameList list) {
+            this.list = list;
+            this.lastUsed = System.nanoTime();
+        }
+    }
+
+    /**
+     * Constructor for a registry with {@link #DEFAULT_STRIPES} locks.
+     *
+     * @param dir     the directory the lists are saved in, created when needed
+     * @param games   the collection, to find the saved games by id
+     * @param maxOpen the most lists held open
+     * @throws IllegalArgumentException if maxOpen is less than 1
+     */
+    public GameListRegistry(Path dir, Collection<BoardGame> games, int maxOpen) {
+        this(dir, games, maxOpen, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructor for the registry.
+     *
+     * @param dir     the directory the lists are saved in, created when needed
+     * @param games   the collection, to find the saved games by id
+     * @param maxOpen the most lists held open
+     * @param stripes the number of locks, 1 for one lock over every list
+     * @throws IllegalArgumentException if maxOpen or stripes is less than 1
+     */
+    public GameListRegistry(Path dir, Collection<BoardGame> games, int maxOpen, int stripes) {
+        if (maxOpen < 1) {
+            throw new IllegalArgumentException("A registry must hold at least one list open");
+        }
+        if (stripes < 1) {
+            throw new IllegalArgumentException("A registry needs at least one lock");
+        }
+        this.dir = dir;
+        this.games = GameList.byId(games);
+        this.maxOpen = maxOpen;
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Runs an action on a user's list, opening it if it is not open, while holding the
+     * user's lock. The action must not keep the list once it returns.
+     *
+     * @param <T>    the type of the result
+     * @param name   the user, in any case: "Alice" and "alice" share a list
+     * @param action the action
+     * @return what the action returns
+     * @throws IllegalArgumentException if the user name is not valid, or the action throws it
+     * @throws IllegalStateException    if the registry is closed
+     */
+    public <T> T withList(String name, Function<GameList, T> action) {
+        String user = key(name);
+        ReentrantLock lock = stripe(user);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Registry is closed");
+            }
+            Entry entry = open.get(user);
+            if (entry == null) {
+                entry = new Entry(openList(user));
+                open.put(user, entry);
+                opened.increment();
+            } else {
+                entry.lastUsed = System.nanoTime();
+            }
+            return action.apply(entry.list);
+        } finally {
+            lock.unlock();
+            if (open.size() > maxOpen) {
+                trim();
+            }
+        }
+    }
+
+    /**
+     * Checks a user name and folds it to lower case, the form the open lists, the locks and
+     * the files all go by. Case insensitive file systems would otherwise open one pair of
+     * files for two users.
+     *
+     * @param name the user
+     * @return the name in lower case
+     * @throws IllegalArgumentException if the name is not valid, or is a device name
+     */
+    private static String key(String name) {
+        if (name == null || !USER.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid user: " + name);
+        }
+        String user = name.toLowerCase(Locale.ROOT);
+        if (RESERVED.matcher(user).matches()) {
+            throw new IllegalArgumentException("Reserved user name: " + name);
+        }
+        return user;
+    }
+
+    /**
+     * Adds games to a user's list, see {@link GameList#addToList(String, Stream)}.
+     *
+     * @param user     the user
+     * @param str      the string to parse and add games to the list
+     * @param filtered the filtered list to use as a basis for adding
+     * @throws IllegalArgumentException if the user or the string is not valid
+     */
+    public void addToList(String user, String str, Stream<BoardGame> filtered) {
+        withList(user, list -> {
+            list.addToList(str, filtered);
+            return null;
+        });
+    }
+
+    /**
+     * Removes games from a user's list, see {@link GameList#removeFromList(String)}.
+     *
+     * @param user the user
+     * @param str  the string to parse and remove games from the list
+     * @throws IllegalArgumentException if the user or the string is not valid
+     */
+    public void removeFromList(String user, String str) {
+        withList(user, list -> {
+            list.removeFromList(str);
+            return null;
+        });
+    }
+
+    /**
+     * Gets the names of the games in a user's list.
+     *
+     * @param user the user
+     * @return the names, as {@link GameList#getGameNames()}
+     * @throws IllegalArgumentException if the user is not valid
+     */
+    public List<String> getGameNames(String user) {
+        return withList(user, GameList::getGameNames);
+    }
+
+    /**
+     * Gets the number of games in a user's list.
+     *
+     * @param user the user
+     * @return the count
+     * @throws IllegalArgumentException if the user is not valid
+     */
+    public int count(String user) {
+        return withList(user, GameList::count);
+    }
+
+    /**
+     * Closes the lists that have not been used for a while. Meant to be called now and
+     * then, for example from a scheduled executor.
+     *
+     * @param idle how long a list must have gone unused
+     * @return the number of lists closed
+     */
+    public int evictIdle(Duration idle) {
+        long cutoff = System.nanoTime() - idle.toNanos();
+        int count = 0;
+        for (Map.Entry<String, Entry> e : open.entrySet()) {
+            if (e.getValue().lastUsed - cutoff <= 0 && evict(e.getKey(), cutoff)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Closes the least recently used lists until an eighth of the room is free, unless
+     * another thread is already at it.
+     */
+    private void trim() {
+        if (!trimming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = maxOpen - maxOpen / 8;
+            List<Map.Entry<String, Long>> byAge = new ArrayList<>(open.size());
+            for (Map.Entry<String, Entry> e : open.entrySet()) {
+                byAge.add(Map.entry(e.getKey(), e.getValue().lastUsed));
+            }
+            long now = System.nanoTime();
+            // nanoTime values only compare by their difference
+            byAge.sort(Comparator.comparingLong(e -> e.getValue() - now));
+            for (Map.Entry<String, Long> e : byAge) {
+                if (open.size() <= target) {
+                    break;
+                }
+                evict(e.getKey(), e.getValue());
+            }
+        } finally {
+            trimming.set(false);
+        }
+    }
+
+    /**
+     * Closes a user's list if it has not been used since a time.
+     *
+     * @param user   the user
+     * @param cutoff the time, in {@link System#nanoTime()}
+     * @return true if the list was closed
+     */
+    private boolean evict(String user, long cutoff) {
+        ReentrantLock lock = stripe(user);
+        lock.lock();
+        try {
+            Entry entry = open.get(user);
+            if (entry == null || entry.lastUsed - cutoff > 0) {
+                return false;
+            }
+            open.remove(user);
+            closeList(user, entry);
+            evicted.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens a user's saved list.
+     *
+     * @param user the user
+     * @return the list
+     */
+    private GameList openList(String user) {
+        try {
+            return new GameList(dir.resolve(user), games);
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening list of " + user + ": " + e.getMessage(),
+                    e);
+        }
+    }
+
+    /**
+     * Closes a list, reporting rather than throwing a failure: its changes are on disk.
+     *
+     * @param user  the user
+     * @param entry the list
+     */
+    private static void closeList(String user, Entry entry) {
+        try {
+            entry.list.close();
+        } catch (IOException e) {
+            System.err.println("Unable to close the list of " + user + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the lock of a user.
+     *
+     * @param user the user
+     * @return the lock
+     */
+    private ReentrantLock stripe(String user) {
+        int h = user.hashCode() * 0x9E3779B9;
+        return stripes[Math.floorMod(h ^ (h >>> 16), stripes.length)];
+    }
+
+    /**
+     * Get the number of lists open.
+     *
+     * @return the count
+     */
+    public int getOpenCount() {
+        return open.size();
+    }
+
+    /**
+     * Get the number of lists opened since the registry was made, reopened ones included.
+     *
+     * @return the count
+     */
+    public long getOpened() {
+        return opened.sum();
+    }
+
+    /**
+     * Get the number of lists closed to make room or because they were idle.
+     *
+     * @return the count
+     */
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    /**
+     * Closes every open list. Calls on the registry fail afterwards, and closing it again
+     * does nothing.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+        try {
+            for (Map.Entry<String, Entry> e : open.entrySet()) {
+                closeList(e.getKey(), e.getValue());
+            }
+            open.clear();
+        } finally {
+            for (ReentrantLock lock : stripes) {
+                lock.unlock();
+            }
+        }
+    }
+}
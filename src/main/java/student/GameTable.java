@@ -0,0 +1,481 @@
+package student;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The game collection as the planner sees it: a fixed list of rows in name order, and the
+ * statistics and indexes built over its columns.
+ *
+ * A row is the position of a game in the list. Filters work on sets of rows, and only
+ * turn rows back into games when the results are returned. The rows themselves are kept
+ * as the table's {@link Storage} says, on the heap or off it.
+ */
+public final class GameTable {
+    /** Orders rows by name, ignoring case, then by id so the order is always the same. */
+    static final Comparator<BoardGame> ROW_ORDER = (a, b) -> {
+        int cmp = compareNames(a.getName(), b.getName());
+        return cmp != 0 ? cmp : Integer.compare(a.getId(), b.getId());
+    };
+
+    /** Where the games are kept. */
+    private final Storage storage;
+    /** Every game, in row order. */
+    private final GameColumns rows;
+    /** Every game, in row order, as a list. */
+    private final List<BoardGame> rowList = new AbstractList<BoardGame>() {
+        @Override
+        public BoardGame get(int row) {
+            return rows.game(row);
+        }
+
+        @Override
+        public int size() {
+            return rows.size();
+        }
+    };
+    /** The names of the rows, packed for filtering. */
+    private final NameArena names;
+    /** Statistics for every filterable column. */
+    private final Map<GameData, ColumnStats> stats = new EnumMap<>(GameData.class);
+    /** Sorted indexes for the numeric columns, built as queries need them. */
+    private final AdaptiveIndexes indexes = new AdaptiveIndexes(this);
+    /** Index of the names, for prefix searches. */
+    private final PrefixIndex prefixIndex;
+    /** Trigram index of the names, for typo tolerant searches. */
+    private final NgramIndex ngramIndex;
+    /** Player count and play time index, for fit queries. */
+    private final FitIndex fitIndex;
+    /** Vantage point tree of the game features, for similar games. */
+    private final SimilarityIndex similarityIndex;
+    /** Sort ranks of each column, by ordinal, built on first use. */
+    private final int[][] ranks = new int[GameData.values().length][];
+    /** Number of distinct ranks of each column, by ordinal. */
+    private final int[] distinctRanks = new int[GameData.values().length];
+    /** The index file the indexes were read from, null if they were built here. */
+    private final Path indexFile;
+
+    /**
+     * Builds the table, its statistics and its indexes, keeping the games on the heap.
+     *
+     * @param games the games in the collection
+     */
+    public GameTable(Set<BoardGame> games) {
+        this(games, Storage.HEAP);
+    }
+
+    /**
+     * Builds the table, its statistics and its indexes.
+     *
+     * @param games   the games in the collection
+     * @param storage where to keep the games once the indexes are built
+     */
+    public GameTable(Set<BoardGame> games, Storage storage) {
+        this(games, storage, null);
+    }
+
+    /**
+     * Builds the table and its statistics, reading the sorted column, name prefix and
+     * trigram indexes from an {@link IndexFile} in the directory when it holds one for these
+     * games, and otherwise building them and saving them there for the next table.
+     * An unusable file is reported on System.err, then built again. Without a directory,
+     * the sorted column indexes are left to {@link #adaptiveIndexes()} to build as the
+     * queries ask for them.
+     *
+     * @param games    the games in the collection
+     * @param storage  where to keep the games once the indexes are built
+     * @param indexDir the directory of index files, null to always build the indexes
+     */
+    public GameTable(Set<BoardGame> games, Storage storage, Path indexDir) {
+        List<BoardGame> sorted = new ArrayList<>(games);
+        sorted.sort(ROW_ORDER);
+
+        this.names = new NameArena(sorted);
+        stats.put(GameData.NAME, new ColumnStats(GameData.NAME, names));
+        long fingerprint = indexDir == null ? 0 : IndexFile.fingerprint(sorted);
+        Path file = indexDir == null ? null : IndexFile.pathFor(indexDir, fingerprint);
+        List<ColumnIndex> columns = new ArrayList<>();
+        PrefixIndex prefix = null;
+        NgramIndex ngram = null;
+        if (file != null) {
+            try {
+                IndexFile saved = IndexFile.open(file, fingerprint, sorted.size());
+                if (saved != null) {
+                    for (GameData column : GameData.values()) {
+                        if (isNumeric(column)) {
+                            columns.add(new ColumnIndex(column, saved));
+                        }
+                    }
+                    prefix = new PrefixIndex(names, saved);
+                    ngram = new NgramIndex(names, saved);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Rebuilding index file " + file + ": " + e.getMessage());
+                columns.clear();
+                prefix = null;
+                ngram = null;
+            }
+        }
+        boolean loaded = ngram != null;
+        this.indexFile = loaded ? file : null;
+        this.prefixIndex = loaded ? prefix : new PrefixIndex(sorted, names);
+        this.ngramIndex = loaded ? ngram : new NgramIndex(names);
+        this.fitIndex = new FitIndex(sorted);
+        this.similarityIndex = new SimilarityIndex(sorted);
+        for (ColumnIndex index : columns) {
+            indexes.put(index);
+            stats.put(index.getColumn(), new ColumnStats(index.getColumn(), index.sortedValues()));
+        }
+        if (!loaded) {
+            for (GameData column : GameData.values()) {
+                if (!isNumeric(column)) {
+                    continue;
+                }
+                double[] values = new double[sorted.size()];
+                for (int row = 0; row < values.length; row++) {
+                    values[row] = numericValue(sorted.get(row), column);
+                }
+                stats.put(column, new ColumnStats(column, values));
+                if (file != null) {
+                    // the file is shared with other planners, so it holds every index
+                    indexes.put(new ColumnIndex(column, values));
+                }
+            }
+        }
+        if (file != null && !loaded) {
+            save(file, fingerprint, sorted.size());
+        }
+        this.storage = storage;
+        this.rows = storage.store(sorted);
+    }
+
+    /**
+     * Saves the sorted column, name prefix and trigram indexes, reporting on System.err if
+     * they cannot be saved.
+     *
+     * @param file        the index file
+     * @param fingerprint the fingerprint of the games
+     * @param size        the number of rows
+     */
+    private void save(Path file, long fingerprint, int size) {
+        IndexFile.Writer out = new IndexFile.Writer();
+        try {
+            for (GameData column : GameData.values()) {
+                if (isNumeric(column)) {
+                    indexes.get(column).save(out);
+                }
+            }
+            prefixIndex.save(out);
+            ngramIndex.save(out);
+            out.save(file, fingerprint, size);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Unable to save index file " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the column holds numbers that can be filtered on.
+     *
+     * @param column the column
+     * @return true for every column except name and id
+     */
+    public static boolean isNumeric(GameData column) {
+        return column != GameData.NAME && column != GameData.ID;
+    }
+
+    /**
+     * Whether a numeric column holds decimal values rather than whole numbers.
+     *
+     * @param column the column
+     * @return true for rating and difficulty
+     */
+    public static boolean isDecimal(GameData column) {
+        return column == GameData.RATING || column == GameData.DIFFICULTY;
+    }
+
+    /**
+     * Compares two names as their trimmed forms compare in
+     * {@link String#CASE_INSENSITIVE_ORDER}, without copying them. ASCII letters are folded
+     * in place; the rare pair that differs at a non-ASCII character is handed to the JDK.
+     *
+     * @param a a name
+     * @param b another name
+     * @return negative, zero or positive as a sorts before, with or after b
+     */
+    static int compareNames(String a, String b) {
+        int aFrom = 0;
+        int aTo = a.length();
+        while (aFrom < aTo && a.charAt(aFrom) <= ' ') {
+            aFrom++;
+        }
+        while (aTo > aFrom && a.charAt(aTo - 1) <= ' ') {
+            aTo--;
+        }
+        int bFrom = 0;
+        int bTo = b.length();
+        while (bFrom < bTo && b.charAt(bFrom) <= ' ') {
+            bFrom++;
+        }
+        while (bTo > bFrom && b.charAt(bTo - 1) <= ' ') {
+            bTo--;
+        }
+        int n = Math.min(aTo - aFrom, bTo - bFrom);
+        for (int i = 0; i < n; i++) {
+            char x = a.charAt(aFrom + i);
+            char y = b.charAt(bFrom + i);
+            if (x == y) {
+                continue;
+            }
+            if (x >= 0x80 || y >= 0x80) {
+                return String.CASE_INSENSITIVE_ORDER.compare(a.substring(aFrom, aTo),
+                        b.substring(bFrom, bTo));
+            }
+            x = x >= 'A' && x <= 'Z' ? (char) (x + ('a' - 'A')) : x;
+            y = y >= 'A' && y <= 'Z' ? (char) (y + ('a' - 'A')) : y;
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return (aTo - aFrom) - (bTo - bFrom);
+    }
+
+    /**
+     * Gets the value of a numeric column from a game.
+     *
+     * @param game   the game
+     * @param column the column, see {@link #isNumeric(GameData)}
+     * @return the value
+     */
+    public static double numericValue(BoardGame game, GameData column) {
+        switch (column) {
+            case RATING:
+                return game.getRating();
+            case DIFFICULTY:
+                return game.getDifficulty();
+            case RANK:
+                return game.getRank();
+            case MIN_PLAYERS:
+                return game.getMinPlayers();
+            case MAX_PLAYERS:
+                return game.getMaxPlayers();
+            case MIN_TIME:
+                return game.getMinPlayTime();
+            case MAX_TIME:
+                return game.getMaxPlayTime();
+            case YEAR:
+                return game.getYearPublished();
+            default:
+                throw new IllegalArgumentException("Not a numeric column: " + column);
+        }
+    }
+
+    /**
+     * Get where the games are kept.
+     *
+     * @return the storage
+     */
+    public Storage storage() {
+        return storage;
+    }
+
+    /**
+     * Get the index file the sorted column, name prefix and trigram indexes were read from.
+     *
+     * @return the file, or null if the indexes were built by this table
+     */
+    public Path indexFile() {
+        return indexFile;
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Get the game at a row.
+     *
+     * @param row the row
+     * @return the game
+     */
+    public BoardGame row(int row) {
+        return rows.game(row);
+    }
+
+    /**
+     * Gets the value of a numeric column at a row, without turning the row into a game.
+     *
+     * @param row    the row
+     * @param column the column, see {@link #isNumeric(GameData)}
+     * @return the value
+     */
+    public double value(int row, GameData column) {
+        return rows.value(row, column);
+    }
+
+    /**
+     * Get every game, in row order.
+     *
+     * @return an unmodifiable list of the games, built as they are read when off the heap
+     */
+    public List<BoardGame> rows() {
+        return rowList;
+    }
+
+    /**
+     * Get the packed names of the rows.
+     *
+     * @return the names
+     */
+    public NameArena names() {
+        return names;
+    }
+
+    /**
+     * Get the statistics for a column.
+     *
+     * @param column the column
+     * @return the statistics, or null if the column has none
+     */
+    public ColumnStats stats(GameData column) {
+        return stats.get(column);
+    }
+
+    /**
+     * Gets the sort rank of every row in a column: its distinct values numbered in ascending
+     * order from 0, so rows compare as their values do. Names compare ignoring case and
+     * surrounding spaces, as they do in row order. Built the first time it is asked for.
+     *
+     * @param column the column
+     * @return the rank of every row, not to be modified
+     */
+    public int[] ranks(GameData column) {
+        synchronized (ranks) {
+            int c = column.ordinal();
+            if (ranks[c] == null) {
+                int[] result = new int[rows.size()];
+                if (column == GameData.NAME) {
+                    distinctRanks[c] = nameRanks(result);
+                } else if (column == GameData.ID) {
+                    double[] ids = new double[rows.size()];
+                    for (int row = 0; row < ids.length; row++) {
+                        ids[row] = rows.id(row);
+                    }
+                    distinctRanks[c] = new ColumnIndex(column, ids).ranks(result);
+                } else {
+                    ColumnIndex index = indexes.get(column);
+                    if (index == null) {
+                        double[] values = new double[rows.size()];
+                        for (int row = 0; row < values.length; row++) {
+                            values[row] = rows.value(row, column);
+                        }
+                        index = new ColumnIndex(column, values);
+                    }
+                    distinctRanks[c] = index.ranks(result);
+                }
+                ranks[c] = result;
+            }
+            return ranks[c];
+        }
+    }
+
+    /**
+     * Gets the number of distinct sort ranks of a column.
+     *
+     * @param column the column
+     * @return one more than the highest rank in {@link #ranks(GameData)}
+     */
+    public int distinctRanks(GameData column) {
+        synchronized (ranks) {
+            ranks(column);
+            return distinctRanks[column.ordinal()];
+        }
+    }
+
+    /**
+     * Ranks the names. Rows are already in name order, so equal names are neighbours.
+     *
+     * @param result receives the rank of every row
+     * @return the number of distinct names
+     */
+    private int nameRanks(int[] result) {
+        int rank = -1;
+        String previous = null;
+        for (int row = 0; row < rows.size(); row++) {
+            String name = rows.name(row).trim();
+            if (previous == null || !name.equalsIgnoreCase(previous)) {
+                rank++;
+            }
+            result[row] = rank;
+            previous = name;
+        }
+        return rank + 1;
+    }
+
+    /**
+     * Get the sorted index for a column.
+     *
+     * @param column the column
+     * @return the index, or null if the column is not indexed, or not yet
+     */
+    public ColumnIndex index(GameData column) {
+        return indexes.get(column);
+    }
+
+    /**
+     * Get the sorted column indexes, which count the conditions evaluated to decide which
+     * to build.
+     *
+     * @return the indexes
+     */
+    AdaptiveIndexes adaptiveIndexes() {
+        return indexes;
+    }
+
+    /**
+     * Get the name prefix index.
+     *
+     * @return the index
+     */
+    public PrefixIndex prefixIndex() {
+        return prefixIndex;
+    }
+
+    /**
+     * Get the name trigram index.
+     *
+     * @return the index
+     */
+    public NgramIndex ngramIndex() {
+        return ngramIndex;
+    }
+
+    /**
+     * Get the player count and play time index.
+     *
+     * @return the index
+     */
+    public FitIndex fitIndex() {
+        return fitIndex;
+    }
+
+    /**
+     * Get the game feature index.
+     *
+     * @return the index
+     */
+    public SimilarityIndex similarityIndex() {
+        return similarityIndex;
+    }
+}
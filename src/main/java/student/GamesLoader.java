@@ -35,10 +35,25 @@ public final class GamesLoader {
      * @return a set of BoardGame objects
      */
     public static Set<BoardGame> loadGamesFile(String filename) {
+        long start = System.nanoTime();
+        Set<BoardGame> games = readGamesFile(filename);
+        PlannerMetrics.getDefault().recordLoad(filename, games.size(), System.nanoTime() - start);
+        return games;
+    }
+
+    /**
+     * Reads the games from the csv file, see {@link #loadGamesFile(String)}.
+     *
+     * @param filename the name of the file to load
+     * @return a set of BoardGame objects
+     */
+    private static Set<BoardGame> readGamesFile(String filename) {
 
         Set<BoardGame> games = new HashSet<>();
 
         List<String> lines;
+        PlannerEvents.LoadPhase read = new PlannerEvents.LoadPhase();
+        read.begin();
         try {
             // this is so we can store the files in the resources folder
             InputStream is = GamesLoader.class.getResourceAsStream(filename);
@@ -49,34 +64,63 @@ public final class GamesLoader {
             System.err.println("Error reading file: " + e.getMessage());
             return games;
         }
+        commitPhase(read, filename, "read", lines == null ? 0 : lines.size(), 0);
         if (lines == null || lines.isEmpty()) {
             return games;
         }
 
+        PlannerEvents.LoadPhase parse = new PlannerEvents.LoadPhase();
+        parse.begin();
         Map<GameData, Integer> columnMap = processHeader(lines.remove(0));
 
-        games = lines.stream().map(line -> toBoardGame(line, columnMap))
+        // games sharing a name (editions, reprints) share a single String for it
+        Map<String, String> names = new HashMap<>();
+        games = lines.stream().map(line -> toBoardGame(line, columnMap, names))
                 .filter(game -> game != null).collect(Collectors.toSet());
+        commitPhase(parse, filename, "parse", lines.size() + 1, games.size());
 
         return games;
 
     }
 
+    /**
+     * Fills in and commits a load phase event, if a recording wants it.
+     *
+     * @param event    the event, begun at the start of the phase
+     * @param filename the file loaded
+     * @param phase    "read" or "parse"
+     * @param lines    lines handled
+     * @param games    games produced
+     */
+    private static void commitPhase(PlannerEvents.LoadPhase event, String filename,
+            String phase, int lines, int games) {
+        if (event.shouldCommit()) {
+            event.file = filename;
+            event.phase = phase;
+            event.lines = lines;
+            event.games = games;
+            event.commit();
+        }
+    }
+
     /**
      * Converts a line from the csv file into a BoardGame object.
      *
      * @param line      the line to convert
      * @param columnMap the map of columns to index
+     * @param names     the names read so far, to reuse
      * @return a BoardGame object
      */
-    private static BoardGame toBoardGame(String line, Map<GameData, Integer> columnMap) {
+    private static BoardGame toBoardGame(String line, Map<GameData, Integer> columnMap,
+            Map<String, String> names) {
         String[] columns = line.split(DELIMITER);
         if (columns.length < columnMap.values().stream().max(Integer::compareTo).get()) {
             return null;
         }
 
         try {
-            BoardGame game = new BoardGame(columns[columnMap.get(GameData.NAME)],
+            String name = names.computeIfAbsent(columns[columnMap.get(GameData.NAME)], n -> n);
+            BoardGame game = new BoardGame(name,
                     Integer.parseInt(columns[columnMap.get(GameData.ID)]),
                     Integer.parseInt(columns[columnMap.get(GameData.MIN_PLAYERS)]),
                     Integer.parseInt(columns[columnMap.get(GameData.MAX_PLAYERS)]),
@@ -0,0 +1,45 @@
+package student;
+
+import java.util.List;
+
+/**
+ * Rows kept as the games they were loaded as, on the heap.
+ */
+final class HeapColumns implements GameColumns {
+    /** Every game, in row order. */
+    private final List<BoardGame> rows;
+
+    /**
+     * Constructor for the columns.
+     *
+     * @param rows the games, in row order, not copied
+     */
+    HeapColumns(List<BoardGame> rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    @Override
+    public BoardGame game(int row) {
+        return rows.get(row);
+    }
+
+    @Override
+    public String name(int row) {
+        return rows.get(row).getName();
+    }
+
+    @Override
+    public int id(int row) {
+        return rows.get(row).getId();
+    }
+
+    @Override
+    public double value(int row, GameData column) {
+        return GameTable.numericValue(rows.get(row), column);
+    }
+}
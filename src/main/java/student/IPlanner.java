@@ -1,5 +1,7 @@
 package student;
 
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 /**
@@ -60,6 +62,10 @@ public interface IPlanner {
      *
      * ~= : contains the text
      *
+     * =between=(low,high) : between low and high, both included
+     *
+     * =in=(a,b,c) : equal to one of the values
+     *
      * The left side of the filter describes the column to filter on. The right side of the filter
      * describes the value to filter on.
      *
@@ -80,6 +86,15 @@ public interface IPlanner {
      * This would filter the board games to only those with a minimum number of players greater than
      * 4 and less than 6.
      *
+     * A pipe is treated as an OR, an exclamation mark in front of a condition or group negates
+     * it, and parentheses group conditions. Negation binds tightest, then commas, then pipes.
+     * For example:
+     *
+     * (name~=go|name~=chess),!maxPlayers>4
+     *
+     * would filter the board games to those with go or chess in the name that do not allow more
+     * than 4 players.
+     *
      * Spaces should be ignored, but can be included for readability. For example:
      *
      * minPlayers > 4
@@ -115,6 +130,104 @@ public interface IPlanner {
      */
     Stream<BoardGame> filter(String filter, GameData sortOn, boolean ascending);
 
+    /**
+     * Filters the games by the passed in text filter, and sorts them on several keys.
+     *
+     * For example {@code SortOrder.parse("rating desc, difficulty asc, name")} sorts by
+     * rating, highest first, then games of the same rating by difficulty, then by name.
+     * A key can also be a weighted score, see {@link SortOrder#weighted}. Games equal on
+     * every key are returned in name order.
+     *
+     * @param filter The filter to apply to the board games.
+     * @param order The order to return the games in.
+     * @return A stream of board games that match the filter, in the order given.
+     * @see #filter(String)
+     */
+    Stream<BoardGame> filter(String filter, SortOrder order);
+
+    /**
+     * Explains how a filter is run.
+     *
+     * The filter is run once, and the plan it used is returned as indented text: the order
+     * the conditions ran in, whether each one used an index or scanned the rows left by the
+     * conditions before it, and the estimated and actual number of rows at every step.
+     *
+     * @param filter The filter to explain, in the same format as {@link #filter(String)}.
+     * @return A readable description of the plan.
+     */
+    String explain(String filter);
+
+    /**
+     * Summarizes columns over the games matching a filter, for showing facet counts next to
+     * the results.
+     *
+     * Each facet holds the count, minimum, maximum and mean of the column, and the number of
+     * games in each of the column's fixed buckets (such as games per player count, per era
+     * or per difficulty band). All the facets are computed together in one pass over the
+     * matching games.
+     *
+     * @param filter The filter to apply, in the same format as {@link #filter(String)}.
+     * @param columns The numeric columns to summarize; name and id are not allowed.
+     * @return A facet per column, in the order requested.
+     */
+    Map<GameData, Facet> facets(String filter, GameData... columns);
+
+    /**
+     * Finds the games that fit a group and a time budget, optionally narrowed by a filter.
+     *
+     * A game fits when the number of players is within its player range and it can be
+     * finished within the budget: its longest play time (the larger of GameData.MIN_TIME and
+     * GameData.MAX_TIME) is at most the given minutes. Games with no play time recorded
+     * never fit. Answered from a prebuilt index, so it stays fast however many games there
+     * are.
+     *
+     * @param players The number of players.
+     * @param minutes The time available, in minutes.
+     * @param filter A filter to narrow the games further, in the same format as
+     *        {@link #filter(String)}, or null or empty for none.
+     * @return The games that fit, in name order.
+     */
+    Stream<BoardGame> fits(int players, int minutes, String filter);
+
+    /**
+     * Suggests completions for a partly typed game name.
+     *
+     * Returns the games whose name starts with the prefix, ignoring case and surrounding
+     * spaces, best ranked (GameData.RANK) first. Unranked games come last. Meant to be called
+     * on every keystroke, so it runs against a prebuilt index rather than a filter.
+     *
+     * @param prefix The start of the name.
+     * @param limit The most games to return.
+     * @return Up to limit games, best ranked first.
+     */
+    List<BoardGame> suggest(String prefix, int limit);
+
+    /**
+     * Finds games whose name is close to the given one, to recover from typos.
+     *
+     * Case and surrounding spaces are ignored. A game matches if its name can be turned into
+     * the given one with at most maxDistance single character insertions, deletions or
+     * substitutions.
+     *
+     * @param name The name, possibly misspelled.
+     * @param maxDistance The most edits allowed.
+     * @return The matching games, closest first, then in name order.
+     */
+    List<BoardGame> fuzzyMatch(String name, int maxDistance);
+
+    /**
+     * Finds the games most like the named one, for "if you liked X" suggestions.
+     *
+     * Games are compared on rating, difficulty, player range, play time and year, each
+     * scaled to the same range. The name is matched ignoring case and surrounding spaces,
+     * and other games with the same name are left out of the results.
+     *
+     * @param gameName The name of the game liked.
+     * @param k The most games to return.
+     * @return Up to k games, most similar first, or an empty list if no game has the name.
+     */
+    List<BoardGame> similarTo(String gameName, int k);
+
     /**
      * Resets the collection to have no filters applied.
      */
@@ -0,0 +1,378 @@
+package student;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * The sorted column, name prefix and trigram indexes of a collection, saved to a file that
+ * every planner on the host maps read only. The operating system keeps one copy of the
+ * file in its page cache for all of them, and a planner that finds the file skips building
+ * those indexes.
+ *
+ * The file is named after the format version and a fingerprint of the games, so a changed
+ * collection or format gets a new file rather than a wrong one. It starts with a header:
+ * magic, version, fingerprint, number of rows, number of sections, payload length and the
+ * CRC32C of the payload, which is checked when the file is opened. The payload is a list of
+ * sections, each an element type, an element count and the elements, little endian and
+ * padded to eight bytes. The indexes read their sections back in the order they wrote
+ * them.
+ *
+ * Files are written to a temporary name and moved into place, so a planner never maps a
+ * file another one is still writing. A mapping is at most 2 GB.
+ */
+public final class IndexFile {
+    /** Current format version, bumped whenever the layout of an index changes. */
+    public static final int VERSION = 2;
+    /** System property naming the directory index files are kept in. */
+    public static final String PROPERTY = "bgarena.indexes";
+
+    /** First four bytes of every file, "BGIX". */
+    private static final int MAGIC = 0x42474958;
+    /** Bytes before the payload. */
+    private static final int HEADER = 40;
+    /** Section of ints. */
+    private static final int INTS = 1;
+    /** Section of longs. */
+    private static final int LONGS = 2;
+    /** Section of doubles. */
+    private static final int DOUBLES = 3;
+
+    /** The file mapped. */
+    private final Path path;
+    /** The payload, positioned at the next section to read. */
+    private final ByteBuffer payload;
+
+    /**
+     * Wraps a mapped payload.
+     *
+     * @param path    the file
+     * @param payload the payload
+     */
+    private IndexFile(Path path, ByteBuffer payload) {
+        this.path = path;
+        this.payload = payload;
+    }
+
+    /**
+     * Gets the directory chosen by the system property.
+     *
+     * @return the directory, or null if index files are not used
+     */
+    public static Path configuredDirectory() {
+        String dir = System.getProperty(PROPERTY);
+        return dir == null || dir.isBlank() ? null : Path.of(dir);
+    }
+
+    /**
+     * Gets the file holding the indexes of a collection.
+     *
+     * @param dir         the directory of index files
+     * @param fingerprint the fingerprint of the games, see {@link #fingerprint(List)}
+     * @return the file
+     */
+    public static Path pathFor(Path dir, long fingerprint) {
+        return dir.resolve(String.format("games-v%d-%016x.idx", VERSION, fingerprint));
+    }
+
+    /**
+     * Fingerprints games in row order: their ids, every character of their names, and their
+     * numbers. Indexes built over games with the same fingerprint are the same.
+     *
+     * @param rows the games, in row order
+     * @return the fingerprint
+     */
+    static long fingerprint(List<BoardGame> rows) {
+        long hash = 0xCBF29CE484222325L;
+        for (BoardGame game : rows) {
+            hash = mix(hash, game.getId());
+            hash = mixName(hash, game.getName());
+            for (GameData column : GameData.values()) {
+                if (GameTable.isNumeric(column)) {
+                    hash = mix(hash,
+                            Double.doubleToLongBits(GameTable.numericValue(game, column)));
+                }
+            }
+        }
+        return mix(hash, rows.size());
+    }
+
+    /**
+     * Folds a name into a hash, four characters at a time. The prefix and trigram indexes
+     * depend on every character, so a name's own hash code, which other names share, is not
+     * enough.
+     *
+     * @param hash the hash so far
+     * @param name the name
+     * @return the new hash
+     */
+    private static long mixName(long hash, String name) {
+        long word = 0;
+        for (int i = 0; i < name.length(); i++) {
+            word = word << Character.SIZE | name.charAt(i);
+            if ((i & 3) == 3) {
+                hash = mix(hash, word);
+                word = 0;
+            }
+        }
+        return mix(mix(hash, word), name.length());
+    }
+
+    /**
+     * Folds a value into a hash.
+     *
+     * @param hash  the hash so far
+     * @param value the value
+     * @return the new hash
+     */
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0x100000001B3L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Maps an index file and checks it.
+     *
+     * @param file        the file
+     * @param fingerprint the fingerprint of the games it must be for
+     * @param rows        the number of rows it must be for
+     * @return the file, positioned at its first section, or null if there is no file
+     * @throws IOException if the file cannot be read, or is not a valid index file for
+     *                     these games
+     */
+    static IndexFile open(Path file, long fingerprint, int rows) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER || size > Integer.MAX_VALUE) {
+                throw new IOException("bad size " + size);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (mapped.getInt(0) != MAGIC) {
+            throw new IOException("not an index file");
+        }
+        if (mapped.getInt(4) != VERSION) {
+            throw new IOException("version " + mapped.getInt(4) + ", expected " + VERSION);
+        }
+        if (mapped.getLong(8) != fingerprint || mapped.getInt(16) != rows) {
+            throw new IOException("built for other games");
+        }
+        long length = mapped.getLong(24);
+        if (length != mapped.capacity() - HEADER) {
+            throw new IOException("truncated");
+        }
+        ByteBuffer payload = mapped.slice(HEADER, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != mapped.getInt(32)) {
+            throw new IOException("checksum mismatch");
+        }
+        return new IndexFile(file, payload);
+    }
+
+    /**
+     * Get the file mapped.
+     *
+     * @return the path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Reads the next section as ints.
+     *
+     * @return a read only view of the section
+     * @throws IllegalArgumentException if the next section is not ints
+     */
+    IntBuffer ints() {
+        return section(INTS, Integer.BYTES).asIntBuffer();
+    }
+
+    /**
+     * Reads the next section as longs.
+     *
+     * @return a read only view of the section
+     * @throws IllegalArgumentException if the next section is not longs
+     */
+    LongBuffer longs() {
+        return section(LONGS, Long.BYTES).asLongBuffer();
+    }
+
+    /**
+     * Reads the next section as doubles.
+     *
+     * @return a read only view of the section
+     * @throws IllegalArgumentException if the next section is not doubles
+     */
+    DoubleBuffer doubles() {
+        return section(DOUBLES, Double.BYTES).asDoubleBuffer();
+    }
+
+    /**
+     * Reads the next section.
+     *
+     * @param type  the element type expected
+     * @param width the bytes of an element
+     * @return the elements, little endian
+     * @throws IllegalArgumentException if the next section is not of that type
+     */
+    private ByteBuffer section(int type, int width) {
+        if (payload.remaining() < 2 * Integer.BYTES || payload.getInt() != type) {
+            throw new IllegalArgumentException("Index file " + path + " is out of step");
+        }
+        long bytes = (long) payload.getInt() * width;
+        if (bytes < 0 || bytes > payload.remaining()) {
+            throw new IllegalArgumentException("Index file " + path + " is out of step");
+        }
+        ByteBuffer result = payload.slice(payload.position(), (int) bytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        payload.position(payload.position() + (int) align(bytes));
+        return result;
+    }
+
+    /**
+     * Rounds a length up to a multiple of eight, so every section starts aligned.
+     *
+     * @param bytes the length
+     * @return the padded length
+     */
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Collects the sections of a new index file, then writes it.
+     */
+    static final class Writer {
+        /** The sections so far, each with its type and count. */
+        private final List<ByteBuffer> sections = new ArrayList<>();
+        /** Bytes written so far. */
+        private long length;
+
+        /**
+         * Adds a section of ints.
+         *
+         * @param values the ints, from index 0 to the limit
+         */
+        void ints(IntBuffer values) {
+            ByteBuffer section = start(INTS, values.limit(), Integer.BYTES);
+            section.asIntBuffer().put(values.duplicate().rewind());
+            finish(section);
+        }
+
+        /**
+         * Adds a section of longs.
+         *
+         * @param values the longs, from index 0 to the limit
+         */
+        void longs(LongBuffer values) {
+            ByteBuffer section = start(LONGS, values.limit(), Long.BYTES);
+            section.asLongBuffer().put(values.duplicate().rewind());
+            finish(section);
+        }
+
+        /**
+         * Adds a section of doubles.
+         *
+         * @param values the doubles, from index 0 to the limit
+         */
+        void doubles(DoubleBuffer values) {
+            ByteBuffer section = start(DOUBLES, values.limit(), Double.BYTES);
+            section.asDoubleBuffer().put(values.duplicate().rewind());
+            finish(section);
+        }
+
+        /**
+         * Starts a section.
+         *
+         * @param type  the element type
+         * @param count the number of elements
+         * @param width the bytes of an element
+         * @return a buffer positioned at the elements
+         */
+        private ByteBuffer start(int type, int count, int width) {
+            long bytes = 2 * Integer.BYTES + align((long) count * width);
+            if (length + bytes > Integer.MAX_VALUE - HEADER) {
+                throw new IllegalArgumentException("Indexes too large for an index file");
+            }
+            ByteBuffer section = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+            section.putInt(type).putInt(count);
+            return section;
+        }
+
+        /**
+         * Ends a section started with {@link #start(int, int, int)}.
+         *
+         * @param section the section, padding included
+         */
+        private void finish(ByteBuffer section) {
+            section.position(section.capacity());
+            section.flip();
+            sections.add(section);
+            length += section.capacity();
+        }
+
+        /**
+         * Writes the file, replacing any file of the same name in one step.
+         *
+         * @param file        the file
+         * @param fingerprint the fingerprint of the games
+         * @param rows        the number of rows
+         * @throws IOException if the file cannot be written
+         */
+        void save(Path file, long fingerprint, int rows) throws IOException {
+            CRC32C crc = new CRC32C();
+            for (ByteBuffer section : sections) {
+                crc.update(section.duplicate());
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(fingerprint).putInt(rows)
+                    .putInt(sections.size()).putLong(length).putInt((int) crc.getValue())
+                    .putInt(0).flip();
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try {
+                if (Files.getFileStore(temp).supportsFileAttributeView("posix")) {
+                    // temporary files are private, the planners sharing it may not be
+                    Files.setPosixFilePermissions(temp,
+                            PosixFilePermissions.fromString("rw-r--r--"));
+                }
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    while (header.hasRemaining()) {
+                        channel.write(header);
+                    }
+                    for (ByteBuffer section : sections) {
+                        ByteBuffer data = section.duplicate();
+                        while (data.hasRemaining()) {
+                            channel.write(data);
+                        }
+                    }
+                    channel.force(true);
+                }
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package student;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * What a planner knows about the sorted index of one numeric column: whether it is built,
+ * and how often queries have filtered on the column. See {@link Planner#indexStatus()}.
+ */
+public final class IndexStatus {
+
+    /** Where the index of a column is in its life. */
+    public enum State {
+        /** Not built: filters on the column scan the rows. */
+        NOT_BUILT,
+        /** Being built in the background: filters scan until it is ready. */
+        BUILDING,
+        /** Built, or read from an index file: filters use it when it is cheaper. */
+        READY,
+        /** The build failed: filters scan, and it is not tried again. */
+        FAILED
+    }
+
+    /** The column. */
+    private final GameData column;
+    /** The state of its index. */
+    private final State state;
+    /** Number of conditions on the column evaluated. */
+    private final long queries;
+    /** Number of those conditions by operation. */
+    private final Map<Operations, Long> operations;
+    /** Time the build took, 0 if it was not built here. */
+    private final long buildNanos;
+
+    /**
+     * Constructor for the status.
+     *
+     * @param column     the column
+     * @param state      the state of its index
+     * @param queries    the number of conditions on the column evaluated
+     * @param operations the number of those conditions by operation, copied
+     * @param buildNanos the time the build took, 0 if it was not built here
+     */
+    IndexStatus(GameData column, State state, long queries, Map<Operations, Long> operations,
+            long buildNanos) {
+        this.column = column;
+        this.state = state;
+        this.queries = queries;
+        this.operations = operations.isEmpty() ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new EnumMap<>(operations));
+        this.buildNanos = buildNanos;
+    }
+
+    /**
+     * Get the column.
+     *
+     * @return the column
+     */
+    public GameData getColumn() {
+        return column;
+    }
+
+    /**
+     * Get the state of the column's index.
+     *
+     * @return the state
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Get the number of conditions on the column evaluated, by filters, explains, facets
+     * and fits alike.
+     *
+     * @return the count
+     */
+    public long getQueries() {
+        return queries;
+    }
+
+    /**
+     * Get the number of conditions on the column evaluated, by operation.
+     *
+     * @return an unmodifiable map, operations never used left out
+     */
+    public Map<Operations, Long> getOperations() {
+        return operations;
+    }
+
+    /**
+     * Get the time the index took to build.
+     *
+     * @return the nanoseconds, 0 if it was not built by this planner, or not yet
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * Describes the status in one line, for example
+     * {@code RATING READY queries=12 >=:10 ==:2 built in 3.1 ms}.
+     *
+     * @return the description
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(column).append(' ').append(state).append(" queries=").append(queries);
+        for (Map.Entry<Operations, Long> op : operations.entrySet()) {
+            sb.append(' ').append(op.getKey().getOperator()).append(':').append(op.getValue());
+        }
+        if (buildNanos > 0) {
+            sb.append(String.format(" built in %.1f ms", buildNanos / 1e6));
+        }
+        return sb.toString();
+    }
+}
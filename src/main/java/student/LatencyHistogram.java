@@ -0,0 +1,163 @@
+package student;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds, in the style of an HDR histogram.
+ *
+ * Every power of two is split into 32 linear sub-buckets, so any duration from a
+ * nanosecond to centuries is kept with about 3% precision in a fixed array of counts.
+ * Recording is a couple of shifts and an atomic increment, safe from any thread, and
+ * histograms with the same layout can be merged by adding their counts.
+ */
+public final class LatencyHistogram {
+    /** Sub-buckets per power of two, as a number of bits. */
+    private static final int SUB_BITS = 5;
+    /** Sub-buckets per power of two. */
+    private static final int SUB = 1 << SUB_BITS;
+    /** Number of buckets, enough for any non-negative long. */
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB;
+
+    /** Count per bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /** Sum of the values recorded. */
+    private final LongAdder sum = new LongAdder();
+    /** Largest value recorded. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration, negative values are counted as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+        long seen = max.get();
+        while (value > seen && !max.compareAndSet(seen, value)) {
+            seen = max.get();
+        }
+    }
+
+    /**
+     * Adds every value of another histogram to this one.
+     *
+     * @param other the histogram to add
+     */
+    public void merge(LatencyHistogram other) {
+        for (int b = 0; b < BUCKETS; b++) {
+            long c = other.counts.get(b);
+            if (c != 0) {
+                counts.addAndGet(b, c);
+            }
+        }
+        sum.add(other.sum.sum());
+        long otherMax = other.max.get();
+        long seen = max.get();
+        while (otherMax > seen && !max.compareAndSet(seen, otherMax)) {
+            seen = max.get();
+        }
+    }
+
+    /**
+     * Forgets every value recorded.
+     */
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++) {
+            counts.set(b, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Get the number of values recorded.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            total += counts.get(b);
+        }
+        return total;
+    }
+
+    /**
+     * Get the largest value recorded.
+     *
+     * @return the largest value, 0 if none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the mean of the values recorded.
+     *
+     * @return the mean, 0 if none
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Gets the value at a percentile: the highest value that falls in the same bucket as
+     * the value at that rank, never more than the largest value recorded.
+     *
+     * @param percentile between 0 and 100
+     * @return the value, 0 if none were recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        }
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) {
+                return Math.min(highestInBucket(b), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Finds the bucket of a value.
+     *
+     * @param value a non-negative value
+     * @return the bucket
+     */
+    static int bucket(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB - 1);
+        return (exponent - SUB_BITS + 1) * SUB + sub;
+    }
+
+    /**
+     * Finds the highest value that falls in a bucket.
+     *
+     * @param bucket the bucket
+     * @return the highest value
+     */
+    static long highestInBucket(int bucket) {
+        if (bucket < SUB) {
+            return bucket;
+        }
+        int shift = bucket / SUB - 1;
+        long lowest = (long) (SUB + bucket % SUB) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
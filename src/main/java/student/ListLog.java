@@ -0,0 +1,344 @@
+package student;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps a saved game list as a snapshot of game ids and a write-ahead log of the changes
+ * made since, so each change is a short append instead of a rewrite of the list.
+ *
+ * For a list saved as {@code name}, the snapshot is {@code name.snapshot}: magic, version,
+ * count, the ids, and a CRC32C of what comes before it. The log is {@code name.log}: magic
+ * and version, then one nine byte record per change, an operation, a game id and a CRC32C
+ * of the two. A record torn by a crash fails its check; it and anything after it are
+ * dropped when the log is replayed.
+ *
+ * Once the log holds more records than {@link #COMPACT_MIN} and four times the list, the
+ * list is written to a new snapshot, moved into place in one step, and the log emptied.
+ * The log only adds, removes and clears ids, so replaying it again over the snapshot it
+ * was compacted into gives the same list; a crash between the two steps loses nothing.
+ *
+ * How durable a commit is depends on {@code sync}. With it, each commit forces its records
+ * to the disk before returning, and a compaction forces the snapshot and the directory
+ * entry naming it before the log is emptied, so a committed change survives a power loss
+ * or an operating system crash. The records of one commit share one force, so adding many
+ * games at once costs one. Without it, records are handed to the operating system and
+ * survive the process crashing, but the last few may be lost if the machine goes down.
+ */
+final class ListLog implements Closeable {
+    /** Fewest records in the log before it is compacted. */
+    static final int COMPACT_MIN = 4_096;
+
+    /** First four bytes of a snapshot, "BGLS". */
+    private static final int SNAPSHOT_MAGIC = 0x42474C53;
+    /** First four bytes of a log, "BGLL". */
+    private static final int LOG_MAGIC = 0x42474C4C;
+    /** Format version of both files. */
+    private static final int VERSION = 1;
+    /** Bytes of the log header. */
+    private static final int LOG_HEADER = 8;
+    /** Bytes of a log record. */
+    private static final int RECORD = 9;
+    /** Record of an added id. */
+    private static final byte ADD = 'A';
+    /** Record of a removed id. */
+    private static final byte REMOVE = 'R';
+    /** Record of the list being cleared, id 0. */
+    private static final byte CLEAR = 'C';
+
+    /** The snapshot file. */
+    private final Path snapshot;
+    /** The log file. */
+    private final Path log;
+    /** The log, open for appending. */
+    private final FileChannel channel;
+    /** Records not yet written. */
+    private ByteBuffer pending = ByteBuffer.allocate(64 * RECORD)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    /** Records in the log file. */
+    private long records;
+    /** The ids in the list, as of the last snapshot and the log replayed at opening. */
+    private final Set<Integer> replayed;
+    /** Whether commits are forced to the disk. */
+    private final boolean sync;
+
+    /**
+     * Opens a saved list, creating it if there is none, and replays it.
+     *
+     * @param base the name of the list; the snapshot and log are named after it
+     * @param sync whether each commit is forced to the disk
+     * @throws IOException if the files cannot be read or written, or the snapshot is damaged
+     */
+    ListLog(Path base, boolean sync) throws IOException {
+        this.sync = sync;
+        this.snapshot = base.resolveSibling(base.getFileName() + ".snapshot");
+        this.log = base.resolveSibling(base.getFileName() + ".log");
+        Path dir = log.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        this.replayed = readSnapshot();
+        this.channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        replayLog();
+    }
+
+    /**
+     * Gets the ids in the list when it was opened.
+     *
+     * @return the ids, in the order they were added
+     */
+    Set<Integer> ids() {
+        return replayed;
+    }
+
+    /**
+     * Reads the snapshot.
+     *
+     * @return the ids in it, none if there is no snapshot
+     * @throws IOException if the snapshot cannot be read or is damaged
+     */
+    private Set<Integer> readSnapshot() throws IOException {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(snapshot))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        } catch (NoSuchFileException e) {
+            return new LinkedHashSet<>();
+        }
+        if (buffer.remaining() < 16 || buffer.getInt(0) != SNAPSHOT_MAGIC
+                || buffer.getInt(4) != VERSION) {
+            throw new IOException(snapshot + " is not a saved list");
+        }
+        int count = buffer.getInt(8);
+        if (count < 0 || buffer.capacity() != 16 + 4L * count) {
+            throw new IOException(snapshot + " is truncated");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.capacity() - 4);
+        if ((int) crc.getValue() != buffer.getInt(buffer.capacity() - 4)) {
+            throw new IOException(snapshot + " is damaged");
+        }
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(buffer.getInt(12 + 4 * i));
+        }
+        return ids;
+    }
+
+    /**
+     * Applies the log to the ids read from the snapshot, dropping a torn tail.
+     *
+     * @throws IOException if the log cannot be read or written
+     */
+    private void replayLog() throws IOException {
+        long size = channel.size();
+        if (size < LOG_HEADER) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(LOG_MAGIC).putInt(VERSION).flip();
+            channel.write(header, 0);
+            if (sync) {
+                channel.force(false);
+            }
+            channel.position(LOG_HEADER);
+            return;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(log + " is too large");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        if (buffer.getInt(0) != LOG_MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException(log + " is not a list log");
+        }
+        CRC32C crc = new CRC32C();
+        int pos = LOG_HEADER;
+        for (; pos + RECORD <= buffer.limit(); pos += RECORD) {
+            crc.reset();
+            crc.update(buffer.array(), pos, 5);
+            if ((int) crc.getValue() != buffer.getInt(pos + 5)) {
+                break;
+            }
+            int id = buffer.getInt(pos + 1);
+            switch (buffer.get(pos)) {
+                case ADD:
+                    replayed.add(id);
+                    break;
+                case REMOVE:
+                    replayed.remove(id);
+                    break;
+                case CLEAR:
+                    replayed.clear();
+                    break;
+                default:
+                    throw new IOException(log + " has an unknown record at " + pos);
+            }
+            records++;
+        }
+        if (pos != size) {
+            System.err.println("Dropping " + (size - pos) + " torn bytes from " + log);
+            channel.truncate(pos);
+        }
+        channel.position(pos);
+    }
+
+    /**
+     * Notes an id added, to be written by {@link #commit(int)}.
+     *
+     * @param id the game id
+     */
+    void add(int id) {
+        append(ADD, id);
+    }
+
+    /**
+     * Notes an id removed, to be written by {@link #commit(int)}.
+     *
+     * @param id the game id
+     */
+    void remove(int id) {
+        append(REMOVE, id);
+    }
+
+    /**
+     * Notes the list cleared, to be written by {@link #commit(int)}.
+     */
+    void clear() {
+        append(CLEAR, 0);
+    }
+
+    /**
+     * Adds a record to the pending ones.
+     *
+     * @param op the operation
+     * @param id the game id
+     */
+    private void append(byte op, int id) {
+        if (pending.remaining() < RECORD) {
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        int start = pending.position();
+        pending.put(op).putInt(id);
+        CRC32C crc = new CRC32C();
+        crc.update(pending.array(), start, 5);
+        pending.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Writes the pending records to the log in one append.
+     *
+     * @param size the number of games now in the list
+     * @return true if the log has grown large enough to {@link #compact(Collection)}
+     * @throws IOException if the log cannot be written
+     */
+    boolean commit(int size) throws IOException {
+        if (pending.position() > 0) {
+            records += pending.position() / RECORD;
+            pending.flip();
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+            pending.clear();
+            if (sync) {
+                channel.force(false);
+            }
+        }
+        return records > COMPACT_MIN && records > 4L * size;
+    }
+
+    /**
+     * Writes the list to a new snapshot and empties the log.
+     *
+     * @param ids the ids in the list
+     * @throws IOException if the snapshot cannot be written
+     */
+    void compact(Collection<Integer> ids) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + 4 * ids.size())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putInt(ids.size());
+        for (int id : ids) {
+            buffer.putInt(id);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue()).flip();
+        Path temp = Files.createTempFile(snapshot.toAbsolutePath().getParent(),
+                snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            }
+            Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (sync) {
+            // the new snapshot must be found after a power loss before the log is emptied
+            syncDirectory();
+        }
+        channel.truncate(LOG_HEADER);
+        if (sync) {
+            channel.force(false);
+        }
+        channel.position(LOG_HEADER);
+        records = 0;
+    }
+
+    /**
+     * Forces the directory holding the snapshot, so a move into it is on the disk.
+     */
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(snapshot.toAbsolutePath().getParent(),
+                StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // some systems, Windows among them, cannot open a directory; the move is as
+            // durable as they make it
+        }
+    }
+
+    /**
+     * Get the number of records in the log since the last snapshot.
+     *
+     * @return the records
+     */
+    long records() {
+        return records;
+    }
+
+    /**
+     * Closes the log. Pending records are dropped; commit them first.
+     *
+     * @throws IOException if the log cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
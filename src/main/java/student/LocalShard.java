@@ -0,0 +1,83 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A shard held in this process: a {@link Planner} over its part of the collection, with its
+ * own indexes.
+ */
+public final class LocalShard implements PlannerShard {
+    /** The planner over the shard's games. */
+    private final Planner planner;
+
+    /**
+     * Constructor for a shard over some games. Its queries are not recorded in the
+     * planner metrics, so a sharded query is not counted once per shard.
+     *
+     * @param games the games of the shard
+     */
+    public LocalShard(Set<BoardGame> games) {
+        this.planner = new Planner(games, null);
+    }
+
+    @Override
+    public int size() {
+        return planner.table().size();
+    }
+
+    @Override
+    public List<BoardGame> filter(String filter, SortOrder order) {
+        return (order == null ? planner.filter(filter) : planner.filter(filter, order)).toList();
+    }
+
+    @Override
+    public String explain(String filter) {
+        return planner.explain(filter);
+    }
+
+    @Override
+    public Map<GameData, Facet> facets(String filter, GameData... columns) {
+        return planner.facets(filter, columns);
+    }
+
+    @Override
+    public List<BoardGame> fits(int players, int minutes, String filter) {
+        return planner.fits(players, minutes, filter).toList();
+    }
+
+    @Override
+    public List<BoardGame> suggest(String prefix, int limit) {
+        return planner.suggest(prefix, limit);
+    }
+
+    @Override
+    public List<BoardGame> fuzzyMatch(String name, int maxDistance) {
+        return planner.fuzzyMatch(name, maxDistance);
+    }
+
+    @Override
+    public List<BoardGame> named(String name) {
+        GameTable table = planner.table();
+        List<BoardGame> result = new ArrayList<>();
+        for (int row : table.prefixIndex().lookup(name == null ? "" : name)) {
+            result.add(table.row(row));
+        }
+        return result;
+    }
+
+    @Override
+    public List<BoardGame> nearest(BoardGame liked, int k) {
+        GameTable table = planner.table();
+        double[] point = new double[SimilarityIndex.DIMENSIONS];
+        SimilarityIndex.features(liked, point, 0);
+        int[] excluded = table.prefixIndex().lookup(liked.getName());
+        List<BoardGame> result = new ArrayList<>();
+        for (int row : table.similarityIndex().nearest(point, excluded, k)) {
+            result.add(table.row(row));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,27 @@
+package student;
+
+/**
+ * Receives the measurements of every query and load, for logging or exporting them.
+ *
+ * Listeners are called on the thread that ran the query, after its results are ready, so
+ * they should return quickly. See {@link PlannerMetrics#addListener(MetricsListener)}.
+ */
+public interface MetricsListener {
+
+    /**
+     * Called after each query.
+     *
+     * @param query the measurements of the query
+     */
+    void onQuery(QueryMetrics query);
+
+    /**
+     * Called after a games file is loaded.
+     *
+     * @param filename the file loaded
+     * @param games    the number of games read
+     * @param nanos    the time it took
+     */
+    default void onLoad(String filename, int games, long nanos) {
+    }
+}
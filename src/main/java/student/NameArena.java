@@ -0,0 +1,256 @@
+package student;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The game names of a table, packed into byte arrays.
+ *
+ * Each distinct name is stored once, trimmed, as UTF-8 in one shared array, and again
+ * lower cased in a second one. Name filters compare the lower cased bytes directly, so a
+ * query no longer trims and lower cases every name it looks at, and the names take one
+ * byte per character for the usual ASCII title instead of a String each.
+ *
+ * Names are folded one code point at a time, to the lower case of its upper case, as
+ * {@link String#equalsIgnoreCase(String)} compares them, so the final and medial sigma or
+ * the Kelvin sign and K fold alike. UTF-8 never matches a character in the middle of
+ * another, so equality and substring searches on the folded bytes give exactly the names
+ * {@link Filters#filterString} matches. UTF-8 bytes order by code point, while
+ * {@link String#compareToIgnoreCase(String)} orders by UTF-16 unit; the two agree except
+ * for names holding characters outside the Basic Multilingual Plane, so a range over such
+ * names may differ.
+ */
+public final class NameArena {
+    /** Trimmed names, UTF-8, back to back. */
+    private final byte[] text;
+    /** Start of each entry in text, with one extra entry at the end. */
+    private final int[] textStart;
+    /** Trimmed, lower cased names, UTF-8, back to back. */
+    private final byte[] folded;
+    /** Start of each entry in folded, with one extra entry at the end. */
+    private final int[] foldedStart;
+    /** Entry holding the name of each row. */
+    private final int[] entryOf;
+
+    /**
+     * Packs the names of every row.
+     *
+     * @param rows the games, in row order
+     */
+    public NameArena(List<BoardGame> rows) {
+        int n = rows.size();
+        this.entryOf = new int[n];
+        Map<String, Integer> entries = new HashMap<>();
+        byte[][] textBytes = new byte[n][];
+        byte[][] foldedBytes = new byte[n][];
+        int textLength = 0;
+        int foldedLength = 0;
+        for (int row = 0; row < n; row++) {
+            String name = rows.get(row).getName().trim();
+            Integer entry = entries.get(name);
+            if (entry == null) {
+                entry = entries.size();
+                entries.put(name, entry);
+                textBytes[entry] = name.getBytes(StandardCharsets.UTF_8);
+                foldedBytes[entry] = fold(name);
+                textLength += textBytes[entry].length;
+                foldedLength += foldedBytes[entry].length;
+            }
+            entryOf[row] = entry;
+        }
+        int count = entries.size();
+        this.text = new byte[textLength];
+        this.textStart = new int[count + 1];
+        this.folded = new byte[foldedLength];
+        this.foldedStart = new int[count + 1];
+        for (int e = 0; e < count; e++) {
+            textStart[e + 1] = textStart[e] + textBytes[e].length;
+            System.arraycopy(textBytes[e], 0, text, textStart[e], textBytes[e].length);
+            foldedStart[e + 1] = foldedStart[e] + foldedBytes[e].length;
+            System.arraycopy(foldedBytes[e], 0, folded, foldedStart[e], foldedBytes[e].length);
+        }
+    }
+
+    /**
+     * Normalizes a name or search term the way the folded names are stored.
+     *
+     * @param name the name
+     * @return the name trimmed, each code point folded as equalsIgnoreCase does
+     */
+    public static String normalize(String name) {
+        String trimmed = name.trim();
+        StringBuilder sb = new StringBuilder(trimmed.length());
+        for (int i = 0; i < trimmed.length(); ) {
+            int cp = trimmed.codePointAt(i);
+            sb.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp)));
+            i += Character.charCount(cp);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Normalizes a name or search term and encodes it for comparing with the folded names.
+     *
+     * @param name the name
+     * @return the normalized name as UTF-8
+     */
+    public static byte[] fold(String name) {
+        return normalize(name).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return entryOf.length;
+    }
+
+    /**
+     * Get the number of distinct names stored.
+     *
+     * @return the number of distinct trimmed names
+     */
+    public int distinct() {
+        return textStart.length - 1;
+    }
+
+    /**
+     * Decodes the trimmed name of a row.
+     *
+     * @param row the row
+     * @return the name
+     */
+    public String name(int row) {
+        int e = entryOf[row];
+        return new String(text, textStart[e], textStart[e + 1] - textStart[e],
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the trimmed, lower cased name of a row.
+     *
+     * @param row the row
+     * @return the normalized name
+     */
+    public String foldedName(int row) {
+        int e = entryOf[row];
+        return new String(folded, foldedStart[e], foldedStart[e + 1] - foldedStart[e],
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Whether the folded name of a row equals a folded key.
+     *
+     * @param row the row
+     * @param key the key, see {@link #fold(String)}
+     * @return true if they are equal
+     */
+    public boolean equalsFolded(int row, byte[] key) {
+        int e = entryOf[row];
+        int from = foldedStart[e];
+        if (foldedStart[e + 1] - from != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (folded[from + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the folded name of a row contains a folded key.
+     *
+     * @param row the row
+     * @param key the key, see {@link #fold(String)}
+     * @return true if the key appears anywhere in the name
+     */
+    public boolean containsFolded(int row, byte[] key) {
+        if (key.length == 0) {
+            return true;
+        }
+        int e = entryOf[row];
+        int last = foldedStart[e + 1] - key.length;
+        byte first = key[0];
+        for (int from = foldedStart[e]; from <= last; from++) {
+            if (folded[from] != first) {
+                continue;
+            }
+            int i = 1;
+            while (i < key.length && folded[from + i] == key[i]) {
+                i++;
+            }
+            if (i == key.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the folded name of a row with a folded key, byte by byte.
+     *
+     * @param row the row
+     * @param key the key, see {@link #fold(String)}
+     * @return negative, zero or positive as the name sorts before, with or after the key
+     */
+    public int compareFolded(int row, byte[] key) {
+        int e = entryOf[row];
+        return compare(folded, foldedStart[e], foldedStart[e + 1], key, 0, key.length);
+    }
+
+    /**
+     * Compares the folded names of two rows, byte by byte.
+     *
+     * @param a a row
+     * @param b another row
+     * @return negative, zero or positive as a sorts before, with or after b
+     */
+    public int compareRows(int a, int b) {
+        int ea = entryOf[a];
+        int eb = entryOf[b];
+        return compare(folded, foldedStart[ea], foldedStart[ea + 1],
+                folded, foldedStart[eb], foldedStart[eb + 1]);
+    }
+
+    /**
+     * Compares the start of the folded name of a row with a folded prefix.
+     *
+     * @param row    the row
+     * @param prefix the prefix, see {@link #fold(String)}
+     * @return zero if the name starts with the prefix, otherwise as {@link #compareFolded}
+     */
+    public int comparePrefix(int row, byte[] prefix) {
+        int e = entryOf[row];
+        int from = foldedStart[e];
+        int to = Math.min(foldedStart[e + 1], from + prefix.length);
+        return compare(folded, from, to, prefix, 0, prefix.length);
+    }
+
+    /**
+     * Compares two byte ranges as unsigned bytes, a shorter range first on a tie.
+     *
+     * @param a     the first array
+     * @param aFrom start of the first range, inclusive
+     * @param aTo   end of the first range, exclusive
+     * @param b     the second array
+     * @param bFrom start of the second range, inclusive
+     * @param bTo   end of the second range, exclusive
+     * @return negative, zero or positive as the first range sorts before, with or after
+     */
+    private static int compare(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+        int length = Math.min(aTo - aFrom, bTo - bFrom);
+        for (int i = 0; i < length; i++) {
+            int cmp = (a[aFrom + i] & 0xff) - (b[bFrom + i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return (aTo - aFrom) - (bTo - bFrom);
+    }
+}
@@ -0,0 +1,291 @@
+package student;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Trigram index over the game names, for typo tolerant lookups.
+ *
+ * Every name is trimmed, lower cased and padded, then split into its overlapping three
+ * character grams. For each gram the index keeps the rows containing it. A single edit
+ * touches at most three gram positions of the query, so a name within k edits must still
+ * share at least (distinct grams of the query - 3k) grams with it. Counting shared grams
+ * over the posting lists finds those candidates without looking at the other names, and
+ * only the candidates are checked with an edit distance.
+ *
+ * Queries too short for the gram count to rule anything out fall back to the names whose
+ * length is within k of the query.
+ *
+ * The lists are read through buffers, so they can live in an {@link IndexFile}.
+ */
+public final class NgramIndex {
+    /** Gram length. */
+    private static final int Q = 3;
+    /** Padding character, placed Q - 1 times before and after a name. */
+    private static final char PAD = '\u0001';
+
+    /** The names of the rows. */
+    private final NameArena names;
+    /** Length of the normalized name of every row. */
+    private final IntBuffer lengths;
+    /** Every distinct gram, packed into a long, in ascending order. */
+    private final LongBuffer grams;
+    /** Start of each gram's rows in postings, with one extra entry at the end. */
+    private final IntBuffer offsets;
+    /** Rows containing each gram, ascending within a gram. */
+    private final IntBuffer postings;
+    /** Rows ordered by name length. */
+    private final IntBuffer byLength;
+    /** Scratch count per row, reused by the queries on each thread. */
+    private final ThreadLocal<int[]> counts;
+
+    /**
+     * Builds the index over every row.
+     *
+     * @param names the names of the rows
+     */
+    public NgramIndex(NameArena names) {
+        this.names = names;
+        int n = names.size();
+        int[] nameLengths = new int[n];
+        Map<Long, List<Integer>> lists = new HashMap<>();
+        for (int row = 0; row < n; row++) {
+            String name = names.foldedName(row);
+            nameLengths[row] = name.length();
+            for (long gram : distinctGrams(name)) {
+                lists.computeIfAbsent(gram, g -> new ArrayList<>()).add(row);
+            }
+        }
+        long[] sortedGrams = lists.keySet().stream().mapToLong(Long::longValue).sorted()
+                .toArray();
+        int[] starts = new int[sortedGrams.length + 1];
+        int total = 0;
+        for (int g = 0; g < sortedGrams.length; g++) {
+            starts[g] = total;
+            total += lists.get(sortedGrams[g]).size();
+        }
+        starts[sortedGrams.length] = total;
+        int[] rows = new int[total];
+        for (int g = 0; g < sortedGrams.length; g++) {
+            int pos = starts[g];
+            for (int row : lists.get(sortedGrams[g])) {
+                rows[pos++] = row;
+            }
+        }
+        this.lengths = IntBuffer.wrap(nameLengths);
+        this.grams = LongBuffer.wrap(sortedGrams);
+        this.offsets = IntBuffer.wrap(starts);
+        this.postings = IntBuffer.wrap(rows);
+        this.byLength = IntBuffer.wrap(IntStream.range(0, n).boxed()
+                .sorted((a, b) -> Integer.compare(nameLengths[a], nameLengths[b]))
+                .mapToInt(Integer::intValue).toArray());
+        this.counts = ThreadLocal.withInitial(() -> new int[n]);
+    }
+
+    /**
+     * Reads the index from a file, see {@link #save(IndexFile.Writer)}.
+     *
+     * @param names the names of the rows, in the order the index was built on
+     * @param in    the file, positioned at this index
+     * @throws IllegalArgumentException if the file does not hold an index here
+     */
+    NgramIndex(NameArena names, IndexFile in) {
+        this.names = names;
+        int n = names.size();
+        this.lengths = in.ints();
+        this.grams = in.longs();
+        this.offsets = in.ints();
+        this.postings = in.ints();
+        this.byLength = in.ints();
+        if (lengths.limit() != n || byLength.limit() != n
+                || offsets.limit() != grams.limit() + 1
+                || offsets.get(grams.limit()) != postings.limit()) {
+            throw new IllegalArgumentException("Trigram index is damaged");
+        }
+        this.counts = ThreadLocal.withInitial(() -> new int[n]);
+    }
+
+    /**
+     * Writes the index, for {@link #NgramIndex(NameArena, IndexFile)} to read back.
+     *
+     * @param out where to write
+     */
+    void save(IndexFile.Writer out) {
+        out.ints(lengths);
+        out.longs(grams);
+        out.ints(offsets);
+        out.ints(postings);
+        out.ints(byLength);
+    }
+
+    /**
+     * Finds the rows whose name is within an edit distance of the query.
+     *
+     * @param query       the name to look for, case and surrounding spaces are ignored
+     * @param maxDistance the most single character edits allowed
+     * @return the rows and their distances, closest first, then in row order
+     */
+    public List<int[]> search(String query, int maxDistance) {
+        String key = NameArena.normalize(query);
+        long[] queryGrams = distinctGrams(key);
+        int threshold = queryGrams.length - Q * maxDistance;
+        List<int[]> matches = new ArrayList<>();
+        if (threshold <= 0) {
+            // every name could still match, only the length can rule them out
+            int end = firstLonger(key.length() + maxDistance);
+            for (int i = firstLonger(key.length() - maxDistance - 1); i < end; i++) {
+                check(byLength.get(i), key, maxDistance, matches);
+            }
+        } else {
+            int[] count = counts.get();
+            List<Integer> touched = new ArrayList<>();
+            for (long gram : queryGrams) {
+                int g = find(gram);
+                if (g < 0) {
+                    continue;
+                }
+                for (int p = offsets.get(g), end = offsets.get(g + 1); p < end; p++) {
+                    int row = postings.get(p);
+                    if (count[row]++ == 0) {
+                        touched.add(row);
+                    }
+                }
+            }
+            for (int row : touched) {
+                if (count[row] >= threshold
+                        && Math.abs(lengths.get(row) - key.length()) <= maxDistance) {
+                    check(row, key, maxDistance, matches);
+                }
+                count[row] = 0;
+            }
+        }
+        matches.sort((a, b) -> a[1] != b[1] ? Integer.compare(a[1], b[1])
+                : Integer.compare(a[0], b[0]));
+        return matches;
+    }
+
+    /**
+     * Finds a gram.
+     *
+     * @param gram the packed gram
+     * @return its position in grams, or -1 if no name has it
+     */
+    private int find(long gram) {
+        int lo = 0;
+        int hi = grams.limit() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long value = grams.get(mid);
+            if (value < gram) {
+                lo = mid + 1;
+            } else if (value > gram) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first entry of byLength whose name is longer than the length.
+     *
+     * @param length the length
+     * @return the position in byLength
+     */
+    private int firstLonger(int length) {
+        int lo = 0;
+        int hi = byLength.limit();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lengths.get(byLength.get(mid)) <= length) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Adds the row to the matches if its name is close enough.
+     *
+     * @param row         the row
+     * @param key         the normalized query
+     * @param maxDistance the most edits allowed
+     * @param matches     the (row, distance) pairs found so far
+     */
+    private void check(int row, String key, int maxDistance, List<int[]> matches) {
+        int distance = distance(names.foldedName(row), key, maxDistance);
+        if (distance <= maxDistance) {
+            matches.add(new int[] {row, distance});
+        }
+    }
+
+    /**
+     * Levenshtein distance between two strings, giving up once it exceeds a bound.
+     *
+     * @param a     a string
+     * @param b     another string
+     * @param bound the largest distance of interest
+     * @return the distance, or bound + 1 if it is larger than bound
+     */
+    public static int distance(String a, String b, int bound) {
+        if (Math.abs(a.length() - b.length()) > bound) {
+            return bound + 1;
+        }
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int sub = prev[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                cur[j] = Math.min(sub, Math.min(prev[j], cur[j - 1]) + 1);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > bound) {
+                return bound + 1;
+            }
+            int[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+        return Math.min(prev[b.length()], bound + 1);
+    }
+
+    /**
+     * Splits a normalized name into its distinct padded grams.
+     *
+     * @param key the normalized name
+     * @return the grams, packed into longs, without duplicates
+     */
+    private static long[] distinctGrams(String key) {
+        StringBuilder padded = new StringBuilder();
+        for (int i = 0; i < Q - 1; i++) {
+            padded.append(PAD);
+        }
+        padded.append(key);
+        for (int i = 0; i < Q - 1; i++) {
+            padded.append(PAD);
+        }
+        long[] result = new long[padded.length() - Q + 1];
+        for (int i = 0; i < result.length; i++) {
+            long gram = 0;
+            for (int j = 0; j < Q; j++) {
+                gram = (gram << Character.SIZE) | padded.charAt(i + j);
+            }
+            result[i] = gram;
+        }
+        return Arrays.stream(result).distinct().toArray();
+    }
+}
@@ -0,0 +1,148 @@
+package student;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Rows kept outside the heap, one direct buffer per column.
+ *
+ * Whole numbers take four bytes a row and decimals eight. Names are stored as UTF-8 back
+ * to back in one buffer, with the start of each in another. The garbage collector sees a
+ * handful of buffer objects whatever the number of games, instead of a game, a string and
+ * its bytes per row, so its pauses no longer grow with the collection. A game is rebuilt
+ * from its columns each time a query returns it.
+ *
+ * Each buffer is indexed by int, so a column holds at most 2 GB: over 250 million rows of
+ * decimals, and names averaging 2 GB in total.
+ */
+final class OffHeapColumns implements GameColumns {
+    /** Bytes of a whole number. */
+    private static final int INT_BYTES = Integer.BYTES;
+    /** Bytes of a decimal. */
+    private static final int DOUBLE_BYTES = Double.BYTES;
+
+    /** Number of rows. */
+    private final int size;
+    /** A buffer per column, by ordinal, null for the name. */
+    private final ByteBuffer[] columns = new ByteBuffer[GameData.values().length];
+    /** Names, UTF-8, back to back. */
+    private final ByteBuffer names;
+    /** Start of each name in names, with one extra entry at the end. */
+    private final ByteBuffer nameStarts;
+
+    /**
+     * Copies games into the columns.
+     *
+     * @param rows the games, in row order
+     */
+    OffHeapColumns(List<BoardGame> rows) {
+        this.size = rows.size();
+        for (GameData column : GameData.values()) {
+            if (column == GameData.NAME) {
+                continue;
+            }
+            int width = GameTable.isDecimal(column) ? DOUBLE_BYTES : INT_BYTES;
+            ByteBuffer buffer = allocate((long) size * width);
+            for (int row = 0; row < size; row++) {
+                BoardGame game = rows.get(row);
+                if (width == DOUBLE_BYTES) {
+                    buffer.putDouble(row * DOUBLE_BYTES, GameTable.numericValue(game, column));
+                } else if (column == GameData.ID) {
+                    buffer.putInt(row * INT_BYTES, game.getId());
+                } else {
+                    buffer.putInt(row * INT_BYTES, (int) GameTable.numericValue(game, column));
+                }
+            }
+            columns[column.ordinal()] = buffer;
+        }
+        this.nameStarts = allocate((long) (size + 1) * INT_BYTES);
+        long total = 0;
+        for (int row = 0; row < size; row++) {
+            nameStarts.putInt(row * INT_BYTES, (int) Math.min(total, Integer.MAX_VALUE));
+            total += rows.get(row).getName().getBytes(StandardCharsets.UTF_8).length;
+        }
+        this.names = allocate(total);
+        nameStarts.putInt(size * INT_BYTES, (int) total);
+        for (int row = 0; row < size; row++) {
+            names.put(nameStarts.getInt(row * INT_BYTES),
+                    rows.get(row).getName().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Allocates a direct buffer in the machine's byte order.
+     *
+     * @param bytes the size
+     * @return the buffer
+     * @throws IllegalArgumentException if a buffer cannot be that large
+     */
+    private static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Column too large for off-heap storage: "
+                    + bytes + " bytes");
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public BoardGame game(int row) {
+        return new BoardGame(name(row), id(row), intAt(GameData.MIN_PLAYERS, row),
+                intAt(GameData.MAX_PLAYERS, row), intAt(GameData.MIN_TIME, row),
+                intAt(GameData.MAX_TIME, row), doubleAt(GameData.DIFFICULTY, row),
+                intAt(GameData.RANK, row), doubleAt(GameData.RATING, row),
+                intAt(GameData.YEAR, row));
+    }
+
+    @Override
+    public String name(int row) {
+        int from = nameStarts.getInt(row * INT_BYTES);
+        byte[] bytes = new byte[nameStarts.getInt((row + 1) * INT_BYTES) - from];
+        names.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int id(int row) {
+        return intAt(GameData.ID, row);
+    }
+
+    @Override
+    public double value(int row, GameData column) {
+        if (GameTable.isDecimal(column)) {
+            return doubleAt(column, row);
+        }
+        if (!GameTable.isNumeric(column)) {
+            throw new IllegalArgumentException("Not a numeric column: " + column);
+        }
+        return intAt(column, row);
+    }
+
+    /**
+     * Reads a whole number column.
+     *
+     * @param column the column
+     * @param row    the row
+     * @return the value
+     */
+    private int intAt(GameData column, int row) {
+        return columns[column.ordinal()].getInt(row * INT_BYTES);
+    }
+
+    /**
+     * Reads a decimal column.
+     *
+     * @param column the column
+     * @param row    the row
+     * @return the value
+     */
+    private double doubleAt(GameData column, int row) {
+        return columns[column.ordinal()].getDouble(row * DOUBLE_BYTES);
+    }
+}
@@ -40,7 +40,12 @@ public enum Operations {
     EQUALS("=="), NOT_EQUALS("!="), GREATER_THAN(">"), LESS_THAN("<"), GREATER_THAN_EQUALS(
             ">="),
     /** Operations to use. */
-    LESS_THAN_EQUALS("<="), CONTAINS("~=");
+    LESS_THAN_EQUALS("<="), CONTAINS("~="),
+    /**
+     * Range and set operations, written column=between=(low,high) and
+     * column=in=(a,b,c). Both bounds of a range are included.
+     */
+    BETWEEN("=between="), IN("=in=");
 
     /** The operator. */
     private final String operator;
@@ -85,7 +90,11 @@ public enum Operations {
      * @return The operator.
      */
     public static Operations getOperatorFromStr(String str) {
-        if (str.contains(">=")) {
+        if (str.contains(BETWEEN.getOperator())) {
+            return Operations.BETWEEN;
+        } else if (str.contains(IN.getOperator())) {
+            return Operations.IN;
+        } else if (str.contains(">=")) {
             return Operations.GREATER_THAN_EQUALS;
         } else if (str.contains("<=")) {
             return Operations.LESS_THAN_EQUALS;
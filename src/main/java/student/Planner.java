@@ -1,12 +1,14 @@
 package student;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.Comparator;
 
 /**
  * Implementation of the IPlanner interface.
@@ -14,9 +16,23 @@ import java.util.Comparator;
  * This class filters and sorts a collection of BoardGame objects based on user-specified conditions.
  */
 public class Planner implements IPlanner {
+    /** Number of parsed filters kept. */
+    private static final int PARSE_CACHE_SIZE = 256;
 
-    /** The complete list of board games in sorted order. */
-    private final List<BoardGame> originalGames;
+    /** The complete collection of board games, with its statistics and indexes. */
+    private final GameTable table;
+    /** Where the measurements of each query go. */
+    private final PlannerMetrics metrics;
+    /** Where slow queries are logged, null if they are not. */
+    private volatile SlowQueryLog slowQueryLog;
+    /** Recently parsed filters, least recently used first. */
+    private final Map<String, FilterNode> parsed =
+            new LinkedHashMap<String, FilterNode>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FilterNode> eldest) {
+                    return size() > PARSE_CACHE_SIZE;
+                }
+            };
 
     /**
      * Constructs a Planner with the specified set of games.
@@ -24,26 +40,88 @@ public class Planner implements IPlanner {
      * @param games the set of board games
      */
     public Planner(Set<BoardGame> games) {
-        // Store the full collection in a sorted list using case-insensitive order for names.
-        this.originalGames = games.stream()
-                .sorted(Comparator.comparing(BoardGame::getName, String.CASE_INSENSITIVE_ORDER))
-                .collect(Collectors.toList());
+        this(games, PlannerMetrics.getDefault());
+    }
+
+    /**
+     * Constructs a Planner that reports its queries to the given metrics.
+     *
+     * @param games   the set of board games
+     * @param metrics where to record the measurements of each query
+     */
+    public Planner(Set<BoardGame> games, PlannerMetrics metrics) {
+        this(games, metrics, Storage.configured());
+    }
+
+    /**
+     * Constructs a Planner keeping its games where asked.
+     *
+     * @param games   the set of board games
+     * @param metrics where to record the measurements of each query
+     * @param storage where to keep the games, on the heap or off it
+     */
+    public Planner(Set<BoardGame> games, PlannerMetrics metrics, Storage storage) {
+        this(games, metrics, storage, IndexFile.configuredDirectory());
+    }
+
+    /**
+     * Constructs a Planner that shares its indexes with other planners through index files.
+     *
+     * @param games    the set of board games
+     * @param metrics  where to record the measurements of each query
+     * @param storage  where to keep the games, on the heap or off it
+     * @param indexDir the directory of {@link IndexFile}s, null to build the indexes here
+     */
+    public Planner(Set<BoardGame> games, PlannerMetrics metrics, Storage storage,
+            Path indexDir) {
+        // Store the full collection in name order, and collect the column statistics.
+        this.table = new GameTable(games, storage, indexDir);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the games and indexes queried, for a {@link LocalShard}.
+     *
+     * @return the table
+     */
+    GameTable table() {
+        return table;
+    }
+
+    /**
+     * Logs the queries slower than the log's threshold, with the plan they ran with.
+     *
+     * @param log the log, or null to stop logging
+     */
+    public void setSlowQueryLog(SlowQueryLog log) {
+        this.slowQueryLog = log;
+    }
+
+    /**
+     * Sets how many conditions on a numeric column that an index could answer are evaluated
+     * before the column's index is built in the background. Until then those conditions
+     * scan the rows; indexes read from an index file are ready from the start.
+     *
+     * @param queries the threshold, 1 to build an index on the first such condition
+     * @throws IllegalArgumentException if the threshold is less than 1
+     */
+    public void setIndexThreshold(int queries) {
+        table.adaptiveIndexes().setThreshold(queries);
+    }
+
+    /**
+     * Describes the index of every numeric column: whether it is built, and how often the
+     * column has been filtered on, by operation.
+     *
+     * @return the status of each column's index, in column order
+     */
+    public List<IndexStatus> indexStatus() {
+        return table.adaptiveIndexes().status();
     }
 
     @Override
     public Stream<BoardGame> filter(String filter) {
-        Stream<BoardGame> base = originalGames.stream();
-        if (filter == null || filter.trim().isEmpty()) {
-            return base;
-        }
-        // Trim the filter string.
-        filter = filter.trim();
-        // Apply each condition (separated by commas) to the full set.
-        String[] conditions = filter.split(",");
-        for (String condition : conditions) {
-            base = filterSingle(condition, base);
-        }
-        return base;
+        return run(filter, null);
     }
 
     @Override
@@ -53,9 +131,74 @@ public class Planner implements IPlanner {
 
     @Override
     public Stream<BoardGame> filter(String filter, GameData sortOn, boolean ascending) {
-        Stream<BoardGame> filteredStream = filter(filter);
-        // Delegate sorting to the GameSorter class.
-        return filteredStream.sorted(GameSorter.getComparator(sortOn, ascending));
+        return run(filter, SortOrder.by(sortOn, ascending));
+    }
+
+    @Override
+    public Stream<BoardGame> filter(String filter, SortOrder order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Sort order cannot be null");
+        }
+        return run(filter, order);
+    }
+
+    @Override
+    public String explain(String filter) {
+        QueryPlan plan = new QueryPlan(filter);
+        BitSet matches = evaluate(parse(filter == null ? "" : filter), new RowCounter(),
+                plan.getRoot());
+        plan.getRoot().setEstimatedRows(table.size());
+        plan.getRoot().setActualRows(matches.cardinality());
+        return plan.toString();
+    }
+
+    @Override
+    public Map<GameData, Facet> facets(String filter, GameData... columns) {
+        BitSet matches = evaluate(parse(filter == null ? "" : filter), new RowCounter(), null);
+        return Facet.count(table, matches, columns);
+    }
+
+    @Override
+    public Stream<BoardGame> fits(int players, int minutes, String filter) {
+        BitSet fitting = table.fitIndex().fits(players, minutes);
+        if (filter != null && !filter.isBlank()) {
+            fitting = parse(filter).evaluate(table, fitting, new RowCounter(), null);
+        }
+        return fitting.stream().mapToObj(table::row);
+    }
+
+    @Override
+    public List<BoardGame> suggest(String prefix, int limit) {
+        List<BoardGame> result = new ArrayList<>();
+        for (int row : table.prefixIndex().suggest(prefix == null ? "" : prefix, limit)) {
+            result.add(table.row(row));
+        }
+        return result;
+    }
+
+    @Override
+    public List<BoardGame> fuzzyMatch(String name, int maxDistance) {
+        List<BoardGame> result = new ArrayList<>();
+        if (name == null || maxDistance < 0) {
+            return result;
+        }
+        for (int[] match : table.ngramIndex().search(name, maxDistance)) {
+            result.add(table.row(match[0]));
+        }
+        return result;
+    }
+
+    @Override
+    public List<BoardGame> similarTo(String gameName, int k) {
+        List<BoardGame> result = new ArrayList<>();
+        if (gameName == null) {
+            return result;
+        }
+        int[] liked = table.prefixIndex().lookup(gameName);
+        for (int row : table.similarityIndex().nearest(liked, k)) {
+            result.add(table.row(row));
+        }
+        return result;
     }
 
     @Override
@@ -64,50 +207,119 @@ public class Planner implements IPlanner {
     }
 
     /**
-     * Filters games for a single condition.
+     * Runs a query, timing each phase when metrics are enabled or slow queries logged.
      *
-     * @param filter      the filter condition (e.g., "name~=o")
-     * @param filterGames the stream of games to filter
-     * @return a stream of games matching the condition
+     * @param filter the filter text
+     * @param order  the order to sort in, null to keep row (name) order
+     * @return the matching games
      */
-    private Stream<BoardGame> filterSingle(String filter, Stream<BoardGame> filterGames) {
-        filter = filter.trim();
-        Operations operator;
-        String columnStr;
-        String value;
-
-        // If the condition uses the CONTAINS operator, use a regex to allow spaces around "~="
-        if (filter.contains("~=")) {
-            operator = Operations.CONTAINS;
-            // Pattern: one or more non-space characters for the column,
-            // optional spaces, "~=", optional spaces, then the value.
-            Pattern pattern = Pattern.compile("(\\S+)\\s*~=\\s*(.+)");
-            Matcher matcher = pattern.matcher(filter);
-            if (matcher.matches()) {
-                columnStr = matcher.group(1).trim().toLowerCase();
-                value = matcher.group(2).trim();
+    private Stream<BoardGame> run(String filter, SortOrder order) {
+        String text = filter == null ? "" : filter;
+        PlannerEvents.Filter event = new PlannerEvents.Filter();
+        event.begin();
+        boolean measured = metrics != null && metrics.isEnabled();
+        SlowQueryLog slowLog = slowQueryLog;
+        boolean timed = measured || slowLog != null;
+        long start = timed ? System.nanoTime() : 0;
+        FilterNode root = parsed(text);
+        boolean cacheHit = root != null;
+        if (root == null) {
+            root = parse(text);
+        }
+        long parsedAt = timed ? System.nanoTime() : 0;
+        RowCounter rows = new RowCounter();
+        // trace the plan while a slow query log is on, to log the plan that actually ran
+        QueryPlan plan = slowLog == null ? null : new QueryPlan(text);
+        BitSet matches = evaluate(root, rows, plan == null ? null : plan.getRoot());
+        long evaluatedAt = timed ? System.nanoTime() : 0;
+        Stream<BoardGame> result;
+        long sortedAt = evaluatedAt;
+        long materializedAt = evaluatedAt;
+        if (order == null) {
+            // rows are already in name order, hand them out as they are read
+            result = matches.stream().mapToObj(table::row);
+        } else {
+            int[] sorted = order.sort(table, matches);
+            sortedAt = timed ? System.nanoTime() : 0;
+            if (table.storage() == Storage.OFF_HEAP) {
+                // build each game as it is read, so a limited stream builds only its games
+                result = Arrays.stream(sorted).mapToObj(table::row);
             } else {
-                return filterGames;
+                BoardGame[] games = new BoardGame[sorted.length];
+                for (int i = 0; i < sorted.length; i++) {
+                    games[i] = table.row(sorted[i]);
+                }
+                result = Arrays.stream(games);
             }
-        } else {
-            operator = Operations.getOperatorFromStr(filter);
-            if (operator == null) {
-                return filterGames;
+            materializedAt = timed ? System.nanoTime() : 0;
+        }
+        if (timed) {
+            QueryMetrics query = new QueryMetrics(text, order, parsedAt - start,
+                    evaluatedAt - parsedAt, materializedAt - sortedAt, sortedAt - evaluatedAt,
+                    rows.getScanned(), matches.cardinality(), cacheHit);
+            if (measured) {
+                metrics.record(query);
             }
-            int opIndex = filter.indexOf(operator.getOperator());
-            if (opIndex < 0) {
-                return filterGames;
+            if (slowLog != null && slowLog.isSlow(query)) {
+                plan.getRoot().setEstimatedRows(table.size());
+                plan.getRoot().setActualRows(matches.cardinality());
+                slowLog.offer(query, plan);
             }
-            columnStr = filter.substring(0, opIndex).trim().toLowerCase();
-            value = filter.substring(opIndex + operator.getOperator().length()).trim();
         }
-        GameData column;
-        try {
-            column = GameData.fromString(columnStr);
-        } catch (IllegalArgumentException e) {
-            return filterGames;
+        if (event.shouldCommit()) {
+            event.filter = text;
+            event.sortOn = order == null ? null : order.toString();
+            event.ascending = order == null || order.isFirstAscending();
+            event.rowsScanned = rows.getScanned();
+            event.rowsReturned = matches.cardinality();
+            event.cacheHit = cacheHit;
+            event.commit();
         }
-        // Delegate the filtering to the Filters utility.
-        return filterGames.filter(game -> Filters.filter(game, column, operator, value));
+        return result;
+    }
+
+    /**
+     * Looks up a parsed filter in the cache.
+     *
+     * @param filter the filter text
+     * @return the parsed filter, or null if it is not cached
+     */
+    private FilterNode parsed(String filter) {
+        synchronized (parsed) {
+            return parsed.get(filter);
+        }
+    }
+
+    /**
+     * Parses a filter and caches the result. Parsed filters are immutable, so one copy
+     * can be shared by every query.
+     *
+     * @param filter the filter text
+     * @return the parsed filter
+     */
+    private FilterNode parse(String filter) {
+        FilterNode root = parsed(filter);
+        if (root != null) {
+            return root;
+        }
+        root = FilterParser.parse(filter);
+        synchronized (parsed) {
+            parsed.put(filter, root);
+        }
+        return root;
+    }
+
+    /**
+     * Evaluates a parsed filter over every row.
+     *
+     * @param root  the parsed filter
+     * @param rows  counts the rows examined
+     * @param trace the plan step to record into, or null when not explaining
+     * @return the matching rows
+     */
+    private BitSet evaluate(FilterNode root, RowCounter rows, QueryPlan.Step trace) {
+        BitSet all = new BitSet(table.size());
+        all.set(0, table.size());
+        return root.evaluate(table, all, rows, trace);
     }
 }
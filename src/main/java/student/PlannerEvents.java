@@ -0,0 +1,141 @@
+package student;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events for the planner, so a recording shows each query, sort, list
+ * change and load phase next to the GC pauses and CPU samples of the same moment.
+ *
+ * The events are built into the JDK, so no agent or library is needed: start a recording
+ * with -XX:StartFlightRecording or jcmd, and the events appear under "Board Game Planner".
+ * When no recording is running, creating and timing an event is optimized away by the JIT,
+ * and the event's fields are only filled in when {@link Event#shouldCommit()} says the
+ * event will be kept.
+ */
+public final class PlannerEvents {
+    /** Category the events are listed under. */
+    private static final String CATEGORY = "Board Game Planner";
+
+    /** private constructor to prevent instantiation. */
+    private PlannerEvents() {
+    }
+
+    /**
+     * A call to {@link Planner#filter(String, GameData, boolean)} or one of its overloads.
+     */
+    @Name("student.Filter")
+    @Label("Filter")
+    @Category(CATEGORY)
+    @Description("Parsing, evaluating and sorting a filter")
+    @StackTrace(false)
+    public static final class Filter extends Event {
+        /** The filter text. */
+        @Label("Filter")
+        String filter;
+
+        /** The sort order, such as "average desc, avgweight asc", null if not sorted. */
+        @Label("Sort Order")
+        String sortOn;
+
+        /** Whether the first sort key was ascending. */
+        @Label("Ascending")
+        boolean ascending;
+
+        /** Rows examined by scans and index lookups. */
+        @Label("Rows Scanned")
+        long rowsScanned;
+
+        /** Rows returned. */
+        @Label("Rows Returned")
+        long rowsReturned;
+
+        /** Whether the parsed filter came from the cache. */
+        @Label("Parse Cache Hit")
+        boolean cacheHit;
+    }
+
+    /**
+     * A sort of filter results by a {@link SortOrder}.
+     */
+    @Name("student.Sort")
+    @Label("Sort")
+    @Category(CATEGORY)
+    @Description("Sorting filter results on a column")
+    @StackTrace(false)
+    public static final class Sort extends Event {
+        /** The column or order sorted on. */
+        @Label("Column")
+        String column;
+
+        /** Whether the sort, or its first key, was ascending. */
+        @Label("Ascending")
+        boolean ascending;
+
+        /** Number of games sorted. */
+        @Label("Rows")
+        long rows;
+    }
+
+    /**
+     * A call to {@link GameList#addToList(String, java.util.stream.Stream)} or
+     * {@link GameList#removeFromList(String)}.
+     */
+    @Name("student.ListChange")
+    @Label("List Change")
+    @Category(CATEGORY)
+    @Description("Adding games to or removing games from the game list")
+    @StackTrace(false)
+    public static final class ListChange extends Event {
+        /** "add" or "remove". */
+        @Label("Operation")
+        String operation;
+
+        /** What the user typed: a name, an index, a range or all. */
+        @Label("Input")
+        String input;
+
+        /** Games in the list before the change. */
+        @Label("Size Before")
+        int sizeBefore;
+
+        /** Games in the list after the change. */
+        @Label("Size After")
+        int sizeAfter;
+
+        /** Whether the input was valid. */
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    /**
+     * One phase of {@link GamesLoader#loadGamesFile(String)}: reading the lines of the file,
+     * or parsing them into games.
+     */
+    @Name("student.LoadPhase")
+    @Label("Load Phase")
+    @Category(CATEGORY)
+    @Description("Reading or parsing the games file")
+    @StackTrace(false)
+    public static final class LoadPhase extends Event {
+        /** The file loaded. */
+        @Label("File")
+        String file;
+
+        /** "read" or "parse". */
+        @Label("Phase")
+        String phase;
+
+        /** Lines handled. */
+        @Label("Lines")
+        int lines;
+
+        /** Games produced, 0 for the read phase. */
+        @Label("Games")
+        int games;
+    }
+}
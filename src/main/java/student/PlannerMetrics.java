@@ -0,0 +1,279 @@
+package student;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects the query and load measurements of the planners that share it.
+ *
+ * Each query adds its total time to a latency histogram and its phase times and row counts
+ * to counters, then is handed to every registered {@link MetricsListener}. Everything is
+ * updated with atomics and adders, so any number of planners and threads can share one
+ * instance.
+ *
+ * Planners and the {@link GamesLoader} use the {@link #getDefault() default instance}
+ * unless given another, and the default instance is registered with the platform MBean
+ * server so its numbers can be read with JConsole or any other JMX client.
+ */
+public final class PlannerMetrics implements PlannerMetricsMBean {
+    /** Name the default instance is registered under. */
+    public static final String OBJECT_NAME = "student:type=PlannerMetrics";
+    /** Nanoseconds per millisecond. */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /** Nanoseconds per microsecond. */
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    /** Shared instance, see {@link #getDefault()}. */
+    private static final PlannerMetrics DEFAULT = new PlannerMetrics();
+
+    static {
+        DEFAULT.register(OBJECT_NAME);
+    }
+
+    /** Whether queries are measured. */
+    private volatile boolean enabled = true;
+    /** Total query times. */
+    private final LatencyHistogram latency = new LatencyHistogram();
+    /** Sum of the parse times. */
+    private final LongAdder parseNanos = new LongAdder();
+    /** Sum of the evaluate times. */
+    private final LongAdder evaluateNanos = new LongAdder();
+    /** Sum of the materialize times. */
+    private final LongAdder materializeNanos = new LongAdder();
+    /** Sum of the sort times. */
+    private final LongAdder sortNanos = new LongAdder();
+    /** Load times. */
+    private final LatencyHistogram loads = new LatencyHistogram();
+    /** Rows examined. */
+    private final LongAdder rowsScanned = new LongAdder();
+    /** Rows returned. */
+    private final LongAdder rowsReturned = new LongAdder();
+    /** Queries whose parsed filter came from the cache. */
+    private final LongAdder cacheHits = new LongAdder();
+    /** Listeners to notify. */
+    private final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Get the instance planners use when not given one.
+     *
+     * @return the default metrics
+     */
+    public static PlannerMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Registers this instance with the platform MBean server.
+     *
+     * A name that is already taken (another copy of these classes registered first) is
+     * left alone, as metrics are an aid and must never stop the planner from working.
+     *
+     * @param name the object name, such as {@value #OBJECT_NAME}
+     * @return true if registered
+     */
+    public boolean register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                return false;
+            }
+            server.registerMBean(this, objectName);
+            return true;
+        } catch (JMException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds a listener for every query and load.
+     *
+     * @param listener the listener
+     */
+    public void addListener(MetricsListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(MetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Records a query and passes it to the listeners.
+     *
+     * @param query the measurements of the query
+     */
+    public void record(QueryMetrics query) {
+        latency.record(query.getTotalNanos());
+        parseNanos.add(query.getParseNanos());
+        evaluateNanos.add(query.getEvaluateNanos());
+        materializeNanos.add(query.getMaterializeNanos());
+        sortNanos.add(query.getSortNanos());
+        rowsScanned.add(query.getRowsScanned());
+        rowsReturned.add(query.getRowsReturned());
+        if (query.isCacheHit()) {
+            cacheHits.increment();
+        }
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onQuery(query);
+            } catch (RuntimeException e) {
+                System.err.println("Metrics listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Records the load of a games file and passes it to the listeners.
+     *
+     * @param filename the file loaded
+     * @param games    the number of games read
+     * @param nanos    the time it took
+     */
+    public void recordLoad(String filename, int games, long nanos) {
+        loads.record(nanos);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onLoad(filename, games, nanos);
+            } catch (RuntimeException e) {
+                System.err.println("Metrics listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Get the histogram of total query times.
+     *
+     * @return the histogram, in nanoseconds
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Get the histogram of load times.
+     *
+     * @return the histogram, in nanoseconds
+     */
+    public LatencyHistogram getLoadLatency() {
+        return loads;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getQueryCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latency.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latency.getPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latency.getPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMeanParseMicros() {
+        return mean(parseNanos) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMeanEvaluateMicros() {
+        return mean(evaluateNanos) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMeanMaterializeMicros() {
+        return mean(materializeNanos) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMeanSortMicros() {
+        return mean(sortNanos) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return rowsScanned.sum();
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rowsReturned.sum();
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        long queries = latency.getCount();
+        return queries == 0 ? 0 : (double) cacheHits.sum() / queries;
+    }
+
+    @Override
+    public long getLoadCount() {
+        return loads.getCount();
+    }
+
+    @Override
+    public double getMaxLoadMillis() {
+        return loads.getMax() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Averages a sum of nanoseconds over the queries measured.
+     *
+     * @param total the sum
+     * @return the mean, 0 if no queries were measured
+     */
+    private double mean(LongAdder total) {
+        long queries = latency.getCount();
+        return queries == 0 ? 0 : (double) total.sum() / queries;
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        parseNanos.reset();
+        evaluateNanos.reset();
+        materializeNanos.reset();
+        sortNanos.reset();
+        loads.reset();
+        rowsScanned.reset();
+        rowsReturned.reset();
+        cacheHits.reset();
+    }
+}
@@ -0,0 +1,124 @@
+package student;
+
+/**
+ * JMX view of the {@link PlannerMetrics}, registered as {@value PlannerMetrics#OBJECT_NAME}.
+ */
+public interface PlannerMetricsMBean {
+
+    /**
+     * Whether queries are being measured.
+     *
+     * @return true if enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Turns measuring queries on or off.
+     *
+     * @param enabled true to measure
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Get the number of queries measured.
+     *
+     * @return the count
+     */
+    long getQueryCount();
+
+    /**
+     * Get the mean query time.
+     *
+     * @return milliseconds
+     */
+    double getMeanMillis();
+
+    /**
+     * Get the median query time.
+     *
+     * @return milliseconds
+     */
+    double getP50Millis();
+
+    /**
+     * Get the 99th percentile query time.
+     *
+     * @return milliseconds
+     */
+    double getP99Millis();
+
+    /**
+     * Get the slowest query time.
+     *
+     * @return milliseconds
+     */
+    double getMaxMillis();
+
+    /**
+     * Get the mean time spent parsing.
+     *
+     * @return microseconds
+     */
+    double getMeanParseMicros();
+
+    /**
+     * Get the mean time spent evaluating.
+     *
+     * @return microseconds
+     */
+    double getMeanEvaluateMicros();
+
+    /**
+     * Get the mean time spent turning rows into games.
+     *
+     * @return microseconds
+     */
+    double getMeanMaterializeMicros();
+
+    /**
+     * Get the mean time spent sorting.
+     *
+     * @return microseconds
+     */
+    double getMeanSortMicros();
+
+    /**
+     * Get the rows examined by every query.
+     *
+     * @return the number of rows
+     */
+    long getRowsScanned();
+
+    /**
+     * Get the rows returned by every query.
+     *
+     * @return the number of rows
+     */
+    long getRowsReturned();
+
+    /**
+     * Get the fraction of queries whose parsed filter came from the cache.
+     *
+     * @return a value between 0 and 1
+     */
+    double getCacheHitRatio();
+
+    /**
+     * Get the number of games files loaded.
+     *
+     * @return the count
+     */
+    long getLoadCount();
+
+    /**
+     * Get the time of the slowest load.
+     *
+     * @return milliseconds
+     */
+    double getMaxLoadMillis();
+
+    /**
+     * Forgets every measurement.
+     */
+    void reset();
+}
@@ -0,0 +1,94 @@
+package student;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One part of a collection split across a {@link ShardedPlanner}.
+ *
+ * Every call takes and returns plain values, games and lists, and holds no state between
+ * calls, so a shard can be a {@link LocalShard} in the same process or a stand-in that
+ * forwards each call to another process. Results come back whole and already ordered the
+ * way the sharded planner merges them.
+ */
+public interface PlannerShard {
+
+    /**
+     * Get the number of games in the shard.
+     *
+     * @return the games
+     */
+    int size();
+
+    /**
+     * Runs a filter.
+     *
+     * @param filter the filter, as for {@link IPlanner#filter(String)}
+     * @param order  the order, or null for name order
+     * @return the matching games, in order
+     */
+    List<BoardGame> filter(String filter, SortOrder order);
+
+    /**
+     * Explains how a filter is run on the shard.
+     *
+     * @param filter the filter
+     * @return the plan, see {@link IPlanner#explain(String)}
+     */
+    String explain(String filter);
+
+    /**
+     * Summarizes columns over the games matching a filter.
+     *
+     * @param filter  the filter
+     * @param columns the numeric columns
+     * @return a facet per column, in the order requested
+     */
+    Map<GameData, Facet> facets(String filter, GameData... columns);
+
+    /**
+     * Finds the games that fit a group and a time budget.
+     *
+     * @param players the number of players
+     * @param minutes the time available
+     * @param filter  a filter to narrow the games, or null or empty for none
+     * @return the games, in name order
+     */
+    List<BoardGame> fits(int players, int minutes, String filter);
+
+    /**
+     * Suggests completions for a partly typed game name.
+     *
+     * @param prefix the start of the name
+     * @param limit  the most games to return
+     * @return the games, best ranked first, see {@link IPlanner#suggest(String, int)}
+     */
+    List<BoardGame> suggest(String prefix, int limit);
+
+    /**
+     * Finds games whose name is close to the given one.
+     *
+     * @param name        the name
+     * @param maxDistance the most edits allowed
+     * @return the games, closest first, then in name order
+     */
+    List<BoardGame> fuzzyMatch(String name, int maxDistance);
+
+    /**
+     * Finds the games with a name, ignoring case and surrounding spaces.
+     *
+     * @param name the name
+     * @return the games, in name order
+     */
+    List<BoardGame> named(String name);
+
+    /**
+     * Finds the games most like a game, which may be in another shard. Games with the
+     * same name as it are left out.
+     *
+     * @param liked the game liked
+     * @param k     the most games to return
+     * @return the games, most similar first, then in name order
+     */
+    List<BoardGame> nearest(BoardGame liked, int k);
+}
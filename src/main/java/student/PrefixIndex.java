@@ -0,0 +1,228 @@
+package student;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Index for finding games by the start of their name, best ranked first.
+ *
+ * Rows are sorted by their trimmed, lower cased name, compared as bytes in the
+ * {@link NameArena}, so every name starting with a prefix sits in a single range found with
+ * two binary searches. A segment tree over the ranks of the sorted
+ * names then hands out the best ranked entries of that range one at a time, so asking for
+ * the top k completions costs O(k log n) no matter how many names share the prefix.
+ *
+ * Unranked games (rank 0 or less) come after every ranked game. Ties keep name order.
+ *
+ * The entries and the tree are read through buffers, so they can live in an
+ * {@link IndexFile}.
+ */
+public final class PrefixIndex {
+    /** The names of the rows. */
+    private final NameArena names;
+    /** Rows in ascending order of their folded name. */
+    private final IntBuffer rowIds;
+    /** Rank of each entry in rowIds, unranked games mapped to the worst rank. */
+    private final IntBuffer ranks;
+    /** Segment tree of entry positions, each node holding the best ranked entry below it. */
+    private final IntBuffer tree;
+    /** Number of entries. */
+    private final int size;
+    /** Number of leaves in the tree, a power of two. */
+    private final int leaves;
+
+    /**
+     * Builds the index over every row of the table.
+     *
+     * @param rows  the games, in row order
+     * @param names the names of the rows
+     */
+    public PrefixIndex(List<BoardGame> rows, NameArena names) {
+        this.names = names;
+        int n = rows.size();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, names::compareRows);
+        this.size = n;
+        this.rowIds = IntBuffer.allocate(n);
+        this.ranks = IntBuffer.allocate(n);
+        for (int i = 0; i < n; i++) {
+            rowIds.put(i, order[i]);
+            int rank = rows.get(order[i]).getRank();
+            ranks.put(i, rank > 0 ? rank : Integer.MAX_VALUE);
+        }
+        int width = 1;
+        while (width < n) {
+            width <<= 1;
+        }
+        this.leaves = width;
+        int[] nodes = new int[2 * width];
+        Arrays.fill(nodes, -1);
+        for (int i = 0; i < n; i++) {
+            nodes[width + i] = i;
+        }
+        this.tree = IntBuffer.wrap(nodes);
+        for (int node = width - 1; node > 0; node--) {
+            nodes[node] = better(nodes[2 * node], nodes[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Reads the index from a file, see {@link #save(IndexFile.Writer)}.
+     *
+     * @param names the names of the rows, in the order the index was built on
+     * @param in    the file, positioned at this index
+     * @throws IllegalArgumentException if the file does not hold an index here
+     */
+    PrefixIndex(NameArena names, IndexFile in) {
+        this.names = names;
+        this.rowIds = in.ints();
+        this.ranks = in.ints();
+        this.tree = in.ints();
+        this.size = rowIds.limit();
+        this.leaves = tree.limit() / 2;
+        if (size != names.size() || ranks.limit() != size || leaves < size) {
+            throw new IllegalArgumentException("Prefix index is damaged");
+        }
+    }
+
+    /**
+     * Writes the index, for {@link #PrefixIndex(NameArena, IndexFile)} to read back.
+     *
+     * @param out where to write
+     */
+    void save(IndexFile.Writer out) {
+        out.ints(rowIds);
+        out.ints(ranks);
+        out.ints(tree);
+    }
+
+    /**
+     * Finds the best ranked games whose name starts with the prefix.
+     *
+     * @param prefix the start of the name, case is ignored
+     * @param limit  the most rows to return
+     * @return the rows, best ranked first
+     */
+    public int[] suggest(String prefix, int limit) {
+        if (limit <= 0 || size == 0) {
+            return new int[0];
+        }
+        byte[] key = NameArena.fold(prefix);
+        int from = firstAtLeast(key, 0);
+        int to = firstAtLeast(key, 1);
+        int[] result = new int[Math.min(limit, to - from)];
+        if (result.length == 0) {
+            return result;
+        }
+        // each queue entry is a range of entries, ordered by the best entry it holds
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> compare(a[2], b[2]));
+        ranges.add(new int[] {from, to, best(from, to)});
+        int found = 0;
+        while (found < result.length) {
+            int[] range = ranges.poll();
+            int pos = range[2];
+            result[found++] = rowIds.get(pos);
+            if (range[0] < pos) {
+                ranges.add(new int[] {range[0], pos, best(range[0], pos)});
+            }
+            if (pos + 1 < range[1]) {
+                ranges.add(new int[] {pos + 1, range[1], best(pos + 1, range[1])});
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the games with exactly this name, ignoring case and surrounding spaces.
+     *
+     * @param name the name
+     * @return the rows, in name order
+     */
+    public int[] lookup(String name) {
+        byte[] key = NameArena.fold(name);
+        int from = firstAtLeast(key, 0);
+        int to = from;
+        while (to < size && names.equalsFolded(rowIds.get(to), key)) {
+            to++;
+        }
+        int[] result = new int[to - from];
+        rowIds.get(from, result);
+        return result;
+    }
+
+    /**
+     * Finds the best ranked entry in a range, using the segment tree.
+     *
+     * @param from first entry, inclusive
+     * @param to   last entry, exclusive
+     * @return the position of the best entry
+     */
+    private int best(int from, int to) {
+        int result = -1;
+        for (int lo = from + leaves, hi = to + leaves; lo < hi; lo >>= 1, hi >>= 1) {
+            if ((lo & 1) == 1) {
+                result = better(result, tree.get(lo++));
+            }
+            if ((hi & 1) == 1) {
+                result = better(result, tree.get(--hi));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Picks the better ranked of two entries, -1 meaning no entry.
+     *
+     * @param a an entry position or -1
+     * @param b an entry position or -1
+     * @return the better entry
+     */
+    private int better(int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        return compare(a, b) <= 0 ? a : b;
+    }
+
+    /**
+     * Compares two entries by rank, then by name order.
+     *
+     * @param a an entry position
+     * @param b an entry position
+     * @return negative if a comes first
+     */
+    private int compare(int a, int b) {
+        int cmp = Integer.compare(ranks.get(a), ranks.get(b));
+        return cmp != 0 ? cmp : Integer.compare(a, b);
+    }
+
+    /**
+     * Finds the first entry whose name does not sort before the prefix by more than a bound.
+     *
+     * @param prefix the folded prefix
+     * @param bound  0 for the first name starting with the prefix or after it, 1 for the
+     *               first name after every name starting with it
+     * @return the position in rowIds
+     */
+    private int firstAtLeast(byte[] prefix, int bound) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Integer.signum(names.comparePrefix(rowIds.get(mid), prefix)) < bound) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
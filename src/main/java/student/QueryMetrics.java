@@ -0,0 +1,194 @@
+package student;
+
+/**
+ * The measurements taken for a single call to {@link Planner#filter}.
+ *
+ * A query runs in four phases: parse turns the filter text into a {@link FilterNode} tree
+ * (or finds it in the planner's cache), evaluate runs it over the table, sort orders the
+ * matching rows, and materialize turns them into games. Unsorted results are streamed in
+ * row order as the caller reads them, so their sort and materialize times are zero.
+ */
+public final class QueryMetrics {
+    /** The filter text. */
+    private final String filter;
+    /** The order of the results, null if they were not sorted. */
+    private final SortOrder order;
+    /** Time spent parsing. */
+    private final long parseNanos;
+    /** Time spent evaluating. */
+    private final long evaluateNanos;
+    /** Time spent turning rows into games. */
+    private final long materializeNanos;
+    /** Time spent sorting. */
+    private final long sortNanos;
+    /** Rows examined by scans and index lookups. */
+    private final long rowsScanned;
+    /** Rows returned. */
+    private final long rowsReturned;
+    /** Whether the parsed filter came from the cache. */
+    private final boolean cacheHit;
+
+    /**
+     * Constructor for the metrics of a query.
+     *
+     * @param filter           the filter text
+     * @param sortOn           the column sorted on, null if not sorted
+     * @param ascending        whether the results were sorted in ascending order
+     * @param parseNanos       time spent parsing
+     * @param evaluateNanos    time spent evaluating
+     * @param materializeNanos time spent turning rows into games
+     * @param sortNanos        time spent sorting
+     * @param rowsScanned      rows examined by scans and index lookups
+     * @param rowsReturned     rows returned
+     * @param cacheHit         whether the parsed filter came from the cache
+     */
+    public QueryMetrics(String filter, GameData sortOn, boolean ascending, long parseNanos,
+            long evaluateNanos, long materializeNanos, long sortNanos, long rowsScanned,
+            long rowsReturned, boolean cacheHit) {
+        this(filter, sortOn == null ? null : SortOrder.by(sortOn, ascending), parseNanos,
+                evaluateNanos, materializeNanos, sortNanos, rowsScanned, rowsReturned, cacheHit);
+    }
+
+    /**
+     * Constructor for the metrics of a query sorted on any order.
+     *
+     * @param filter           the filter text
+     * @param order            the order of the results, null if not sorted
+     * @param parseNanos       time spent parsing
+     * @param evaluateNanos    time spent evaluating
+     * @param materializeNanos time spent turning rows into games
+     * @param sortNanos        time spent sorting
+     * @param rowsScanned      rows examined by scans and index lookups
+     * @param rowsReturned     rows returned
+     * @param cacheHit         whether the parsed filter came from the cache
+     */
+    public QueryMetrics(String filter, SortOrder order, long parseNanos, long evaluateNanos,
+            long materializeNanos, long sortNanos, long rowsScanned, long rowsReturned,
+            boolean cacheHit) {
+        this.filter = filter;
+        this.order = order;
+        this.parseNanos = parseNanos;
+        this.evaluateNanos = evaluateNanos;
+        this.materializeNanos = materializeNanos;
+        this.sortNanos = sortNanos;
+        this.rowsScanned = rowsScanned;
+        this.rowsReturned = rowsReturned;
+        this.cacheHit = cacheHit;
+    }
+
+    /**
+     * Get the filter text.
+     *
+     * @return the filter
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * Get the order of the results.
+     *
+     * @return the order, null if the results were not sorted
+     */
+    public SortOrder getOrder() {
+        return order;
+    }
+
+    /**
+     * Get the column sorted on first.
+     *
+     * @return the column, null if the results were not sorted or first by a weighted score
+     */
+    public GameData getSortOn() {
+        return order == null ? null : order.getFirstColumn();
+    }
+
+    /**
+     * Whether the results were sorted in ascending order on their first key.
+     *
+     * @return true for ascending, always true when not sorted
+     */
+    public boolean isAscending() {
+        return order == null || order.isFirstAscending();
+    }
+
+    /**
+     * Get the time spent parsing.
+     *
+     * @return nanoseconds
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * Get the time spent evaluating.
+     *
+     * @return nanoseconds
+     */
+    public long getEvaluateNanos() {
+        return evaluateNanos;
+    }
+
+    /**
+     * Get the time spent turning rows into games.
+     *
+     * @return nanoseconds
+     */
+    public long getMaterializeNanos() {
+        return materializeNanos;
+    }
+
+    /**
+     * Get the time spent sorting.
+     *
+     * @return nanoseconds
+     */
+    public long getSortNanos() {
+        return sortNanos;
+    }
+
+    /**
+     * Get the total time of the query.
+     *
+     * @return nanoseconds
+     */
+    public long getTotalNanos() {
+        return parseNanos + evaluateNanos + materializeNanos + sortNanos;
+    }
+
+    /**
+     * Get the rows examined by scans and index lookups.
+     *
+     * @return the number of rows
+     */
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    /**
+     * Get the rows returned.
+     *
+     * @return the number of rows
+     */
+    public long getRowsReturned() {
+        return rowsReturned;
+    }
+
+    /**
+     * Whether the parsed filter came from the cache.
+     *
+     * @return true on a cache hit
+     */
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryMetrics{filter=" + filter + ", order=" + order + ", totalNanos=" + getTotalNanos() + ", parse=" + parseNanos
+                + ", evaluate=" + evaluateNanos
+                + ", materialize=" + materializeNanos + ", sort=" + sortNanos + ", scanned="
+                + rowsScanned + ", returned=" + rowsReturned + ", cacheHit=" + cacheHit + "}";
+    }
+}
@@ -0,0 +1,186 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The plan a filter was run with, as returned by {@link IPlanner#explain(String)}.
+ *
+ * Each step is one node of the compiled filter, listed in the order it ran, with the
+ * access path chosen for it (an index lookup or a scan of the candidate rows), the number
+ * of rows the planner expected it to return and the number it actually returned. Steps
+ * that were never run, because an earlier step already decided the result, are marked
+ * as skipped.
+ */
+public final class QueryPlan {
+    /** The filter that was explained. */
+    private final String filter;
+    /** Top level step, holding the root of the filter. */
+    private final Step root;
+
+    /**
+     * Constructor for a plan.
+     *
+     * @param filter the filter that was explained
+     */
+    public QueryPlan(String filter) {
+        this.filter = filter;
+        this.root = new Step("FILTER");
+    }
+
+    /**
+     * Get the filter that was explained.
+     *
+     * @return the filter
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * Get the top level step.
+     *
+     * @return the root step
+     */
+    public Step getRoot() {
+        return root;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        root.render(sb, 0);
+        return sb.toString();
+    }
+
+    /**
+     * One node of the plan.
+     */
+    public static final class Step {
+        /** What the step does, such as a condition or AND. */
+        private final String description;
+        /** Steps run by this one, in the order they ran. */
+        private final List<Step> children = new ArrayList<>();
+        /** Access path, such as INDEX or SCAN, null if not a leaf. */
+        private String access;
+        /** Estimated number of rows returned. */
+        private double estimatedRows;
+        /** Actual number of rows returned, -1 if the step never ran. */
+        private int actualRows = -1;
+
+        /**
+         * Constructor for a step.
+         *
+         * @param description what the step does
+         */
+        Step(String description) {
+            this.description = description;
+        }
+
+        /**
+         * Adds a child step.
+         *
+         * @param childDescription what the child does
+         * @return the new child
+         */
+        public Step child(String childDescription) {
+            Step child = new Step(childDescription);
+            children.add(child);
+            return child;
+        }
+
+        /**
+         * Records the access path of a leaf.
+         *
+         * @param path the access path, such as INDEX or SCAN
+         */
+        public void setAccess(String path) {
+            this.access = path;
+        }
+
+        /**
+         * Records the estimated number of rows.
+         *
+         * @param rows the estimate
+         */
+        public void setEstimatedRows(double rows) {
+            this.estimatedRows = rows;
+        }
+
+        /**
+         * Records the actual number of rows.
+         *
+         * @param rows the number of rows returned
+         */
+        public void setActualRows(int rows) {
+            this.actualRows = rows;
+        }
+
+        /**
+         * Get what the step does.
+         *
+         * @return the description
+         */
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * Get the access path.
+         *
+         * @return the access path, or null if the step is not a leaf
+         */
+        public String getAccess() {
+            return access;
+        }
+
+        /**
+         * Get the estimated number of rows.
+         *
+         * @return the estimate
+         */
+        public double getEstimatedRows() {
+            return estimatedRows;
+        }
+
+        /**
+         * Get the actual number of rows.
+         *
+         * @return the number of rows, or -1 if the step never ran
+         */
+        public int getActualRows() {
+            return actualRows;
+        }
+
+        /**
+         * Get the child steps.
+         *
+         * @return the children, in the order they ran
+         */
+        public List<Step> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        /**
+         * Renders this step and its children as indented lines.
+         *
+         * @param sb    where to write
+         * @param depth the indent level
+         */
+        private void render(StringBuilder sb, int depth) {
+            sb.append("  ".repeat(depth)).append(description);
+            if (access != null) {
+                sb.append(' ').append(access);
+            }
+            if (actualRows < 0) {
+                sb.append(String.format(" (est=%.0f, skipped)%n", estimatedRows));
+            } else {
+                sb.append(String.format(" (est=%.0f, actual=%d)%n", estimatedRows, actualRows));
+            }
+            for (Step child : children) {
+                child.render(sb, depth + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package student;
+
+import java.util.List;
+
+/**
+ * The games matching one query run by an {@link AsyncPlanner}, read in full so they can be
+ * handed to any thread and to every caller that asked for the same query.
+ */
+public final class QueryResult {
+    /** The filter text. */
+    private final String filter;
+    /** The order of the games, null if they are in name order. */
+    private final SortOrder order;
+    /** The matching games. */
+    private final List<BoardGame> games;
+    /** Time spent running the query, from leaving the queue to the last game read. */
+    private final long nanos;
+
+    /**
+     * Constructor for a query result.
+     *
+     * @param filter the filter text
+     * @param order  the order of the games, null if they are in name order
+     * @param games  the matching games, not copied
+     * @param nanos  time spent running the query
+     */
+    public QueryResult(String filter, SortOrder order, List<BoardGame> games, long nanos) {
+        this.filter = filter;
+        this.order = order;
+        this.games = games;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Get the filter text.
+     *
+     * @return the filter
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * Get the order of the games.
+     *
+     * @return the order, null if they are in name order
+     */
+    public SortOrder getOrder() {
+        return order;
+    }
+
+    /**
+     * Get the matching games.
+     *
+     * @return the games, unmodifiable
+     */
+    public List<BoardGame> getGames() {
+        return games;
+    }
+
+    /**
+     * Get the number of matching games.
+     *
+     * @return the count
+     */
+    public int size() {
+        return games.size();
+    }
+
+    /**
+     * Get the time spent running the query.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QueryResult{filter='%s', order=%s, games=%d, %.3f ms}", filter,
+                order == null ? "name" : order, games.size(), nanos / 1e6);
+    }
+}
@@ -0,0 +1,90 @@
+package student;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for many producers and a single consumer.
+ *
+ * Producers claim a slot by advancing the tail with a compare-and-set and never wait: when
+ * the buffer is full the item is refused and counted as dropped. The one consumer empties
+ * each slot before moving the head past it, so a producer only ever writes into a slot
+ * that has already been read.
+ *
+ * @param <T> the type of the items
+ */
+public final class RingBuffer<T> {
+    /** The slots, null when empty. */
+    private final AtomicReferenceArray<T> slots;
+    /** Number of slots. */
+    private final int capacity;
+    /** Next position to claim. */
+    private final AtomicLong tail = new AtomicLong();
+    /** Items refused because the buffer was full. */
+    private final AtomicLong dropped = new AtomicLong();
+    /** Next position to read, only written by the consumer. */
+    private volatile long head;
+
+    /**
+     * Constructor for a ring buffer.
+     *
+     * @param capacity the most items held at once
+     */
+    public RingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Adds an item without waiting. Safe to call from any thread.
+     *
+     * @param item the item, not null
+     * @return false if the buffer was full and the item was dropped
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Item cannot be null");
+        }
+        while (true) {
+            long t = tail.get();
+            if (t - head >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.set((int) (t % capacity), item);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest item. Only the single consumer thread may call this.
+     *
+     * @return the item, or null if there is none (or its producer has not finished writing
+     *         it yet)
+     */
+    public T poll() {
+        long h = head;
+        int slot = (int) (h % capacity);
+        T item = slots.get(slot);
+        if (item == null) {
+            return null;
+        }
+        slots.set(slot, null);
+        head = h + 1;
+        return item;
+    }
+
+    /**
+     * Get the number of items refused because the buffer was full.
+     *
+     * @return the count
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,30 @@
+package student;
+
+/**
+ * Counts the rows a single query examines, for its metrics.
+ *
+ * A scan examines every candidate row it is given, an index lookup every entry in the
+ * ranges it reads. One counter is used per query, so it needs no synchronization.
+ */
+public final class RowCounter {
+    /** Rows examined so far. */
+    private long scanned;
+
+    /**
+     * Adds examined rows.
+     *
+     * @param rows the number of rows
+     */
+    public void add(long rows) {
+        scanned += rows;
+    }
+
+    /**
+     * Get the rows examined so far.
+     *
+     * @return the number of rows
+     */
+    public long getScanned() {
+        return scanned;
+    }
+}
@@ -0,0 +1,235 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A plan for an arena event: which game is played at each table in each time slot, and by
+ * how many players.
+ *
+ * The event is divided into slots of equal length. A game takes as many consecutive slots
+ * at its table as its longest play time needs, and is played by a fixed number of players
+ * within its player range for all of them. Made by {@link ArenaScheduler}.
+ */
+public final class Schedule {
+    /** Number of tables. */
+    private final int tables;
+    /** Number of time slots. */
+    private final int slots;
+    /** Length of a slot in minutes. */
+    private final int slotMinutes;
+    /** Number of people attending. */
+    private final int attendees;
+    /** The sessions, by table then start. */
+    private final List<Session> sessions;
+
+    /**
+     * Constructor for a schedule.
+     *
+     * @param tables      the number of tables
+     * @param slots       the number of time slots
+     * @param slotMinutes the length of a slot in minutes
+     * @param attendees   the number of people attending
+     * @param sessions    the games played, in any order
+     */
+    public Schedule(int tables, int slots, int slotMinutes, int attendees,
+            List<Session> sessions) {
+        this.tables = tables;
+        this.slots = slots;
+        this.slotMinutes = slotMinutes;
+        this.attendees = attendees;
+        List<Session> sorted = new ArrayList<>(sessions);
+        sorted.sort(Comparator.comparingInt(Session::getTable)
+                .thenComparingInt(Session::getFirstSlot));
+        this.sessions = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * Get the number of tables.
+     *
+     * @return the tables
+     */
+    public int getTables() {
+        return tables;
+    }
+
+    /**
+     * Get the number of time slots.
+     *
+     * @return the slots
+     */
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * Get the length of a slot.
+     *
+     * @return the length in minutes
+     */
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    /**
+     * Get the number of people attending.
+     *
+     * @return the attendees
+     */
+    public int getAttendees() {
+        return attendees;
+    }
+
+    /**
+     * Get the games played.
+     *
+     * @return the sessions, by table then start
+     */
+    public List<Session> getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Counts the people playing during a slot.
+     *
+     * @param slot the slot, from 0
+     * @return the number of players seated
+     */
+    public int getSeated(int slot) {
+        int seated = 0;
+        for (Session session : sessions) {
+            if (session.covers(slot)) {
+                seated += session.getPlayers();
+            }
+        }
+        return seated;
+    }
+
+    /**
+     * Measures how much of the event people spend playing.
+     *
+     * @return the seated player slots over attendees times slots, from 0 to 1
+     */
+    public double getUtilization() {
+        long seated = 0;
+        for (Session session : sessions) {
+            seated += (long) session.getPlayers() * session.getLength();
+        }
+        return (double) seated / ((long) attendees * slots);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d tables, %d slots of %d min, %d attendees, %.0f%% seated%n",
+                tables, slots, slotMinutes, attendees, getUtilization() * 100));
+        int table = -1;
+        for (Session session : sessions) {
+            if (session.getTable() != table) {
+                table = session.getTable();
+                sb.append(String.format("Table %d%n", table + 1));
+            }
+            sb.append(String.format("  %4d min  %s (%d players, %d slot%s)%n",
+                    session.getFirstSlot() * slotMinutes, session.getGame().getName(),
+                    session.getPlayers(), session.getLength(),
+                    session.getLength() == 1 ? "" : "s"));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * One game played at one table over consecutive slots.
+     */
+    public static final class Session {
+        /** The game played. */
+        private final BoardGame game;
+        /** The table, from 0. */
+        private final int table;
+        /** The first slot, from 0. */
+        private final int firstSlot;
+        /** The number of slots taken. */
+        private final int length;
+        /** The number of players. */
+        private final int players;
+
+        /**
+         * Constructor for a session.
+         *
+         * @param game      the game played
+         * @param table     the table, from 0
+         * @param firstSlot the first slot, from 0
+         * @param length    the number of slots taken
+         * @param players   the number of players
+         */
+        public Session(BoardGame game, int table, int firstSlot, int length, int players) {
+            this.game = game;
+            this.table = table;
+            this.firstSlot = firstSlot;
+            this.length = length;
+            this.players = players;
+        }
+
+        /**
+         * Get the game played.
+         *
+         * @return the game
+         */
+        public BoardGame getGame() {
+            return game;
+        }
+
+        /**
+         * Get the table.
+         *
+         * @return the table, from 0
+         */
+        public int getTable() {
+            return table;
+        }
+
+        /**
+         * Get the first slot.
+         *
+         * @return the slot, from 0
+         */
+        public int getFirstSlot() {
+            return firstSlot;
+        }
+
+        /**
+         * Get the number of slots taken.
+         *
+         * @return the length
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Get the number of players.
+         *
+         * @return the players
+         */
+        public int getPlayers() {
+            return players;
+        }
+
+        /**
+         * Whether the game is being played during a slot.
+         *
+         * @param slot the slot, from 0
+         * @return true if the slot is one of the session's
+         */
+        public boolean covers(int slot) {
+            return slot >= firstSlot && slot < firstSlot + length;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s at table %d, slots %d-%d, %d players", game.getName(),
+                    table + 1, firstSlot, firstSlot + length - 1, players);
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A planner over a collection split into shards, each with its own games and indexes, so
+ * no one part has to hold everything.
+ *
+ * Games are spread over the shards by a hash of their id. Every query is sent to all the
+ * shards at once on a {@link ForkJoinPool}, and their results, each already in order, are
+ * merged: sorted results by the same order, name order otherwise, so the games come back
+ * exactly as a single {@link Planner} over the whole collection returns them. Facets are
+ * merged by adding their counts. Suggestions, fuzzy matches and similar games take the best
+ * of each shard's best.
+ *
+ * The shards are reached only through {@link PlannerShard}, whose calls take and return
+ * plain values, so a shard can be replaced by a stand-in for one in another process.
+ */
+public final class ShardedPlanner implements IPlanner {
+    /** Spreads consecutive ids over the shards. */
+    private static final int MIX = 0x9E3779B9;
+
+    /** The shards. */
+    private final List<PlannerShard> shards;
+    /** Runs the calls to the shards. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for a sharded planner over local shards.
+     *
+     * @param games  the collection
+     * @param shards the number of shards
+     */
+    public ShardedPlanner(Set<BoardGame> games, int shards) {
+        this(localShards(games, shards), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for a sharded planner over any shards.
+     *
+     * @param shards the shards, each holding different games
+     * @param pool   runs the calls to the shards
+     */
+    public ShardedPlanner(List<PlannerShard> shards, ForkJoinPool pool) {
+        if (shards == null || shards.isEmpty() || pool == null) {
+            throw new IllegalArgumentException("A sharded planner needs shards and a pool");
+        }
+        this.shards = List.copyOf(shards);
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the shard of a game.
+     *
+     * @param id     the game's id
+     * @param shards the number of shards
+     * @return the shard, from 0
+     */
+    static int shardOf(int id, int shards) {
+        return (int) ((Integer.toUnsignedLong(id * MIX) * shards) >>> Integer.SIZE);
+    }
+
+    /**
+     * Splits games over local shards by id.
+     *
+     * @param games  the collection
+     * @param shards the number of shards
+     * @return the shards
+     */
+    private static List<PlannerShard> localShards(Set<BoardGame> games, int shards) {
+        if (games == null || shards <= 0) {
+            throw new IllegalArgumentException("Invalid number of shards: " + shards);
+        }
+        List<Set<BoardGame>> parts = new ArrayList<>();
+        for (int s = 0; s < shards; s++) {
+            parts.add(new HashSet<>());
+        }
+        for (BoardGame game : games) {
+            parts.get(shardOf(game.getId(), shards)).add(game);
+        }
+        List<PlannerShard> result = new ArrayList<>();
+        for (Set<BoardGame> part : parts) {
+            result.add(new LocalShard(part));
+        }
+        return result;
+    }
+
+    /**
+     * Get the shards.
+     *
+     * @return the shards, unmodifiable
+     */
+    public List<PlannerShard> getShards() {
+        return shards;
+    }
+
+    @Override
+    public Stream<BoardGame> filter(String filter) {
+        return merged(scatter(shard -> shard.filter(filter, null)), GameTable.ROW_ORDER);
+    }
+
+    @Override
+    public Stream<BoardGame> filter(String filter, GameData sortOn) {
+        return filter(filter, sortOn, true);
+    }
+
+    @Override
+    public Stream<BoardGame> filter(String filter, GameData sortOn, boolean ascending) {
+        return filter(filter, SortOrder.by(sortOn, ascending));
+    }
+
+    @Override
+    public Stream<BoardGame> filter(String filter, SortOrder order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Sort order cannot be null");
+        }
+        return merged(scatter(shard -> shard.filter(filter, order)), order.comparator());
+    }
+
+    @Override
+    public String explain(String filter) {
+        List<String> plans = scatter(shard -> shard.explain(filter));
+        StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < plans.size(); s++) {
+            sb.append(String.format("Shard %d of %d (%d games)%n", s + 1, plans.size(),
+                    shards.get(s).size()));
+            for (String line : plans.get(s).split("\\R")) {
+                sb.append("  ").append(line).append(System.lineSeparator());
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public Map<GameData, Facet> facets(String filter, GameData... columns) {
+        Map<GameData, Facet> result = new LinkedHashMap<>();
+        for (Map<GameData, Facet> part : scatter(shard -> shard.facets(filter, columns))) {
+            for (Map.Entry<GameData, Facet> facet : part.entrySet()) {
+                result.merge(facet.getKey(), facet.getValue(), Facet::merge);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<BoardGame> fits(int players, int minutes, String filter) {
+        return merged(scatter(shard -> shard.fits(players, minutes, filter)),
+                GameTable.ROW_ORDER);
+    }
+
+    @Override
+    public List<BoardGame> suggest(String prefix, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        // as the prefix index orders them: rank, unranked last, then folded name
+        Comparator<BoardGame> bestRanked = Comparator
+                .comparingInt((BoardGame g) -> g.getRank() > 0 ? g.getRank() : Integer.MAX_VALUE)
+                .thenComparing((a, b) -> Arrays.compareUnsigned(NameArena.fold(a.getName()),
+                        NameArena.fold(b.getName())))
+                .thenComparing(GameTable.ROW_ORDER);
+        return top(scatter(shard -> shard.suggest(prefix, limit)), bestRanked, limit);
+    }
+
+    @Override
+    public List<BoardGame> fuzzyMatch(String name, int maxDistance) {
+        if (name == null || maxDistance < 0) {
+            return new ArrayList<>();
+        }
+        String key = NameArena.normalize(name);
+        Comparator<BoardGame> closest = Comparator
+                .comparingInt((BoardGame g) -> NgramIndex.distance(
+                        NameArena.normalize(g.getName()), key, maxDistance))
+                .thenComparing(GameTable.ROW_ORDER);
+        return top(scatter(shard -> shard.fuzzyMatch(name, maxDistance)), closest,
+                Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<BoardGame> similarTo(String gameName, int k) {
+        if (gameName == null || k <= 0) {
+            return new ArrayList<>();
+        }
+        // the first game in name order with the name is the one compared against
+        BoardGame liked = null;
+        for (List<BoardGame> named : scatter(shard -> shard.named(gameName))) {
+            for (BoardGame game : named) {
+                if (liked == null || GameTable.ROW_ORDER.compare(game, liked) < 0) {
+                    liked = game;
+                }
+            }
+        }
+        if (liked == null) {
+            return new ArrayList<>();
+        }
+        BoardGame query = liked;
+        double[] point = new double[SimilarityIndex.DIMENSIONS];
+        SimilarityIndex.features(query, point, 0);
+        Comparator<BoardGame> nearest = Comparator
+                .comparingDouble((BoardGame g) -> SimilarityIndex.distance(point, g))
+                .thenComparing(GameTable.ROW_ORDER);
+        return top(scatter(shard -> shard.nearest(query, k)), nearest, k);
+    }
+
+    @Override
+    public void reset() {
+        // No progressive filtering state is maintained.
+    }
+
+    /**
+     * Sends a call to every shard at once and waits for all of them.
+     *
+     * @param call the call
+     * @param <T>  the result of the call
+     * @return the result of each shard, in shard order
+     */
+    private <T> List<T> scatter(Function<PlannerShard, T> call) {
+        if (shards.size() == 1) {
+            return List.of(call.apply(shards.get(0)));
+        }
+        List<CompletableFuture<T>> calls = new ArrayList<>();
+        for (PlannerShard shard : shards) {
+            calls.add(CompletableFuture.supplyAsync(() -> call.apply(shard), pool));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<T> result : calls) {
+                results.add(result.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Merges ordered lists into one stream, read lazily.
+     *
+     * @param lists the lists, each in order
+     * @param order the order
+     * @return the games of every list, in order
+     */
+    private static Stream<BoardGame> merged(List<List<BoardGame>> lists,
+            Comparator<BoardGame> order) {
+        long size = 0;
+        for (List<BoardGame> list : lists) {
+            size += list.size();
+        }
+        Iterator<BoardGame> merge = new Merge(lists, order);
+        return StreamSupport.stream(Spliterators.spliterator(merge, size,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Takes the first games of ordered lists.
+     *
+     * @param lists the lists, each in order
+     * @param order the order
+     * @param limit the most games to take
+     * @return the first games of every list together, in order
+     */
+    private static List<BoardGame> top(List<List<BoardGame>> lists, Comparator<BoardGame> order,
+            int limit) {
+        List<BoardGame> result = new ArrayList<>();
+        Iterator<BoardGame> merge = new Merge(lists, order);
+        while (result.size() < limit && merge.hasNext()) {
+            result.add(merge.next());
+        }
+        return result;
+    }
+
+    /**
+     * A k-way merge of ordered lists with a tree of losers: each node of a binary tree over
+     * the lists holds the list that lost the match played there, so taking a game and
+     * replaying the path of its list to the root costs one comparison per level.
+     */
+    private static final class Merge implements Iterator<BoardGame> {
+        /** The lists. */
+        private final List<List<BoardGame>> lists;
+        /** The order. */
+        private final Comparator<BoardGame> order;
+        /** Position of the next game in each list. */
+        private final int[] next;
+        /** Number of leaves, a power of two. */
+        private final int leaves;
+        /** The losing list at each node, from 1, -1 for none. */
+        private final int[] losers;
+        /** The list holding the smallest next game, -1 for none. */
+        private int winner;
+
+        /**
+         * Constructor for a merge.
+         *
+         * @param lists the lists, each in order
+         * @param order the order
+         */
+        Merge(List<List<BoardGame>> lists, Comparator<BoardGame> order) {
+            this.lists = lists;
+            this.order = order;
+            this.next = new int[lists.size()];
+            int size = 1;
+            while (size < lists.size()) {
+                size <<= 1;
+            }
+            this.leaves = size;
+            this.losers = new int[size];
+            int[] winners = new int[2 * size];
+            for (int i = 0; i < size; i++) {
+                winners[size + i] = i < lists.size() ? i : -1;
+            }
+            for (int node = size - 1; node >= 1; node--) {
+                int a = winners[2 * node];
+                int b = winners[2 * node + 1];
+                boolean aWins = beats(a, b);
+                winners[node] = aWins ? a : b;
+                losers[node] = aWins ? b : a;
+            }
+            this.winner = winners[1];
+        }
+
+        /**
+         * Whether the next game of one list comes before that of another. Lists with no
+         * games left lose every match, and ties go to the earlier list.
+         *
+         * @param a a list, or -1
+         * @param b another list, or -1
+         * @return true if a wins
+         */
+        private boolean beats(int a, int b) {
+            if (a < 0 || next[a] >= lists.get(a).size()) {
+                return false;
+            }
+            if (b < 0 || next[b] >= lists.get(b).size()) {
+                return true;
+            }
+            int cmp = order.compare(lists.get(a).get(next[a]), lists.get(b).get(next[b]));
+            return cmp < 0 || (cmp == 0 && a < b);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return winner >= 0 && next[winner] < lists.get(winner).size();
+        }
+
+        @Override
+        public BoardGame next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BoardGame game = lists.get(winner).get(next[winner]++);
+            int candidate = winner;
+            for (int node = (leaves + winner) >>> 1; node >= 1; node >>>= 1) {
+                if (beats(losers[node], candidate)) {
+                    int t = losers[node];
+                    losers[node] = candidate;
+                    candidate = t;
+                }
+            }
+            winner = candidate;
+            return game;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package student;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Vantage point tree over a feature vector of every game, for "if you liked X" lookups.
+ *
+ * Each game becomes a point of six features, each scaled to about 0 to 1 by fixed bounds
+ * so the scale does not shift as games are added: rating out of 10, difficulty out of 5,
+ * min and max players and the longest play time on a log scale (2 and 4 players differ
+ * more than 12 and 14), and the year published within 1950 to 2025. Similarity is the
+ * Euclidean distance between the points.
+ *
+ * Each node of the tree is a game with a radius: the games closer to it than the radius
+ * are below it on one side, the rest on the other. A search keeps the k closest games
+ * found so far, and skips every side that cannot hold anything closer than the worst of
+ * them, so it looks at a small part of the catalog. The tree is laid out in one array:
+ * a node at position i owns a range of positions, with the inside games right after it
+ * and the outside games from split[i] on.
+ */
+public final class SimilarityIndex {
+    /** Number of features. */
+    static final int DIMENSIONS = 6;
+    /** Player count scaled to 1. */
+    private static final double PLAYERS_SCALE = Math.log1p(10);
+    /** Play time in minutes scaled to 1. */
+    private static final double TIME_SCALE = Math.log1p(240);
+    /** Earliest year told apart. */
+    private static final int FIRST_YEAR = 1950;
+    /** Latest year told apart. */
+    private static final int LAST_YEAR = 2025;
+
+    /** Features of every row, row after row. */
+    private final double[] features;
+    /** Row at each tree position. */
+    private final int[] order;
+    /** Radius of the node at each position. */
+    private final double[] radius;
+    /** Start of the outside games of the node at each position. */
+    private final int[] split;
+
+    /**
+     * Builds the tree over every row.
+     *
+     * @param games the games, in row order
+     */
+    public SimilarityIndex(List<BoardGame> games) {
+        int n = games.size();
+        this.features = new double[n * DIMENSIONS];
+        for (int row = 0; row < n; row++) {
+            features(games.get(row), features, row * DIMENSIONS);
+        }
+        this.order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        this.radius = new double[n];
+        this.split = new int[n];
+        build(0, n, new double[n]);
+    }
+
+    /**
+     * Computes the features of a game.
+     *
+     * @param game   the game
+     * @param out    where to write them
+     * @param offset position of the first feature
+     */
+    static void features(BoardGame game, double[] out, int offset) {
+        out[offset] = clamp(game.getRating() / 10);
+        out[offset + 1] = clamp(game.getDifficulty() / 5);
+        out[offset + 2] = clamp(Math.log1p(Math.max(0, game.getMinPlayers())) / PLAYERS_SCALE);
+        out[offset + 3] = clamp(Math.log1p(Math.max(0, game.getMaxPlayers())) / PLAYERS_SCALE);
+        int longest = Math.max(game.getMinPlayTime(), game.getMaxPlayTime());
+        out[offset + 4] = clamp(Math.log1p(Math.max(0, longest)) / TIME_SCALE);
+        out[offset + 5] = clamp((double) (game.getYearPublished() - FIRST_YEAR)
+                / (LAST_YEAR - FIRST_YEAR));
+    }
+
+    /**
+     * Limits a feature to the range 0 to 1.
+     *
+     * @param v the feature
+     * @return the feature within range, 0 if it is not a number
+     */
+    private static double clamp(double v) {
+        return Double.isNaN(v) ? 0 : Math.max(0, Math.min(1, v));
+    }
+
+    /**
+     * Builds the node owning a range of positions, then its two sides.
+     *
+     * @param from     first position, which becomes the node
+     * @param to       end of the range, exclusive
+     * @param distance scratch space for the distances to the node
+     */
+    private void build(int from, int to, double[] distance) {
+        while (to - from > 1) {
+            // the middle row is as good a vantage point as a random one, and deterministic
+            swap(from, (from + to) >>> 1);
+            int vantage = order[from];
+            for (int i = from + 1; i < to; i++) {
+                distance[i] = distance(vantage, order[i]);
+            }
+            int median = (from + 1 + to) >>> 1;
+            select(distance, from + 1, to, median);
+            radius[from] = distance[median];
+            split[from] = median;
+            build(from + 1, median, distance);
+            from = median; // the outside side, without recursing
+        }
+        if (to - from == 1) {
+            split[from] = to;
+        }
+    }
+
+    /**
+     * Rearranges a range so the position k holds the entry that would be there if it were
+     * sorted by distance, with nearer entries before it and farther ones after.
+     *
+     * @param distance the distances, moved together with order
+     * @param from     first position
+     * @param to       end of the range, exclusive
+     * @param k        the position to settle
+     */
+    private void select(double[] distance, int from, int to, int k) {
+        int lo = from;
+        int hi = to - 1;
+        while (lo < hi) {
+            double pivot = distance[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (distance[i] < pivot) {
+                    i++;
+                }
+                while (distance[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(distance, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Swaps two positions of the tree.
+     *
+     * @param a a position
+     * @param b another position
+     */
+    private void swap(int a, int b) {
+        int t = order[a];
+        order[a] = order[b];
+        order[b] = t;
+    }
+
+    /**
+     * Swaps two positions of the tree and their distances.
+     *
+     * @param distance the distances
+     * @param a        a position
+     * @param b        another position
+     */
+    private void swap(double[] distance, int a, int b) {
+        swap(a, b);
+        double t = distance[a];
+        distance[a] = distance[b];
+        distance[b] = t;
+    }
+
+    /**
+     * Distance between two rows.
+     *
+     * @param a a row
+     * @param b another row
+     * @return the Euclidean distance of their features
+     */
+    public double distance(int a, int b) {
+        return distance(features, a * DIMENSIONS, b);
+    }
+
+    /**
+     * Distance between a point and a game, computed as the index computes it, so the
+     * distances of games from different indexes can be compared.
+     *
+     * @param point the features of the point
+     * @param game  the game
+     * @return the Euclidean distance
+     */
+    static double distance(double[] point, BoardGame game) {
+        double[] other = new double[DIMENSIONS];
+        features(game, other, 0);
+        double sum = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double diff = point[d] - other[d];
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Distance between a point and a row.
+     *
+     * @param point  the features of the point
+     * @param offset position of the point's first feature
+     * @param row    the row
+     * @return the Euclidean distance
+     */
+    private double distance(double[] point, int offset, int row) {
+        int base = row * DIMENSIONS;
+        double sum = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double diff = point[offset + d] - features[base + d];
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Finds the games closest to a row.
+     *
+     * @param rows the row to search around first, then any other rows to leave out, such
+     *             as other editions with the same name
+     * @param k    the most games to return
+     * @return the closest rows, nearest first, ties in row order
+     */
+    public int[] nearest(int[] rows, int k) {
+        if (k <= 0 || rows.length == 0 || order.length == 0) {
+            return new int[0];
+        }
+        double[] point = Arrays.copyOfRange(features, rows[0] * DIMENSIONS,
+                (rows[0] + 1) * DIMENSIONS);
+        return nearest(point, rows, k);
+    }
+
+    /**
+     * Finds the games closest to a point, such as the features of a game from another
+     * index.
+     *
+     * @param point    the features of the point, see {@link #features}
+     * @param excluded rows to leave out
+     * @param k        the most games to return
+     * @return the closest rows, nearest first, ties in row order
+     */
+    public int[] nearest(double[] point, int[] excluded, int k) {
+        if (k <= 0 || order.length == 0) {
+            return new int[0];
+        }
+        Search search = new Search(point, excluded, k);
+        search.visit(0, order.length);
+        return search.result();
+    }
+
+    /**
+     * The state of one nearest neighbour search: the best rows so far in a max-heap on
+     * distance, so the worst of them is at the top and can be replaced.
+     */
+    private final class Search {
+        /** The point searched around. */
+        private final double[] point;
+        /** Rows to leave out. */
+        private final int[] excluded;
+        /** Rows found, a heap with the farthest at 0. */
+        private final int[] heapRows;
+        /** Distances of the rows found. */
+        private final double[] heapDistances;
+        /** Number of rows found. */
+        private int size;
+
+        /**
+         * Constructor for a search.
+         *
+         * @param point    the point searched around
+         * @param excluded rows to leave out
+         * @param k        the most rows to find
+         */
+        Search(double[] point, int[] excluded, int k) {
+            this.point = point;
+            this.excluded = excluded;
+            this.heapRows = new int[k];
+            this.heapDistances = new double[k];
+        }
+
+        /**
+         * Distance a row must beat to be kept.
+         *
+         * @return the distance of the farthest row kept, or infinity until k are found
+         */
+        private double bound() {
+            return size < heapRows.length ? Double.POSITIVE_INFINITY : heapDistances[0];
+        }
+
+        /**
+         * Searches the nodes in a range of positions.
+         *
+         * @param from the node
+         * @param to   the end of its range, exclusive
+         */
+        void visit(int from, int to) {
+            while (from < to) {
+                int row = order[from];
+                double d = distance(point, 0, row);
+                offer(row, d);
+                int median = split[from];
+                double r = radius[from];
+                if (d < r) {
+                    visit(from + 1, median);
+                    if (d + bound() < r) {
+                        return;
+                    }
+                    from = median;
+                } else {
+                    visit(median, to);
+                    if (d - bound() > r) {
+                        return;
+                    }
+                    to = median;
+                    from = from + 1;
+                }
+            }
+        }
+
+        /**
+         * Keeps a row if it is among the closest so far.
+         *
+         * @param row the row
+         * @param d   its distance
+         */
+        private void offer(int row, double d) {
+            for (int excludedRow : excluded) {
+                if (row == excludedRow) {
+                    return;
+                }
+            }
+            if (size < heapRows.length) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) / 2;
+                    if (!after(row, d, heapRows[parent], heapDistances[parent])) {
+                        break;
+                    }
+                    heapRows[i] = heapRows[parent];
+                    heapDistances[i] = heapDistances[parent];
+                    i = parent;
+                }
+                heapRows[i] = row;
+                heapDistances[i] = d;
+            } else if (after(heapRows[0], heapDistances[0], row, d)) {
+                siftDown(row, d);
+            }
+        }
+
+        /**
+         * Replaces the farthest row and restores the heap.
+         *
+         * @param row the new row
+         * @param d   its distance
+         */
+        private void siftDown(int row, double d) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && after(heapRows[child + 1], heapDistances[child + 1],
+                        heapRows[child], heapDistances[child])) {
+                    child++;
+                }
+                if (!after(heapRows[child], heapDistances[child], row, d)) {
+                    break;
+                }
+                heapRows[i] = heapRows[child];
+                heapDistances[i] = heapDistances[child];
+                i = child;
+            }
+            heapRows[i] = row;
+            heapDistances[i] = d;
+        }
+
+        /**
+         * Whether one row ranks after another: farther, or as far and later in row order.
+         *
+         * @param a  a row
+         * @param da its distance
+         * @param b  another row
+         * @param db its distance
+         * @return true if a ranks after b
+         */
+        private boolean after(int a, double da, int b, double db) {
+            return da > db || (da == db && a > b);
+        }
+
+        /**
+         * Gets the rows found.
+         *
+         * @return the rows, nearest first
+         */
+        int[] result() {
+            int[] rows = new int[size];
+            // pop the heap from the back, the farthest first
+            for (int end = size - 1; end >= 0; end--) {
+                rows[end] = heapRows[0];
+                int lastRow = heapRows[size - 1];
+                double lastDistance = heapDistances[size - 1];
+                size--;
+                if (size > 0) {
+                    siftDown(lastRow, lastDistance);
+                }
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package student;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the queries slower than a threshold to a local file, so a slow query reported by
+ * a user can be found and run again.
+ *
+ * Each entry holds the time, the raw filter, the sort order, the time spent in each phase
+ * and the rows scanned and returned. When the query came from a {@link Planner}, the plan
+ * it ran with, traced as it ran, is written below it, indented.
+ *
+ * The query thread only puts the entry in a bounded {@link RingBuffer} and returns; a
+ * daemon thread formats and writes the entries. If the buffer is full the entry is dropped rather than making the query
+ * wait, see {@link #getDropped()}. The file rolls over to file.1, file.2 and so on once it
+ * reaches its size limit, keeping a fixed number of old files.
+ *
+ * Use it with {@link Planner#setSlowQueryLog(SlowQueryLog)}, or as a listener on
+ * {@link PlannerMetrics} (without plans). Close it to write out the entries still buffered.
+ */
+public final class SlowQueryLog implements MetricsListener, Closeable {
+    /** Entries buffered by default. */
+    private static final int DEFAULT_CAPACITY = 1024;
+    /** Default size at which the file rolls over. */
+    private static final long DEFAULT_MAX_BYTES = 10L * 1024 * 1024;
+    /** Default number of files kept, the current one included. */
+    private static final int DEFAULT_MAX_FILES = 5;
+    /** How long the writer sleeps when there is nothing to write. */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /** The current log file. */
+    private final Path file;
+    /** Queries taking at least this long are logged. */
+    private final long thresholdNanos;
+    /** Size at which the file rolls over. */
+    private final long maxFileBytes;
+    /** Number of files kept, the current one included. */
+    private final int maxFiles;
+    /** Entries waiting to be written. */
+    private final RingBuffer<Entry> buffer;
+    /** The thread writing the entries. */
+    private final Thread writer;
+    /** Set once the log is closed. */
+    private volatile boolean closed;
+
+    /**
+     * Constructor for a slow query log with the default buffer and file sizes.
+     *
+     * @param file            the log file
+     * @param thresholdMillis queries taking at least this long are logged
+     */
+    public SlowQueryLog(Path file, long thresholdMillis) {
+        this(file, thresholdMillis, DEFAULT_CAPACITY, DEFAULT_MAX_BYTES, DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * Constructor for a slow query log.
+     *
+     * @param file            the log file
+     * @param thresholdMillis queries taking at least this long are logged
+     * @param capacity        the most entries waiting to be written
+     * @param maxFileBytes    size at which the file rolls over
+     * @param maxFiles        number of files kept, the current one included
+     */
+    public SlowQueryLog(Path file, long thresholdMillis, int capacity, long maxFileBytes,
+            int maxFiles) {
+        if (thresholdMillis < 0 || maxFileBytes <= 0 || maxFiles <= 0) {
+            throw new IllegalArgumentException("Invalid slow query log settings");
+        }
+        this.file = file;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.buffer = new RingBuffer<>(capacity);
+        this.writer = new Thread(this::run, "slow-query-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Whether a query is slow enough to log.
+     *
+     * @param query the measurements of the query
+     * @return true if it took at least the threshold
+     */
+    public boolean isSlow(QueryMetrics query) {
+        return query.getTotalNanos() >= thresholdNanos;
+    }
+
+    /**
+     * Logs the query if it is slow. Never blocks.
+     *
+     * @param query the measurements of the query
+     * @param plan  the plan the query ran with, or null; not changed once offered
+     */
+    public void offer(QueryMetrics query, QueryPlan plan) {
+        if (!closed && isSlow(query)) {
+            buffer.offer(new Entry(System.currentTimeMillis(), query, plan));
+        }
+    }
+
+    @Override
+    public void onQuery(QueryMetrics query) {
+        offer(query, null);
+    }
+
+    /**
+     * Get the number of slow queries dropped because the buffer was full.
+     *
+     * @return the count
+     */
+    public long getDropped() {
+        return buffer.getDropped();
+    }
+
+    /**
+     * Stops logging, and waits for the entries already buffered to be written.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the buffered entries until the log is closed.
+     */
+    private void run() {
+        BufferedWriter out = null;
+        long size = 0;
+        while (true) {
+            Entry entry = buffer.poll();
+            if (entry == null) {
+                try {
+                    if (out != null) {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error writing slow query log: " + e.getMessage());
+                }
+                if (closed) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            String text = format(entry);
+            long bytes = text.getBytes(StandardCharsets.UTF_8).length;
+            try {
+                if (out == null) {
+                    out = open();
+                    size = Files.size(file);
+                }
+                if (size > 0 && size + bytes > maxFileBytes) {
+                    out.close();
+                    roll();
+                    out = open();
+                    size = 0;
+                }
+                out.write(text);
+                size += bytes;
+            } catch (IOException e) {
+                System.err.println("Error writing slow query log: " + e.getMessage());
+                closeQuietly(out);
+                out = null;
+            }
+        }
+        try {
+            if (out != null) {
+                out.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing slow query log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes a writer after a write failed, ignoring a second failure.
+     *
+     * @param out the writer, or null
+     */
+    private static void closeQuietly(BufferedWriter out) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            // already reported the failure that got us here
+        }
+    }
+
+    /**
+     * Opens the current file for appending.
+     *
+     * @return the writer
+     * @throws IOException if the file cannot be opened
+     */
+    private BufferedWriter open() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Moves file.n to file.n+1 for every old file, dropping the oldest, then the current
+     * file to file.1.
+     *
+     * @throws IOException if a file cannot be moved
+     */
+    private void roll() throws IOException {
+        if (maxFiles == 1) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Files.deleteIfExists(rolled(maxFiles - 1));
+        for (int n = maxFiles - 2; n >= 1; n--) {
+            if (Files.exists(rolled(n))) {
+                Files.move(rolled(n), rolled(n + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Gets the path of an old file.
+     *
+     * @param n how many roll overs ago it was current
+     * @return the path, file.n
+     */
+    private Path rolled(int n) {
+        return file.resolveSibling(file.getFileName() + "." + n);
+    }
+
+    /**
+     * Formats an entry, with its plan when it came from a planner.
+     *
+     * @param entry the entry
+     * @return the text to write, ending in a line break
+     */
+    private static String format(Entry entry) {
+        QueryMetrics q = entry.query;
+        StringBuilder sb = new StringBuilder();
+        sb.append(Instant.ofEpochMilli(entry.timeMillis))
+                .append(String.format(Locale.ROOT, " %.3f ms", q.getTotalNanos() / 1e6))
+                .append(" filter=\"").append(q.getFilter().replace("\"", "\\\"")).append('"')
+                .append(" sort=");
+        sb.append(q.getOrder() == null ? "none" : q.getOrder().toString());
+        sb.append(String.format(Locale.ROOT,
+                " parse=%dus evaluate=%dus materialize=%dus sortTime=%dus",
+                q.getParseNanos() / 1000, q.getEvaluateNanos() / 1000,
+                q.getMaterializeNanos() / 1000, q.getSortNanos() / 1000));
+        sb.append(" scanned=").append(q.getRowsScanned())
+                .append(" returned=").append(q.getRowsReturned())
+                .append(" cached=").append(q.isCacheHit())
+                .append(System.lineSeparator());
+        if (entry.plan != null) {
+            for (String line : entry.plan.toString().split("\\R")) {
+                sb.append("    ").append(line).append(System.lineSeparator());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A slow query waiting to be written.
+     */
+    private static final class Entry {
+        /** When the query finished. */
+        private final long timeMillis;
+        /** The measurements of the query. */
+        private final QueryMetrics query;
+        /** The plan it ran with, or null. */
+        private final QueryPlan plan;
+
+        /**
+         * Constructor for an entry.
+         *
+         * @param timeMillis when the query finished
+         * @param query      the measurements of the query
+         * @param plan       the plan it ran with, or null
+         */
+        Entry(long timeMillis, QueryMetrics query, QueryPlan plan) {
+            this.timeMillis = timeMillis;
+            this.query = query;
+            this.plan = plan;
+        }
+    }
+}
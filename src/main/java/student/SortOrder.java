@@ -0,0 +1,569 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The order to return filter results in: one or more sort keys, each a column or a
+ * weighted score over columns, ascending or descending. Rows equal on every key stay in
+ * name order, so the same query always returns the same order.
+ *
+ * Sorting does not compare games. Each key is turned into a small whole number per row
+ * (the rank of the row's value among the distinct values), and the ranks of all the keys
+ * are packed into one long per row, most significant key first. The longs are sorted with
+ * a stable radix sort over only the bits they use, so rows start and stay in name order
+ * where the keys are equal. Keys with few distinct values, such as player counts, play
+ * times and years, skip the packing and take a single counting sort pass. Column ranks are
+ * built once per table; weighted scores are ranked among the rows being sorted. If the keys
+ * need more than the 63 bits of a long the rows are compared key by key instead.
+ *
+ * Orders are immutable. Build one with {@link #by(GameData, boolean)},
+ * {@link #weighted(Map, boolean)} and {@link #then(GameData, boolean)}, or parse one with
+ * {@link #parse(String)}.
+ */
+public final class SortOrder {
+    /** Below this many rows, packed keys are sorted with Arrays.sort instead of by radix. */
+    private static final int SMALL_SORT = 1024;
+    /** Most buckets a counting sort uses. */
+    private static final int COUNTING_LIMIT = 1 << 16;
+    /** Bits sorted on by each radix pass. */
+    private static final int DIGIT_BITS = 11;
+    /** Mask of a radix digit. */
+    private static final long DIGIT_MASK = (1L << DIGIT_BITS) - 1;
+
+    /** The keys, most significant first. */
+    private final List<Key> keys;
+
+    /**
+     * Constructor for an order.
+     *
+     * @param keys the keys, most significant first
+     */
+    private SortOrder(List<Key> keys) {
+        this.keys = Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * Creates an order on a single column.
+     *
+     * @param column    the column
+     * @param ascending true for ascending order
+     * @return the order
+     */
+    public static SortOrder by(GameData column, boolean ascending) {
+        return new SortOrder(List.of()).then(column, ascending);
+    }
+
+    /**
+     * Creates an order on a weighted sum of numeric columns, such as twice the rating minus
+     * the difficulty.
+     *
+     * @param weights   the weight of each column
+     * @param ascending true for the lowest score first
+     * @return the order
+     */
+    public static SortOrder weighted(Map<GameData, Double> weights, boolean ascending) {
+        return new SortOrder(List.of()).thenWeighted(weights, ascending);
+    }
+
+    /**
+     * Adds a column, used where the keys before it are equal.
+     *
+     * @param column    the column
+     * @param ascending true for ascending order
+     * @return a new order
+     */
+    public SortOrder then(GameData column, boolean ascending) {
+        if (column == null) {
+            throw new IllegalArgumentException("Sort column cannot be null");
+        }
+        return with(new Key(column, null, ascending));
+    }
+
+    /**
+     * Adds a weighted sum of numeric columns, used where the keys before it are equal.
+     *
+     * @param weights   the weight of each column
+     * @param ascending true for the lowest score first
+     * @return a new order
+     */
+    public SortOrder thenWeighted(Map<GameData, Double> weights, boolean ascending) {
+        if (weights == null || weights.isEmpty()) {
+            throw new IllegalArgumentException("Weighted sort needs at least one column");
+        }
+        for (Map.Entry<GameData, Double> weight : weights.entrySet()) {
+            if (!GameTable.isNumeric(weight.getKey()) || weight.getValue() == null
+                    || !Double.isFinite(weight.getValue())) {
+                throw new IllegalArgumentException("Invalid weight for " + weight.getKey());
+            }
+        }
+        return with(new Key(null, new EnumMap<>(weights), ascending));
+    }
+
+    /**
+     * Copies this order with one more key.
+     *
+     * @param key the key
+     * @return the new order
+     */
+    private SortOrder with(Key key) {
+        List<Key> more = new ArrayList<>(keys);
+        more.add(key);
+        return new SortOrder(more);
+    }
+
+    /**
+     * Parses an order such as "rating desc, difficulty asc, name".
+     *
+     * Keys are separated by commas. Each is a column, by enum or CSV name, optionally
+     * followed by asc or desc; the default is asc. Spaces are optional, so "ratingdesc"
+     * reads the same as "rating desc".
+     *
+     * @param text the order
+     * @return the order
+     * @throws IllegalArgumentException if a column is unknown
+     */
+    public static SortOrder parse(String text) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Sort order is empty");
+        }
+        SortOrder order = new SortOrder(List.of());
+        for (String part : text.split(",")) {
+            String key = part.trim().toLowerCase(Locale.ROOT);
+            boolean ascending = true;
+            if (key.endsWith("desc")) {
+                ascending = false;
+                key = key.substring(0, key.length() - "desc".length());
+            } else if (key.endsWith("asc")) {
+                key = key.substring(0, key.length() - "asc".length());
+            }
+            order = order.then(GameData.fromString(key.trim()), ascending);
+        }
+        return order;
+    }
+
+    /**
+     * Get the column of the first key.
+     *
+     * @return the column, or null if the first key is a weighted score
+     */
+    public GameData getFirstColumn() {
+        return keys.get(0).column;
+    }
+
+    /**
+     * Whether the first key is ascending.
+     *
+     * @return true for ascending
+     */
+    public boolean isFirstAscending() {
+        return keys.get(0).ascending;
+    }
+
+    /**
+     * Compares games as {@link #sort(GameTable, BitSet)} orders them, for merging results
+     * sorted separately, such as those of the shards of a {@link ShardedPlanner}.
+     *
+     * @return the comparator, games equal on every key in name order
+     */
+    Comparator<BoardGame> comparator() {
+        Comparator<BoardGame> result = null;
+        for (Key key : keys) {
+            Comparator<BoardGame> next = key.comparator();
+            result = result == null ? next : result.thenComparing(next);
+        }
+        return result == null ? GameTable.ROW_ORDER : result.thenComparing(GameTable.ROW_ORDER);
+    }
+
+    /**
+     * Sorts rows of a table.
+     *
+     * @param table the table
+     * @param rows  the rows to sort
+     * @return the rows in order
+     */
+    int[] sort(GameTable table, BitSet rows) {
+        PlannerEvents.Sort event = new PlannerEvents.Sort();
+        event.begin();
+        int n = rows.cardinality();
+        int[] ids = new int[n];
+        int i = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            ids[i++] = row;
+        }
+        if (n <= 1) {
+            // nothing to order, and the sorts below look at the first row
+            commit(event, n);
+            return ids;
+        }
+        // rows are in name order already, so ascending name keys at the end change nothing
+        int used = keys.size();
+        while (used > 0 && keys.get(used - 1).column == GameData.NAME
+                && keys.get(used - 1).ascending) {
+            used--;
+        }
+        // ranks[k][i] is the rank for key k of ids[i], descending keys already flipped
+        int[][] ranks = new int[used][];
+        int[] widths = new int[used];
+        int[] sizes = new int[used];
+        int bits = 0;
+        long buckets = 1;
+        for (int k = 0; k < used; k++) {
+            int[] distinct = new int[1];
+            ranks[k] = keys.get(k).ranks(table, ids, distinct);
+            sizes[k] = distinct[0];
+            widths[k] = bitsFor(distinct[0]);
+            bits += widths[k];
+            buckets = Math.min(buckets * distinct[0], Integer.MAX_VALUE);
+        }
+        if (bits == 0) {
+            // nothing to do
+        } else if (buckets <= Math.min(COUNTING_LIMIT, Math.max(n, SMALL_SORT))) {
+            countingSort(ids, ranks, sizes, (int) buckets);
+        } else if (n < SMALL_SORT && bits + bitsFor(table.size()) < Long.SIZE) {
+            packedSort(ids, ranks, widths, table.size());
+        } else if (bits < Long.SIZE) {
+            radixSort(ids, ranks, widths, bits);
+        } else {
+            comparedSort(ids, ranks);
+        }
+        commit(event, n);
+        return ids;
+    }
+
+    /**
+     * Fills in and commits a sort event, if a recording wants it.
+     *
+     * @param event the event, begun before the sort
+     * @param n     the number of rows sorted
+     */
+    private void commit(PlannerEvents.Sort event, int n) {
+        if (event.shouldCommit()) {
+            event.column = toString();
+            event.ascending = isFirstAscending();
+            event.rows = n;
+            event.commit();
+        }
+    }
+
+    /**
+     * Packs the ranks of each row into one long, most significant key first.
+     *
+     * @param ranks  the ranks of the rows for each key
+     * @param widths the bits each key's ranks take
+     * @param n      the number of rows
+     * @return the packed ranks
+     */
+    private static long[] pack(int[][] ranks, int[] widths, int n) {
+        long[] packed = new long[n];
+        for (int k = 0; k < ranks.length; k++) {
+            int[] rank = ranks[k];
+            int width = widths[k];
+            for (int i = 0; i < n; i++) {
+                packed[i] = (packed[i] << width) | rank[i];
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Sorts rows whose keys take few distinct values, such as player counts or years, with
+     * a counting sort: one bucket per combination of ranks, counted then filled in one pass
+     * each. Rows fill their bucket in row order, so ties stay in name order.
+     *
+     * @param ids     the rows, in row order, sorted in place
+     * @param ranks   the ranks of the rows for each key
+     * @param sizes   the number of distinct ranks of each key
+     * @param buckets the product of the sizes
+     */
+    private static void countingSort(int[] ids, int[][] ranks, int[] sizes, int buckets) {
+        int n = ids.length;
+        int[] bucket = ranks[0];
+        if (ranks.length > 1) {
+            bucket = ranks[0].clone();
+            for (int k = 1; k < ranks.length; k++) {
+                for (int i = 0; i < n; i++) {
+                    bucket[i] = bucket[i] * sizes[k] + ranks[k][i];
+                }
+            }
+        }
+        int[] starts = new int[buckets + 1];
+        for (int i = 0; i < n; i++) {
+            starts[bucket[i] + 1]++;
+        }
+        for (int b = 1; b <= buckets; b++) {
+            starts[b] += starts[b - 1];
+        }
+        int[] sorted = new int[n];
+        for (int i = 0; i < n; i++) {
+            sorted[starts[bucket[i]]++] = ids[i];
+        }
+        System.arraycopy(sorted, 0, ids, 0, n);
+    }
+
+    /**
+     * Sorts a few rows by packing their ranks and row into one long each, and sorting the
+     * longs.
+     *
+     * @param ids    the rows, sorted in place
+     * @param ranks  the ranks of the rows for each key
+     * @param widths the bits each key's ranks take
+     * @param size   the number of rows in the table
+     */
+    private static void packedSort(int[] ids, int[][] ranks, int[] widths, int size) {
+        int rowBits = bitsFor(size);
+        long[] packed = pack(ranks, widths, ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            packed[i] = (packed[i] << rowBits) | ids[i];
+        }
+        Arrays.sort(packed);
+        long rowMask = (1L << rowBits) - 1;
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (int) (packed[i] & rowMask);
+        }
+    }
+
+    /**
+     * Sorts rows on their packed ranks with a least significant digit radix sort. Each
+     * pass is stable, so rows with equal ranks keep their row order, and passes over a
+     * digit every row shares are skipped.
+     *
+     * @param ids    the rows, in row order, sorted in place
+     * @param ranks  the ranks of the rows for each key
+     * @param widths the bits each key's ranks take
+     * @param bits   the bits of all the keys together
+     */
+    private static void radixSort(int[] ids, int[][] ranks, int[] widths, int bits) {
+        int n = ids.length;
+        long[] keys = pack(ranks, widths, n);
+        long[] keyBuffer = new long[n];
+        int[] ids0 = ids;
+        int[] idBuffer = new int[n];
+        int[] counts = new int[(1 << DIGIT_BITS) + 1];
+        for (int shift = 0; shift < bits; shift += DIGIT_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[(int) ((keys[i] >>> shift) & DIGIT_MASK) + 1]++;
+            }
+            if (counts[(int) ((keys[0] >>> shift) & DIGIT_MASK) + 1] == n) {
+                continue; // every row has the same digit
+            }
+            for (int d = 1; d < counts.length; d++) {
+                counts[d] += counts[d - 1];
+            }
+            for (int i = 0; i < n; i++) {
+                int pos = counts[(int) ((keys[i] >>> shift) & DIGIT_MASK)]++;
+                keyBuffer[pos] = keys[i];
+                idBuffer[pos] = ids[i];
+            }
+            long[] k = keys;
+            keys = keyBuffer;
+            keyBuffer = k;
+            int[] t = ids;
+            ids = idBuffer;
+            idBuffer = t;
+        }
+        if (ids != ids0) {
+            System.arraycopy(ids, 0, ids0, 0, n);
+        }
+    }
+
+    /**
+     * Sorts rows by comparing their ranks key by key, for keys too wide to pack.
+     *
+     * @param ids   the rows, sorted in place
+     * @param ranks the ranks of the rows for each key
+     */
+    private static void comparedSort(int[] ids, int[][] ranks) {
+        Integer[] order = new Integer[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            for (int[] rank : ranks) {
+                int cmp = Integer.compare(rank[a], rank[b]);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(ids[a], ids[b]);
+        });
+        int[] sorted = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            sorted[i] = ids[order[i]];
+        }
+        System.arraycopy(sorted, 0, ids, 0, ids.length);
+    }
+
+    /**
+     * Counts the bits needed for the numbers 0 to count - 1.
+     *
+     * @param count how many numbers
+     * @return the bits, at least 1
+     */
+    private static int bitsFor(int count) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(count - 1));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Key key : keys) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(key);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SortOrder && ((SortOrder) o).keys.equals(keys);
+    }
+
+    @Override
+    public int hashCode() {
+        return keys.hashCode();
+    }
+
+    /**
+     * One key of an order: a column, or a weighted sum of columns.
+     */
+    private static final class Key {
+        /** The column, null for a weighted score. */
+        private final GameData column;
+        /** The weights of a weighted score, null for a column. */
+        private final Map<GameData, Double> weights;
+        /** Whether the key is ascending. */
+        private final boolean ascending;
+
+        /**
+         * Constructor for a key.
+         *
+         * @param column    the column, null for a weighted score
+         * @param weights   the weights of a weighted score, null for a column
+         * @param ascending whether the key is ascending
+         */
+        Key(GameData column, Map<GameData, Double> weights, boolean ascending) {
+            this.column = column;
+            this.weights = weights;
+            this.ascending = ascending;
+        }
+
+        /**
+         * Ranks rows on this key, flipped for a descending key.
+         *
+         * @param table    the table
+         * @param ids      the rows
+         * @param distinct receives the number of distinct ranks
+         * @return the rank of each row, in the order of ids
+         */
+        int[] ranks(GameTable table, int[] ids, int[] distinct) {
+            int[] result = new int[ids.length];
+            if (column != null) {
+                int[] all = table.ranks(column);
+                distinct[0] = table.distinctRanks(column);
+                for (int i = 0; i < ids.length; i++) {
+                    result[i] = all[ids[i]];
+                }
+            } else {
+                double[] scores = new double[ids.length];
+                for (int i = 0; i < ids.length; i++) {
+                    int row = ids[i];
+                    scores[i] = score(c -> table.value(row, c));
+                }
+                double[] sorted = scores.clone();
+                Arrays.sort(sorted);
+                int unique = 0;
+                for (int i = 0; i < sorted.length; i++) {
+                    if (i == 0 || Double.compare(sorted[i], sorted[unique - 1]) != 0) {
+                        sorted[unique++] = sorted[i];
+                    }
+                }
+                distinct[0] = Math.max(1, unique);
+                for (int i = 0; i < ids.length; i++) {
+                    result[i] = Arrays.binarySearch(sorted, 0, unique, scores[i]);
+                }
+            }
+            if (!ascending) {
+                for (int i = 0; i < ids.length; i++) {
+                    result[i] = distinct[0] - 1 - result[i];
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Compares games on this key, as their ranks compare.
+         *
+         * @return the comparator
+         */
+        Comparator<BoardGame> comparator() {
+            Comparator<BoardGame> result;
+            if (column == GameData.NAME) {
+                result = (a, b) -> GameTable.compareNames(a.getName(), b.getName());
+            } else if (column == GameData.ID) {
+                result = Comparator.comparingInt(BoardGame::getId);
+            } else if (column != null) {
+                result = Comparator.comparingDouble(g -> GameTable.numericValue(g, column));
+            } else {
+                result = Comparator.comparingDouble(
+                        g -> score(c -> GameTable.numericValue(g, c)));
+            }
+            return ascending ? result : result.reversed();
+        }
+
+        /**
+         * Computes the weighted score of a game.
+         *
+         * @param values the game's value of each column
+         * @return the sum of its weighted columns
+         */
+        private double score(ToDoubleFunction<GameData> values) {
+            double score = 0;
+            for (Map.Entry<GameData, Double> weight : weights.entrySet()) {
+                score += weight.getValue() * values.applyAsDouble(weight.getKey());
+            }
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            String direction = ascending ? " asc" : " desc";
+            if (column != null) {
+                return column.getColumnName() + direction;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<GameData, Double> weight : weights.entrySet()) {
+                sb.append(sb.length() == 0 ? "" : " + ").append(weight.getValue()).append('*')
+                        .append(weight.getKey().getColumnName());
+            }
+            return "(" + sb + ")" + direction;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return column == other.column && ascending == other.ascending
+                    && (weights == null ? other.weights == null : weights.equals(other.weights));
+        }
+
+        @Override
+        public int hashCode() {
+            return (column == null ? weights.hashCode() : column.hashCode()) * 2
+                    + (ascending ? 1 : 0);
+        }
+    }
+}
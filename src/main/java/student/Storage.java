@@ -0,0 +1,67 @@
+package student;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Where a planner keeps its games once its indexes are built.
+ *
+ * The default is chosen at startup with the system property {@value #PROPERTY}, set to
+ * heap or off_heap, for example {@code -Dbgarena.storage=off_heap}.
+ */
+public enum Storage {
+    /** The games as loaded, on the heap: returned as they are, nothing to rebuild. */
+    HEAP,
+    /**
+     * The values of the games in direct buffers outside the heap, rebuilt into games only
+     * when a query returns them, so the garbage collector has a few objects to trace
+     * instead of several per game.
+     */
+    OFF_HEAP;
+
+    /** System property choosing the default storage. */
+    public static final String PROPERTY = "bgarena.storage";
+
+    /**
+     * Gets the storage chosen by the system property.
+     *
+     * @return the storage, heap if the property is not set
+     * @throws IllegalArgumentException if the property names no storage
+     */
+    public static Storage configured() {
+        String name = System.getProperty(PROPERTY);
+        if (name == null || name.isBlank()) {
+            return HEAP;
+        }
+        return fromString(name);
+    }
+
+    /**
+     * Gets a storage by name, ignoring case; off-heap, off_heap and offheap all work.
+     *
+     * @param name the name
+     * @return the storage
+     * @throws IllegalArgumentException if the name is not a storage
+     */
+    public static Storage fromString(String name) {
+        String key = name.trim().toUpperCase(Locale.ROOT).replace("-", "_");
+        if (key.equals("OFFHEAP")) {
+            return OFF_HEAP;
+        }
+        try {
+            return valueOf(key);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("No storage named " + name);
+        }
+    }
+
+    /**
+     * Stores games.
+     *
+     * @param rows the games, in row order
+     * @return the columns holding them
+     */
+    GameColumns store(List<BoardGame> rows) {
+        return this == OFF_HEAP ? new OffHeapColumns(rows) : new HeapColumns(rows);
+    }
+}
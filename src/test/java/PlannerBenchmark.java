@@ -0,0 +1,783 @@
+import student.ArenaScheduler;
+import student.AsyncPlanner;
+import student.BGArenaPlanner;
+import student.BoardGame;
+import student.GameData;
+import student.GameList;
+import student.GameListRegistry;
+import student.GameTable;
+import student.IndexStatus;
+import student.GamesLoader;
+import student.IPlanner;
+import student.Planner;
+import student.PlannerMetrics;
+import student.QueryResult;
+import student.Schedule;
+import student.ShardedPlanner;
+import student.SimilarityIndex;
+import student.SortOrder;
+import student.Storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Micro benchmarks for the planner. Not part of the test suite, run by hand:
+ *
+ * <pre>
+ *  java -cp build/classes/java/main:build/classes/java/test:build/resources/main:... \
+ *      PlannerBenchmark suggest
+ * </pre>
+ *
+ * The collection is scaled up by copying every game with a numbered suffix, so the results
+ * are comparable between runs.
+ */
+public final class PlannerBenchmark {
+
+    /** private constructor as static class. */
+    private PlannerBenchmark() {
+    }
+
+    /**
+     * Runs the named benchmarks.
+     *
+     * @param args the benchmarks to run
+     */
+    public static void main(String[] args) {
+        for (String name : args) {
+            switch (name) {
+                case "suggest":
+                    suggest();
+                    break;
+                case "fuzzy":
+                    fuzzy();
+                    break;
+                case "names":
+                    names();
+                    break;
+                case "facets":
+                    facets();
+                    break;
+                case "similar":
+                    similar();
+                    break;
+                case "sort":
+                    sort();
+                    break;
+                case "arena":
+                    arena();
+                    break;
+                case "async":
+                    async();
+                    break;
+                case "sharded":
+                    sharded();
+                    break;
+                case "offheap":
+                    offHeap();
+                    break;
+                case "indexfile":
+                    indexFile();
+                    break;
+                case "adaptive":
+                    adaptive();
+                    break;
+                case "wishlist":
+                    wishlist();
+                    break;
+                case "registry":
+                    registry();
+                    break;
+                case "startup":
+                    startup();
+                    break;
+                case "metrics":
+                    metrics(753);
+                    metrics(100_000);
+                    break;
+                default:
+                    System.out.println("Unknown benchmark: " + name);
+            }
+        }
+    }
+
+    /**
+     * Builds a collection of the requested size from copies of the bundled collection.
+     *
+     * @param size the number of games
+     * @return the games
+     */
+    static Set<BoardGame> scaledCollection(int size) {
+        List<BoardGame> base = new ArrayList<>(GamesLoader.loadGamesFile("/collection.csv"));
+        base.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        Random rnd = new Random(42);
+        Set<BoardGame> games = new HashSet<>();
+        for (int i = 0; games.size() < size; i++) {
+            BoardGame g = base.get(i % base.size());
+            int copy = i / base.size();
+            String name = copy == 0 ? g.getName() : g.getName() + " " + copy;
+            games.add(new BoardGame(name, i + 1, g.getMinPlayers(), g.getMaxPlayers(),
+                    g.getMinPlayTime(), g.getMaxPlayTime(), g.getDifficulty(),
+                    rnd.nextInt(size + 1), g.getRating(), g.getYearPublished()));
+        }
+        return games;
+    }
+
+    /**
+     * Simulates typing game names into a search box: one suggest() per keystroke, compared
+     * with running a name~= filter sorted by rank for the same prefix.
+     */
+    private static void suggest() {
+        Set<BoardGame> games = scaledCollection(200_000);
+        IPlanner planner = new Planner(games);
+        List<BoardGame> all = planner.filter("").toList();
+        Random rnd = new Random(7);
+        List<String> typed = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            typed.add(all.get(rnd.nextInt(all.size())).getName());
+        }
+        // warm up
+        for (String name : typed) {
+            planner.suggest(name.substring(0, 1), 10);
+        }
+        List<Long> times = new ArrayList<>();
+        for (String name : typed) {
+            for (int len = 1; len <= Math.min(12, name.length()); len++) {
+                long start = System.nanoTime();
+                planner.suggest(name.substring(0, len), 10);
+                times.add(System.nanoTime() - start);
+            }
+        }
+        report("suggest(prefix, 10)", times);
+
+        times.clear();
+        for (String name : typed.subList(0, 20)) {
+            for (int len = 1; len <= Math.min(12, name.length()); len++) {
+                long start = System.nanoTime();
+                planner.filter("name~=" + name.substring(0, len), GameData.RANK).limit(10)
+                        .count();
+                times.add(System.nanoTime() - start);
+            }
+        }
+        report("filter(name~=prefix, RANK)", times);
+    }
+
+    /**
+     * Looks up misspelled names (one character dropped) with fuzzyMatch().
+     */
+    private static void fuzzy() {
+        IPlanner planner = new Planner(scaledCollection(200_000));
+        List<BoardGame> all = planner.filter("").toList();
+        Random rnd = new Random(11);
+        List<String> typos = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String name = all.get(rnd.nextInt(all.size())).getName();
+            int drop = rnd.nextInt(name.length());
+            typos.add(name.substring(0, drop) + name.substring(drop + 1));
+        }
+        for (String typo : typos.subList(0, 50)) {
+            planner.fuzzyMatch(typo, 2); // warm up
+        }
+        List<Long> times = new ArrayList<>();
+        for (String typo : typos) {
+            long start = System.nanoTime();
+            planner.fuzzyMatch(typo, 2);
+            times.add(System.nanoTime() - start);
+        }
+        report("fuzzyMatch(typo, 2)", times);
+    }
+
+    /**
+     * Measures the heap held by a 1M game planner, and the bytes allocated by name filters.
+     */
+    private static void names() {
+        Set<BoardGame> games = scaledCollection(1_000_000);
+        long before = usedHeap();
+        IPlanner planner = new Planner(games);
+        long after = usedHeap();
+        System.out.printf("planner heap (excluding the games): %.1f MB%n",
+                (after - before) / 1e6);
+        String[] filters = {"name~=pandemic", "name==catan", "name>m", "name~=ticket 12"};
+        for (String filter : filters) {
+            planner.filter(filter).count(); // warm up
+        }
+        for (String filter : filters) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            long count = planner.filter(filter).count();
+            long nanos = System.nanoTime() - start;
+            bytes = allocatedBytes() - bytes;
+            System.out.printf("%-20s matches=%7d %6.1f ms %8.1f MB allocated (%.1f bytes/row)%n",
+                    filter, count, nanos / 1e6, bytes / 1e6, (double) bytes / games.size());
+        }
+    }
+
+    /**
+     * Computes four facets over a broad filter, with facets() and by grouping the streamed
+     * results the way a client would.
+     */
+    private static void facets() {
+        IPlanner planner = new Planner(scaledCollection(200_000));
+        GameData[] columns = {GameData.MAX_PLAYERS, GameData.YEAR, GameData.DIFFICULTY,
+            GameData.MAX_TIME};
+        String filter = "minPlayers<=4";
+        List<Long> facetTimes = new ArrayList<>();
+        List<Long> streamTimes = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            long start = System.nanoTime();
+            planner.facets(filter, columns);
+            long middle = System.nanoTime();
+            List<BoardGame> games = planner.filter(filter).toList();
+            Map<Integer, Long> players = games.stream().collect(
+                    Collectors.groupingBy(BoardGame::getMaxPlayers, Collectors.counting()));
+            Map<Integer, Long> years = games.stream().collect(
+                    Collectors.groupingBy(g -> g.getYearPublished() / 10, Collectors.counting()));
+            Map<Integer, Long> difficulty = games.stream().collect(
+                    Collectors.groupingBy(g -> (int) g.getDifficulty(), Collectors.counting()));
+            Map<Integer, Long> times = games.stream().collect(
+                    Collectors.groupingBy(g -> g.getMaxPlayTime() / 15, Collectors.counting()));
+            long end = System.nanoTime();
+            if (i >= 10 && players.size() + years.size() + difficulty.size() + times.size() > 0) {
+                facetTimes.add(middle - start);
+                streamTimes.add(end - middle);
+            }
+        }
+        report("facets(4 columns)", facetTimes);
+        report("stream + groupingBy x4", streamTimes);
+    }
+
+    /**
+     * Sorts a large result on three keys with packed keys, compared with a comparator chain
+     * over the streamed results.
+     */
+    private static void sort() {
+        IPlanner planner = new Planner(scaledCollection(200_000));
+        SortOrder order = SortOrder.parse("rating desc, difficulty asc, name");
+        Comparator<BoardGame> chain = Comparator.comparingDouble(BoardGame::getRating).reversed()
+                .thenComparingDouble(BoardGame::getDifficulty)
+                .thenComparing(BoardGame::getName, String.CASE_INSENSITIVE_ORDER);
+        List<Long> packedTimes = new ArrayList<>();
+        List<Long> chainTimes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            long start = System.nanoTime();
+            int packed = planner.filter("minPlayers<=4", order).toList().size();
+            long middle = System.nanoTime();
+            int chained = planner.filter("minPlayers<=4").sorted(chain).toList().size();
+            long end = System.nanoTime();
+            if (i >= 10 && packed == chained) {
+                packedTimes.add(middle - start);
+                chainTimes.add(end - middle);
+            }
+        }
+        report("packed keys (3 keys)", packedTimes);
+        report("comparator chain", chainTimes);
+        for (GameData column : new GameData[] {GameData.MIN_PLAYERS, GameData.YEAR,
+            GameData.RATING}) {
+            List<Long> times = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                long start = System.nanoTime();
+                int n = planner.filter("minPlayers<=4", column, false).toList().size();
+                if (i >= 10 && n > 0) {
+                    times.add(System.nanoTime() - start);
+                }
+            }
+            report("sort on " + column.getColumnName(), times);
+        }
+    }
+
+    /**
+     * Runs the same queries on one planner and on planners split into shards, which query
+     * their shards in parallel and merge the results.
+     */
+    private static void sharded() {
+        Set<BoardGame> games = scaledCollection(300_000);
+        SortOrder order = SortOrder.parse("rating desc, difficulty asc");
+        String[] filters = {"minPlayers<=4", "name~=the", "year>=2010,rating>7"};
+        IPlanner single = new Planner(games, null);
+        for (int shards : new int[] {1, 2, 4, 8}) {
+            IPlanner planner = shards == 1 ? single : new ShardedPlanner(games, shards);
+            List<Long> sorted = new ArrayList<>();
+            List<Long> unsorted = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                for (String filter : filters) {
+                    long start = System.nanoTime();
+                    int a = planner.filter(filter, order).toList().size();
+                    long middle = System.nanoTime();
+                    int b = planner.filter(filter).toList().size();
+                    long end = System.nanoTime();
+                    if (i >= 10 && a == b) {
+                        sorted.add(middle - start);
+                        unsorted.add(end - middle);
+                    }
+                }
+            }
+            String label = shards == 1 ? "single planner" : shards + " shards";
+            report(label + ", sorted", sorted);
+            report(label + ", name order", unsorted);
+        }
+    }
+
+    /**
+     * Keeps a large collection where -Dbgarena.storage says, measuring the heap left in use,
+     * the time of full collections, and query latency while other work makes garbage. Run
+     * once per storage, so the two do not share a heap.
+     */
+    private static void offHeap() {
+        String[] filters = {"minPlayers<=4", "name~=the 1", "year>=2010,rating>7"};
+        SortOrder order = SortOrder.parse("rating desc");
+        for (Storage storage : List.of(Storage.configured())) {
+            IPlanner planner = new Planner(scaledCollection(2_000_000), null, storage);
+            Runtime runtime = Runtime.getRuntime();
+            List<Long> pauses = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                long start = System.nanoTime();
+                System.gc();
+                pauses.add(System.nanoTime() - start);
+            }
+            System.out.printf("%s: %.0f MB of heap in use%n", storage,
+                    (runtime.totalMemory() - runtime.freeMemory()) / 1e6);
+            report(storage + ", full gc", pauses);
+
+            long gcCount = 0;
+            long gcMillis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount -= gc.getCollectionCount();
+                gcMillis -= gc.getCollectionTime();
+            }
+            List<Long> nanos = new ArrayList<>();
+            List<byte[]> garbage = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                for (int j = 0; j < 2_000; j++) {
+                    garbage.add(new byte[4_096]);
+                    if (garbage.size() > 20_000) {
+                        garbage.clear();
+                    }
+                }
+                long start = System.nanoTime();
+                int rows = planner.filter(filters[i % filters.length], order).limit(1_000)
+                        .toList().size();
+                if (i >= 15 && rows > 0) {
+                    nanos.add(System.nanoTime() - start);
+                }
+            }
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += gc.getCollectionCount();
+                gcMillis += gc.getCollectionTime();
+            }
+            System.out.printf("%s: %d collections, %d ms while churning%n", storage, gcCount,
+                    gcMillis);
+            report(storage + ", sorted filter", nanos);
+        }
+    }
+
+    /**
+     * Heap in use once the app has started, through BGArenaPlanner.main: a batch run reading
+     * commands from a pipe is left waiting for its first one, then told to exit. Run once
+     * per storage, with -D{@value Storage#PROPERTY}=heap and =off_heap.
+     */
+    private static void startup() {
+        InputStream stdin = System.in;
+        try (PipedOutputStream commands = new PipedOutputStream();
+                PipedInputStream pipe = new PipedInputStream(commands)) {
+            System.setIn(pipe);
+            Path summary = Files.createTempFile("bgarena-summary", ".json");
+            Thread app = new Thread(() -> BGArenaPlanner.main(new String[] {"--no-indexes",
+                "--batch", "-", "--quiet", "--summary", summary.toString()}), "app");
+            app.start();
+            // started once the app has sat waiting for a command for a while
+            int waiting = 0;
+            while (waiting < 10) {
+                Thread.sleep(50);
+                Thread.State state = app.getState();
+                waiting = state == Thread.State.TIMED_WAITING || state == Thread.State.WAITING
+                        ? waiting + 1 : 0;
+            }
+            Runtime runtime = Runtime.getRuntime();
+            for (int i = 0; i < 5; i++) {
+                System.gc();
+            }
+            System.out.printf("%s: %.0f KB of heap in use while waiting for commands%n",
+                    Storage.configured(), (runtime.totalMemory() - runtime.freeMemory()) / 1e3);
+            commands.write("exit\n".getBytes(StandardCharsets.UTF_8));
+            commands.flush();
+            app.join();
+            Files.deleteIfExists(summary);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            System.setIn(stdin);
+        }
+    }
+
+    /**
+     * Times building a table with its indexes built in memory, built and saved to an index
+     * file, and read from that file, then times queries on the built and mapped indexes.
+     */
+    private static void indexFile() {
+        Set<BoardGame> games = scaledCollection(1_000_000);
+        Path dir;
+        try {
+            dir = Files.createTempDirectory("bgarena-indexes");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String label : new String[] {"built", "built and saved", "mapped", "mapped"}) {
+            long start = System.nanoTime();
+            Path indexDir = label.equals("built") ? null : dir;
+            GameTable table = new GameTable(games, Storage.HEAP, indexDir);
+            System.out.printf("%-30s %.0f ms%s%n", label, (System.nanoTime() - start) / 1e6,
+                    table.indexFile() == null ? "" : " from " + table.indexFile().getFileName());
+        }
+        String[] filters = {"rating>8", "year>=2015,minPlayers<=2", "name~=the 1"};
+        IPlanner built = new Planner(games, null, Storage.HEAP, null);
+        IPlanner mapped = new Planner(games, null, Storage.HEAP, dir);
+        for (IPlanner planner : new IPlanner[] {built, mapped}) {
+            List<Long> nanos = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                long start = System.nanoTime();
+                int rows = (int) planner.filter(filters[i % filters.length]).count();
+                rows += planner.suggest("the " + (i % 9), 10).size();
+                if (i >= 60 && rows > 0) {
+                    nanos.add(System.nanoTime() - start);
+                }
+            }
+            report(planner == built ? "built, query" : "mapped, query", nanos);
+        }
+    }
+
+    /**
+     * Times startup with the column indexes left to be built on demand, then a workload on
+     * two columns: latency while their conditions scan, and once their indexes are built.
+     */
+    private static void adaptive() {
+        Set<BoardGame> games = scaledCollection(1_000_000);
+        long start = System.nanoTime();
+        Planner planner = new Planner(games, null, Storage.HEAP, null);
+        System.out.printf("%-30s %.0f ms%n", "startup", (System.nanoTime() - start) / 1e6);
+        String[] filters = {"rating>8.5", "year>=2018", "rating=between=(6.1,6.2)"};
+        List<Long> before = new ArrayList<>();
+        List<Long> after = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            boolean ready = planner.indexStatus().stream()
+                    .filter(s -> s.getColumn() == GameData.RATING || s.getColumn() == GameData.YEAR)
+                    .allMatch(s -> s.getState() == IndexStatus.State.READY);
+            long begin = System.nanoTime();
+            int rows = (int) planner.filter(filters[i % filters.length]).count();
+            if (rows > 0 && i >= 3) {
+                (ready ? after : before).add(System.nanoTime() - begin);
+            }
+        }
+        report("before indexes", before);
+        report("after indexes", after);
+        planner.indexStatus().forEach(System.out::println);
+    }
+
+    /**
+     * Grows a large saved list one game at a time, saving it after each change by appending
+     * to its log, compared with rewriting the whole list as saveGame does, then reopens it.
+     */
+    private static void wishlist() {
+        List<BoardGame> games = new ArrayList<>(scaledCollection(50_000));
+        games.sort(Comparator.comparing(BoardGame::getName));
+        try {
+            Path dir = Files.createTempDirectory("bgarena-lists");
+            List<Long> logged = new ArrayList<>();
+            try (GameList list = new GameList(dir.resolve("wishlist"), games)) {
+                for (BoardGame game : games) {
+                    long start = System.nanoTime();
+                    list.addToList("1", Stream.of(game));
+                    logged.add(System.nanoTime() - start);
+                }
+            }
+            report("logged add", logged);
+            List<Long> rewritten = new ArrayList<>();
+            GameList plain = new GameList();
+            String file = dir.resolve("wishlist.txt").toString();
+            for (int i = 0; i < games.size(); i++) {
+                BoardGame game = games.get(i);
+                long start = System.nanoTime();
+                plain.addToList("1", Stream.of(game));
+                if (i % 100 == 0) {
+                    plain.saveGame(file);
+                    rewritten.add(System.nanoTime() - start);
+                }
+            }
+            report("add and rewrite (1 in 100)", rewritten);
+            long start = System.nanoTime();
+            try (GameList list = new GameList(dir.resolve("wishlist"), games)) {
+                System.out.printf("%-30s %.1f ms for %d games%n", "reopen",
+                        (System.nanoTime() - start) / 1e6, list.count());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hundreds of writers adding to and reading thousands of users' saved lists, more users
+     * than the registry holds open, with striped locks and with a single lock.
+     */
+    private static void registry() {
+        List<BoardGame> games = new ArrayList<>(scaledCollection(20_000));
+        int writers = 200;
+        int users = 5_000;
+        int ops = 500;
+        try {
+            for (int stripes : new int[] {1, GameListRegistry.DEFAULT_STRIPES}) {
+                Path dir = Files.createTempDirectory("bgarena-users");
+                List<Long> times = Collections.synchronizedList(new ArrayList<>());
+                CountDownLatch ready = new CountDownLatch(writers);
+                CountDownLatch go = new CountDownLatch(1);
+                List<Thread> threads = new ArrayList<>();
+                long start;
+                long elapsed;
+                try (GameListRegistry registry = new GameListRegistry(dir, games, 1_000,
+                        stripes)) {
+                    for (int w = 0; w < writers; w++) {
+                        Random rnd = new Random(w);
+                        Thread thread = new Thread(() -> {
+                            List<Long> mine = new ArrayList<>(ops);
+                            ready.countDown();
+                            try {
+                                go.await();
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                            for (int i = 0; i < ops; i++) {
+                                String user = "user" + rnd.nextInt(users);
+                                long t0 = System.nanoTime();
+                                if (rnd.nextInt(5) == 0) {
+                                    registry.count(user);
+                                } else {
+                                    BoardGame game = games.get(rnd.nextInt(games.size()));
+                                    registry.addToList(user, "1", Stream.of(game));
+                                }
+                                mine.add(System.nanoTime() - t0);
+                            }
+                            times.addAll(mine);
+                        });
+                        threads.add(thread);
+                        thread.start();
+                    }
+                    ready.await();
+                    start = System.nanoTime();
+                    go.countDown();
+                    for (Thread thread : threads) {
+                        thread.join();
+                    }
+                    elapsed = System.nanoTime() - start;
+                    System.out.printf("%d stripes: %d writers, %.0f ops/s, %d opened, "
+                            + "%d evicted%n", stripes, writers,
+                            (double) writers * ops / (elapsed / 1e9), registry.getOpened(),
+                            registry.getEvicted());
+                }
+                report(stripes + " stripes, per op", times);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Looks up similar games in a large catalog, compared with ranking every game by its
+     * distance from the liked one.
+     */
+    private static void similar() {
+        List<BoardGame> base = new ArrayList<>(GamesLoader.loadGamesFile("/collection.csv"));
+        long start = System.nanoTime();
+        IPlanner planner = new Planner(scaledCollection(300_000));
+        System.out.printf("built 300000 games in %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        List<BoardGame> all = planner.filter("").toList();
+        SimilarityIndex index = new SimilarityIndex(all);
+        Random rnd = new Random(1);
+        List<Long> treeTimes = new ArrayList<>();
+        List<Long> scanTimes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int liked = rnd.nextInt(all.size());
+            long t0 = System.nanoTime();
+            List<BoardGame> similar = planner.similarTo(all.get(liked).getName(), 10);
+            long t1 = System.nanoTime();
+            // the farthest of the 10 closest on top
+            PriorityQueue<double[]> closest = new PriorityQueue<>(
+                    (a, b) -> Double.compare(b[0], a[0]));
+            for (int row = 0; row < all.size(); row++) {
+                if (row != liked) {
+                    closest.add(new double[] {index.distance(liked, row), row});
+                    if (closest.size() > 10) {
+                        closest.poll();
+                    }
+                }
+            }
+            long t2 = System.nanoTime();
+            if (i >= 20 && similar.size() + closest.size() > 0) {
+                treeTimes.add(t1 - t0);
+                scanTimes.add(t2 - t1);
+            }
+        }
+        report("similarTo(k=10)", treeTimes);
+        report("distance scan", scanTimes);
+    }
+
+    /**
+     * Schedules a large convention from the bundled collection with growing time budgets.
+     */
+    private static void arena() {
+        List<BoardGame> games = new ArrayList<>(GamesLoader.loadGamesFile("/collection.csv"));
+        ArenaScheduler scheduler = new ArenaScheduler(300, 1500, 480, 30);
+        for (long budget : new long[] {100, 500, 2000, 5000}) {
+            long start = System.nanoTime();
+            Schedule schedule = scheduler.schedule(games, budget, 42);
+            long elapsed = System.nanoTime() - start;
+            long distinct = schedule.getSessions().stream().map(Schedule.Session::getGame)
+                    .distinct().count();
+            System.out.printf("budget %5d ms: %6.1f ms, %5d sessions, %4d games, %.1f%% seated%n",
+                    budget, elapsed / 1e6, schedule.getSessions().size(), distinct,
+                    schedule.getUtilization() * 100);
+        }
+    }
+
+    /**
+     * Sends bursts of queries where a few filters are asked for most often, and compares
+     * running each on the caller's thread with the async planner, which runs a filter once
+     * for every caller asking for it while it is in flight.
+     */
+    private static void async() {
+        Planner planner = new Planner(scaledCollection(100_000), null);
+        String[] filters = {"minPlayers>=2", "rating>7", "year>=2010", "maxPlayTime<=30",
+            "name~=the", "difficulty<2", "minPlayers>=2,rating>7", "rank<1000"};
+        Random rnd = new Random(42);
+        String[] burst = new String[2_000];
+        for (int i = 0; i < burst.length; i++) {
+            // the first filter about half of the time, the second a quarter and so on
+            int pick = Math.min(filters.length - 1, Integer.numberOfTrailingZeros(rnd.nextInt()));
+            burst[i] = filters[pick];
+        }
+        SortOrder order = SortOrder.parse("rating desc");
+        try (AsyncPlanner async = new AsyncPlanner(planner, 4, burst.length, 0)) {
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                long rows = 0;
+                for (String filter : burst) {
+                    rows += planner.filter(filter, order).toList().size();
+                }
+                long direct = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                List<CompletableFuture<QueryResult>> futures = new ArrayList<>();
+                for (String filter : burst) {
+                    futures.add(async.filter(filter, order));
+                }
+                long asyncRows = 0;
+                for (CompletableFuture<QueryResult> future : futures) {
+                    asyncRows += future.join().size();
+                }
+                long pipelined = System.nanoTime() - start;
+                System.out.printf("%d queries: direct %7.1f ms, async %6.1f ms,"
+                        + " %d coalesced, rows %s%n", burst.length, direct / 1e6,
+                        pipelined / 1e6, async.getCoalesced(),
+                        rows == asyncRows ? "match" : "DIFFER");
+            }
+        }
+    }
+
+    /**
+     * Compares query times with metrics enabled and disabled, alternating blocks of the same
+     * queries so drift in the machine affects both sides alike.
+     *
+     * @param size the number of games
+     */
+    private static void metrics(int size) {
+        PlannerMetrics metrics = new PlannerMetrics();
+        metrics.addListener(query -> { });
+        IPlanner planner = new Planner(scaledCollection(size), metrics);
+        String[] filters = {"minPlayers>=3", "name~=go,rating>7", "year=between=(1990,2010)",
+            "maxTime<=30|difficulty<2", "name==chess"};
+        List<List<Long>> times = List.of(new ArrayList<>(), new ArrayList<>());
+        int blocks = 2000;
+        int perBlock = 10;
+        for (int block = 0; block < blocks; block++) {
+            boolean enabled = block % 2 == 0;
+            metrics.setEnabled(enabled);
+            long start = System.nanoTime();
+            for (int i = 0; i < perBlock; i++) {
+                String filter = filters[i % filters.length];
+                planner.filter(filter).count();
+                planner.filter(filter, GameData.RATING, false).count();
+            }
+            if (block >= blocks / 4) { // the first blocks warm up
+                times.get(enabled ? 0 : 1).add(System.nanoTime() - start);
+            }
+        }
+        // the median block is not thrown off by the odd collection or preemption
+        long[] medians = new long[2];
+        for (int side = 0; side < 2; side++) {
+            long[] sorted = times.get(side).stream().mapToLong(Long::longValue).sorted().toArray();
+            medians[side] = sorted[sorted.length / 2];
+        }
+        System.out.printf("games=%d median block of %d queries: enabled=%.1fus disabled=%.1fus "
+                + "overhead=%.2f%%%n", size, perBlock * 2, medians[0] / 1e3, medians[1] / 1e3,
+                100.0 * (medians[0] - medians[1]) / medians[1]);
+    }
+
+    /**
+     * Heap in use after a full collection.
+     *
+     * @return bytes in use
+     */
+    static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Bytes allocated so far by the current thread.
+     *
+     * @return allocated bytes
+     */
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory
+                .getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Prints the median, 99th percentile and maximum of a set of timings.
+     *
+     * @param label what was timed
+     * @param nanos the timings in nanoseconds
+     */
+    static void report(String label, List<Long> nanos) {
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        System.out.printf("%-30s n=%d p50=%.1fus p99=%.1fus max=%.1fus%n", label,
+                sorted.length, sorted[sorted.length / 2] / 1e3,
+                sorted[(int) (sorted.length * 0.99)] / 1e3, sorted[sorted.length - 1] / 1e3);
+    }
+}
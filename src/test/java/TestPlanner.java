@@ -1,23 +1,78 @@
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
+import student.ArenaScheduler;
+import student.AsyncPlanner;
+import student.BatchSummary;
 import student.BoardGame;
+import student.ColumnIndex;
+import student.ConsoleApp;
+import student.Facet;
+import student.FilterNode;
+import student.FilterParser;
+import student.Filters;
 import student.GameData;
 import student.GameList;
+import student.GameListRegistry;
+import student.GameTable;
+import student.GamesLoader;
+import student.IndexFile;
+import student.IndexStatus;
 import student.IPlanner;
 import student.IGameList;
+import student.LatencyHistogram;
+import student.NgramIndex;
+import student.Operations;
 import student.Planner;
+import student.PlannerMetrics;
+import student.QueryMetrics;
+import student.QueryResult;
+import student.RingBuffer;
+import student.Schedule;
+import student.ShardedPlanner;
+import student.SimilarityIndex;
+import student.SlowQueryLog;
+import student.SortOrder;
+import student.Storage;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 public class TestPlanner {
 
     static Set<BoardGame> games;
 
+    @TempDir
+    Path tempDir;
+
     @BeforeAll
     public static void setup() {
         games = new HashSet<>();
@@ -143,4 +198,968 @@ public class TestPlanner {
         // Expected order from testFilterByNameContains: "Go", "Go Fish", "GoRami", "golang"
         assertEquals("Go", names.get(0));
     }
+
+    // Test 10: OR, NOT and grouping in the filter language.
+    @Test
+    public void testFilterOrNotGroup() {
+        IPlanner planner = new Planner(games);
+        List<String> names = planner.filter("name==chess|name==tucano").map(BoardGame::getName).toList();
+        assertEquals(List.of("Chess", "Tucano"), names);
+
+        // "go" games that do not allow more than 5 players: Go (5) and GoRami (6) -> only Go
+        names = planner.filter("name~=go, !(maxPlayers>5)").map(BoardGame::getName).toList();
+        assertEquals(List.of("Go"), names);
+
+        // AND binds tighter than OR
+        names = planner.filter("minPlayers>=10 | name~=go, year>=2003").map(BoardGame::getName).toList();
+        assertEquals(List.of("golang", "Tucano"), names);
+    }
+
+    // Test 11: Invalid conditions are ignored, and ! or () inside a value is kept as text.
+    @Test
+    public void testFilterParserLenient() {
+        IPlanner planner = new Planner(games);
+        assertEquals(games.size(), planner.filter("bogus>3").count());
+        assertEquals(1, planner.filter("bogus>3 | name==chess").count());
+        assertEquals(0, planner.filter("name==chess!").count());
+        assertEquals(0, planner.filter("name~=(second").count());
+        assertEquals(1, planner.filter("(name==chess").count());
+    }
+
+    // Test 12: explain() lists every condition with its access path and row counts.
+    @Test
+    public void testExplain() {
+        IPlanner planner = new Planner(games);
+        String plan = planner.explain("minPlayers>=6, name~=go");
+        assertTrue(plan.contains("minplayers>=6"), plan);
+        assertTrue(plan.contains("objectname~=go"), plan);
+        assertTrue(plan.contains("SCAN") || plan.contains("INDEX"), plan);
+        // the FILTER line reports the final number of matches: GoRami
+        assertTrue(plan.startsWith("FILTER (est=8, actual=1)"), plan);
+    }
+
+    // Test 13: Index lookups and scans return the same rows as testing each game.
+    @Test
+    public void testPlannerMatchesRowByRow() {
+        IPlanner planner = new Planner(games);
+        String[] filters = {"year>2003", "year>=2003", "year<2003", "year<=2003", "year==2003",
+            "year!=2003", "rating>7.5", "difficulty<=5.0", "minPlayers==2,maxPlayers>5",
+            "!minPlayers==2|year>2006", "rank>2.5", "year>abc", "rating>NaN", "rating>=NaN",
+            "rating<=NaN", "rating!=NaN"};
+        for (String f : filters) {
+            FilterNode node = FilterParser.parse(f);
+            long expected = games.stream().filter(node::test).count();
+            assertEquals(expected, planner.filter(f).count(), f);
+        }
+
+        // the index answers NaN as the scan does, whichever the planner picks
+        double[] ratings = games.stream().mapToDouble(BoardGame::getRating).toArray();
+        ColumnIndex index = new ColumnIndex(GameData.RATING, ratings);
+        double[][] values = {{Double.NaN}, {Double.NaN, 8.0}, {5.0, Double.NaN}};
+        for (Operations op : Operations.values()) {
+            if (!ColumnIndex.supports(op)) {
+                continue;
+            }
+            for (double[] numbers : values) {
+                if (op == Operations.BETWEEN ? numbers.length != 2
+                        : op != Operations.IN && numbers.length > 1) {
+                    continue;
+                }
+                double[] sorted = numbers.clone();
+                Arrays.sort(sorted);
+                double[] parsed = op == Operations.IN ? sorted : numbers;
+                BitSet scanned = new BitSet();
+                for (int row = 0; row < ratings.length; row++) {
+                    if (Filters.filterNumber(ratings[row], op, parsed)) {
+                        scanned.set(row);
+                    }
+                }
+                assertEquals(scanned, index.lookup(op, parsed),
+                        op + " " + Arrays.toString(parsed));
+            }
+        }
+    }
+
+    // Test 14: BETWEEN and IN operators.
+    @Test
+    public void testFilterBetweenAndIn() {
+        IPlanner planner = new Planner(games);
+        List<String> names = planner.filter("year=between=(2001,2003)").map(BoardGame::getName).toList();
+        assertEquals(List.of("Go Fish", "golang", "GoRami"), names);
+
+        names = planner.filter("maxPlayers=in=(2,5,20)").map(BoardGame::getName).toList();
+        assertEquals(List.of("Chess", "Go", "Tucano"), names);
+
+        names = planner.filter("name=in=(chess, monopoly)|year=in=(-5,2000)").map(BoardGame::getName).toList();
+        assertEquals(List.of("Chess", "Go", "Monopoly"), names);
+
+        assertEquals(0, planner.filter("year=between=(2003,2001)").count());
+        assertEquals(0, planner.filter("year=in=(2001.5)").count());
+        assertEquals(2, planner.filter("rating=between=(9.0,9.5)").count());
+    }
+
+    // Test 15: suggest() completes a prefix, best ranked first.
+    @Test
+    public void testSuggest() {
+        IPlanner planner = new Planner(games);
+        List<String> names = planner.suggest("go", 2).stream().map(BoardGame::getName).toList();
+        assertEquals(List.of("Go", "Go Fish"), names);
+        names = planner.suggest("  GO", 10).stream().map(BoardGame::getName).toList();
+        assertEquals(List.of("Go", "Go Fish", "GoRami", "golang"), names);
+        assertEquals(games.size(), planner.suggest("", 100).size());
+        assertTrue(planner.suggest("xyz", 5).isEmpty());
+        assertTrue(planner.suggest("go", 0).isEmpty());
+    }
+
+    // Test 16: fuzzyMatch() finds names within an edit distance, closest first.
+    @Test
+    public void testFuzzyMatch() {
+        IPlanner planner = new Planner(games);
+        List<String> names = planner.fuzzyMatch("chesss", 1).stream().map(BoardGame::getName).toList();
+        assertEquals(List.of("Chess"), names);
+        names = planner.fuzzyMatch(" GOFISH ", 1).stream().map(BoardGame::getName).toList();
+        assertEquals(List.of("Go Fish"), names);
+        names = planner.fuzzyMatch("golan", 3).stream().map(BoardGame::getName).toList();
+        assertEquals(List.of("golang", "Go", "GoRami"), names);
+        assertTrue(planner.fuzzyMatch("zzzzzzzz", 2).isEmpty());
+
+        // the index must find exactly what a full comparison finds
+        for (String query : new String[] {"go", "g", "monoply", "tucan", "17 dayz", "chez"}) {
+            for (int k = 0; k <= 3; k++) {
+                final int max = k;
+                long expected = games.stream()
+                        .filter(g -> NgramIndex.distance(g.getName().toLowerCase(), query, max) <= max)
+                        .count();
+                assertEquals(expected, planner.fuzzyMatch(query, k).size(), query + " " + k);
+            }
+        }
+    }
+
+    // Test 17: name filters on the packed bytes agree with the String comparisons.
+    @Test
+    public void testNameFiltersOnPackedNames() {
+        IPlanner planner = new Planner(games);
+        String[] filters = {"name~=GO", "name==  chess ", "name!=chess", "name>m", "name<=go",
+            "name=between=(c,m)", "name=in=(chess,go fish,nothing)"};
+        for (String filter : filters) {
+            FilterNode.Condition condition = FilterParser.parseCondition(filter);
+            long expected = games.stream().filter(condition::test).count();
+            assertEquals(expected, planner.filter(filter).count(), filter);
+        }
+        Set<BoardGame> spaced = new HashSet<>();
+        spaced.add(new BoardGame("  Ünïcode Game ", 1, 1, 2, 10, 20, 1.0, 1, 7.0, 2000));
+        spaced.add(new BoardGame("ünïcode game", 2, 1, 2, 10, 20, 1.0, 2, 7.0, 2001));
+        assertEquals(2, new Planner(spaced).filter("name==ÜNÏCODE GAME").count());
+        assertEquals(2, new Planner(spaced).filter("name~=ïco").count());
+
+        // characters whose lower case alone does not fold them as equalsIgnoreCase does
+        Set<BoardGame> folded = new HashSet<>();
+        folded.add(new BoardGame("Chaos \u03c3", 1, 1, 2, 10, 20, 1.0, 1, 7.0, 2000));
+        folded.add(new BoardGame("\u0130stanbul", 2, 1, 2, 10, 20, 1.0, 2, 7.0, 2001));
+        folded.add(new BoardGame("\u212Aelvin Run", 3, 1, 2, 10, 20, 1.0, 3, 7.0, 2002));
+        IPlanner foldedPlanner = new Planner(folded);
+        for (String filter : new String[] {"name==chaos \u03c2", "name~=\u03a3", "name==istanbul",
+            "name~=\u0131st", "name==kelvin run", "name~=KELVIN"}) {
+            FilterNode.Condition condition = FilterParser.parseCondition(filter);
+            long expected = folded.stream().filter(condition::test).count();
+            assertEquals(1, expected, filter);
+            assertEquals(expected, foldedPlanner.filter(filter).count(), filter);
+        }
+    }
+
+    // Test 18: running a filter allocates bitmaps per query, and nothing per row.
+    @Test
+    public void testFilterAllocatesNothingPerRow() {
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            return; // allocation counting is not available on this JVM
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        String[] filters = {"name~=go", "name>m,minPlayers>=2", "rating>7|!maxPlayers<=4",
+            "year=between=(1990,2010),difficulty<3", "minTime=in=(15,30,45)"};
+        IPlanner small = new Planner(copies(20_000));
+        IPlanner large = new Planner(copies(80_000));
+        for (String filter : filters) {
+            long smallBytes = 0;
+            long largeBytes = 0;
+            for (int round = 0; round < 5; round++) { // the last round runs warm
+                long start = threads.getCurrentThreadAllocatedBytes();
+                small.filter(filter).count();
+                long middle = threads.getCurrentThreadAllocatedBytes();
+                large.filter(filter).count();
+                smallBytes = middle - start;
+                largeBytes = threads.getCurrentThreadAllocatedBytes() - middle;
+            }
+            // a bitmap costs 1/8 of a byte per row, a single object per row costs 16 or more
+            double perRow = (double) (largeBytes - smallBytes) / 60_000;
+            assertTrue(perRow < 1.0, filter + " allocated " + perRow + " bytes per row");
+        }
+    }
+
+    /**
+     * Makes a collection of the given size by copying the test games under new names.
+     *
+     * @param size the number of games
+     * @return the games
+     */
+    private static Set<BoardGame> copies(int size) {
+        List<BoardGame> base = List.copyOf(games);
+        Set<BoardGame> result = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            BoardGame g = base.get(i % base.size());
+            result.add(new BoardGame(g.getName() + " " + i, i, g.getMinPlayers(), g.getMaxPlayers(),
+                    g.getMinPlayTime(), g.getMaxPlayTime(), g.getDifficulty(), g.getRank(),
+                    g.getRating(), g.getYearPublished()));
+        }
+        return result;
+    }
+
+    // Test 19: queries are measured, passed to listeners and summed in the metrics.
+    @Test
+    public void testQueryMetrics() {
+        PlannerMetrics metrics = new PlannerMetrics();
+        List<QueryMetrics> seen = new ArrayList<>();
+        metrics.addListener(seen::add);
+        IPlanner planner = new Planner(games, metrics);
+        planner.filter("name~=go").toList();
+        planner.filter("name~=go", GameData.RATING, false).toList();
+        assertEquals(2, seen.size());
+        assertFalse(seen.get(0).isCacheHit());
+        assertTrue(seen.get(1).isCacheHit());
+        assertEquals(4, seen.get(0).getRowsReturned());
+        assertEquals(games.size(), seen.get(0).getRowsScanned());
+        assertEquals(0, seen.get(0).getSortNanos());
+        assertEquals(GameData.RATING, seen.get(1).getSortOn());
+        assertEquals(2, metrics.getQueryCount());
+        assertEquals(0.5, metrics.getCacheHitRatio(), 1e-9);
+        assertEquals(8, metrics.getRowsReturned());
+
+        metrics.setEnabled(false);
+        planner.filter("name~=go").toList();
+        assertEquals(2, seen.size());
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 1000; v++) {
+            histogram.record(v * 1000);
+        }
+        assertEquals(500_000, histogram.getPercentile(50), 500_000 * 0.04);
+        assertEquals(990_000, histogram.getPercentile(99), 990_000 * 0.04);
+        assertEquals(1_000_000, histogram.getPercentile(100));
+    }
+
+    // Test 20: slow queries are written with their sort, counts and plan; the file rolls over.
+    @Test
+    public void testSlowQueryLog() throws Exception {
+        Path file = tempDir.resolve("logs").resolve("slow.log");
+        Planner planner = new Planner(games, new PlannerMetrics());
+        try (SlowQueryLog log = new SlowQueryLog(file, 0)) {
+            planner.setSlowQueryLog(log);
+            planner.filter("minPlayers>=2, name~=go", GameData.RATING, false).toList();
+        }
+        String text = Files.readString(file);
+        assertTrue(text.contains("filter=\"minPlayers>=2, name~=go\" sort="
+                + GameData.RATING.getColumnName() + " desc"), text);
+        assertTrue(text.contains("returned=4"), text);
+        assertTrue(text.contains("    FILTER (est="), text);
+
+        // the plan is the one traced as the query ran, not a second run of it
+        Planner once = new Planner(games, new PlannerMetrics());
+        try (SlowQueryLog log = new SlowQueryLog(tempDir.resolve("once.log"), 0)) {
+            once.setSlowQueryLog(log);
+            once.filter("rating>5").count();
+        }
+        assertEquals(1, status(once, GameData.RATING).getQueries());
+        assertTrue(Files.readString(tempDir.resolve("once.log")).contains("rating>5"));
+
+        Path small = tempDir.resolve("small.log");
+        try (SlowQueryLog log = new SlowQueryLog(small, 0, 16, 200, 3)) {
+            planner.setSlowQueryLog(log);
+            for (int i = 0; i < 10; i++) {
+                planner.filter("name~=go" + i).count();
+            }
+        }
+        assertTrue(Files.exists(tempDir.resolve("small.log.1")));
+        assertTrue(Files.exists(tempDir.resolve("small.log.2")));
+        assertFalse(Files.exists(tempDir.resolve("small.log.3")));
+
+        RingBuffer<String> buffer = new RingBuffer<>(2);
+        assertTrue(buffer.offer("a"));
+        assertTrue(buffer.offer("b"));
+        assertFalse(buffer.offer("c"));
+        assertEquals(1, buffer.getDropped());
+        assertEquals("a", buffer.poll());
+        assertTrue(buffer.offer("d"));
+        assertEquals("b", buffer.poll());
+        assertEquals("d", buffer.poll());
+        assertNull(buffer.poll());
+    }
+
+    // Test 21: a Flight Recorder recording gets the planner, sort, list and load events.
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        Path dump = tempDir.resolve("planner.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] {"student.Filter", "student.Sort",
+                "student.ListChange", "student.LoadPhase"}) {
+                recording.enable(name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            IPlanner planner = new Planner(games);
+            planner.filter("name~=go", GameData.RATING, false).toList();
+            IGameList list = new GameList();
+            list.addToList("1-2", planner.filter("name~=go"));
+            assertThrows(IllegalArgumentException.class, () -> list.removeFromList("9"));
+            GamesLoader.loadGamesFile("/collection.csv");
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        RecordedEvent filter = events.stream()
+                .filter(e -> e.getEventType().getName().equals("student.Filter")).findFirst().get();
+        assertEquals("name~=go", filter.getString("filter"));
+        assertEquals(4, filter.getLong("rowsReturned"));
+        assertFalse(filter.getBoolean("ascending"));
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("student.Sort")
+                && e.getLong("rows") == 4));
+        List<RecordedEvent> changes = events.stream()
+                .filter(e -> e.getEventType().getName().equals("student.ListChange")).toList();
+        assertEquals(2, changes.size());
+        assertEquals(2, changes.get(0).getInt("sizeAfter"));
+        assertFalse(changes.get(1).getBoolean("succeeded"));
+        assertEquals(2, events.stream()
+                .filter(e -> e.getEventType().getName().equals("student.LoadPhase")).count());
+    }
+
+    // Test 22: facets count, summarize and bucket every requested column in one call.
+    @Test
+    public void testFacets() {
+        IPlanner planner = new Planner(games);
+        Map<GameData, Facet> facets = planner.facets("name~=go", GameData.MAX_PLAYERS,
+                GameData.YEAR, GameData.DIFFICULTY, GameData.MAX_PLAYERS);
+        assertEquals(List.of(GameData.MAX_PLAYERS, GameData.YEAR, GameData.DIFFICULTY),
+                List.copyOf(facets.keySet()));
+        Facet players = facets.get(GameData.MAX_PLAYERS);
+        assertEquals(4, players.getCount());
+        assertEquals(5.0, players.getMin());
+        assertEquals(10.0, players.getMax());
+        assertEquals(7.0, players.getMean(), 1e-9);
+        long sixes = players.getBuckets().stream().filter(b -> b.getLabel().equals("6"))
+                .findFirst().get().getCount();
+        assertEquals(1, sixes);
+        assertEquals(1, players.getBuckets().get(players.getBuckets().size() - 1).getCount());
+        assertEquals("10+", players.getBuckets().get(players.getBuckets().size() - 1).getLabel());
+        assertEquals(4, facets.get(GameData.YEAR).getBuckets().stream()
+                .filter(b -> b.getLabel().equals("2000-2009")).findFirst().get().getCount());
+        assertEquals("3.0-4.0", facets.get(GameData.DIFFICULTY).getBuckets().get(3).getLabel());
+
+        Facet none = planner.facets("name==nothing", GameData.RATING).get(GameData.RATING);
+        assertEquals(0, none.getCount());
+        assertTrue(Double.isNaN(none.getMin()));
+        Facet merged = none.merge(planner.facets("", GameData.RATING).get(GameData.RATING));
+        assertEquals(games.size(), merged.getCount());
+        assertThrows(IllegalArgumentException.class, () -> planner.facets("", GameData.NAME));
+
+        // a game with no player count is not counted as a one player game
+        Set<BoardGame> unknown = new HashSet<>(games);
+        unknown.add(new BoardGame("No Count", 99_001, 0, 0, 30, 60, 2.0, 1, 7.0, 2020));
+        List<Facet.Bucket> buckets = new Planner(unknown).facets("name==No Count",
+                GameData.MAX_PLAYERS).get(GameData.MAX_PLAYERS).getBuckets();
+        assertEquals("<1", buckets.get(0).getLabel());
+        assertEquals(1, buckets.get(0).getCount());
+        assertEquals("1", buckets.get(1).getLabel());
+        assertEquals(0, buckets.get(1).getCount());
+    }
+
+    // Test 23: fits() agrees with checking every game's player range and longest play time.
+    @Test
+    public void testFits() {
+        IPlanner planner = new Planner(games);
+        assertEquals(List.of("Chess", "Go"),
+                planner.fits(2, 30, null).map(BoardGame::getName).toList());
+        assertEquals(List.of("Tucano"), planner.fits(20, 90, "").map(BoardGame::getName).toList());
+        assertEquals(Set.of("golang", "GoRami"),
+                planner.fits(6, 70, "name~=go").map(BoardGame::getName).collect(Collectors.toSet()));
+        assertEquals(0, planner.fits(0, 60, null).count());
+
+        Set<BoardGame> many = copies(2_000);
+        many.add(new BoardGame("Unknown Time", 9, 2, 4, 0, 0, 2.0, 900, 6.0, 2010));
+        IPlanner large = new Planner(many);
+        for (int players = 0; players <= 25; players++) {
+            for (int minutes : new int[] {0, 20, 42, 60, 90, 999, 1000}) {
+                int p = players;
+                Set<BoardGame> expected = many.stream()
+                        .filter(g -> g.getMinPlayers() <= p && p <= g.getMaxPlayers())
+                        .filter(g -> {
+                            int longest = Math.max(g.getMinPlayTime(), g.getMaxPlayTime());
+                            return longest > 0 && longest <= minutes;
+                        }).collect(Collectors.toSet());
+                assertEquals(expected, large.fits(players, minutes, null)
+                        .collect(Collectors.toSet()), players + " players, " + minutes + " min");
+            }
+        }
+    }
+
+    // Test 24: the arena scheduler fills tables and slots within every game's limits.
+    @Test
+    public void testArenaScheduler() {
+        IPlanner planner = new Planner(games);
+        GameList list = new GameList();
+        list.addToList(IGameList.ADD_ALL, planner.filter(""));
+        assertEquals(list.getGameNames(),
+                list.getGames().stream().map(BoardGame::getName).toList());
+
+        ArenaScheduler scheduler = new ArenaScheduler(3, 12, 180, 30);
+        Schedule schedule = scheduler.schedule(list.getGames(), 200, 42);
+        assertEquals(6, schedule.getSlots());
+        boolean[][] used = new boolean[3][6];
+        for (Schedule.Session session : schedule.getSessions()) {
+            BoardGame game = session.getGame();
+            assertTrue(session.getPlayers() >= game.getMinPlayers()
+                    && session.getPlayers() <= game.getMaxPlayers(), session.toString());
+            int longest = Math.max(game.getMinPlayTime(), game.getMaxPlayTime());
+            assertTrue(session.getLength() * 30 >= longest, session.toString());
+            for (int slot = session.getFirstSlot(); slot < session.getFirstSlot()
+                    + session.getLength(); slot++) {
+                assertFalse(used[session.getTable()][slot], session.toString());
+                used[session.getTable()][slot] = true;
+            }
+            assertFalse(game.getName().equals("Monopoly")); // longer than the event
+        }
+        for (int slot = 0; slot < 6; slot++) {
+            assertTrue(schedule.getSeated(slot) <= 12);
+        }
+        assertTrue(schedule.getUtilization() > 0.8, schedule.toString());
+        assertThrows(IllegalArgumentException.class, () -> new ArenaScheduler(0, 12, 180, 30));
+    }
+
+    // Test 25: similarTo() and the vantage point tree return exactly the nearest games.
+    @Test
+    public void testSimilarTo() {
+        IPlanner planner = new Planner(games);
+        List<BoardGame> liked = planner.similarTo(" go ", 3);
+        assertEquals(3, liked.size());
+        assertFalse(liked.stream().anyMatch(g -> g.getName().equals("Go")));
+        assertEquals(List.of(), planner.similarTo("No Such Game", 3));
+        assertEquals(games.size() - 1, planner.similarTo("Chess", 100).size());
+
+        Random random = new Random(7);
+        List<BoardGame> many = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            // few distinct values, so many games are equally far apart
+            many.add(new BoardGame("g" + i, i, 1 + random.nextInt(4), 2 + random.nextInt(8),
+                    15 * random.nextInt(8), 15 * random.nextInt(12), random.nextInt(6),
+                    i, random.nextInt(11), 1990 + random.nextInt(30)));
+        }
+        SimilarityIndex index = new SimilarityIndex(many);
+        for (int query = 0; query < 5_000; query += 97) {
+            int q = query;
+            List<Integer> expected = IntStream.range(0, many.size())
+                    .filter(row -> row != q).boxed()
+                    .sorted(Comparator.comparingDouble((Integer row) -> index.distance(q, row))
+                            .thenComparingInt(row -> row))
+                    .limit(10).toList();
+            List<Integer> actual = Arrays.stream(index.nearest(new int[] {q}, 10)).boxed().toList();
+            assertEquals(expected, actual, "query " + q);
+        }
+    }
+
+    // Test 26: multi-key and weighted sorts match comparator chains, ties in name order.
+    @Test
+    public void testSortOrder() {
+        Set<BoardGame> many = copies(2_000);
+        IPlanner planner = new Planner(many);
+        Comparator<BoardGame> byName = Comparator
+                .comparing((BoardGame g) -> g.getName().trim(), String.CASE_INSENSITIVE_ORDER)
+                .thenComparingInt(BoardGame::getId);
+
+        SortOrder order = SortOrder.parse("maxPlayers desc, rating asc, name");
+        assertEquals(SortOrder.by(GameData.MAX_PLAYERS, false).then(GameData.RATING, true)
+                .then(GameData.NAME, true), order);
+        assertEquals(order, SortOrder.parse("maxplayersdesc,ratingasc,name"));
+        assertEquals(many.stream().filter(g -> g.getMinPlayers() >= 2)
+                .sorted(Comparator.comparingInt(BoardGame::getMaxPlayers).reversed()
+                        .thenComparingDouble(BoardGame::getRating).thenComparing(byName))
+                .toList(), planner.filter("minPlayers>=2", order).toList());
+
+        SortOrder weighted = SortOrder.weighted(Map.of(GameData.RATING, 2.0,
+                GameData.DIFFICULTY, -1.0), false);
+        assertEquals(many.stream()
+                .sorted(Comparator.comparingDouble((BoardGame g) -> 2 * g.getRating()
+                        - g.getDifficulty()).reversed().thenComparing(byName))
+                .toList(), planner.filter("", weighted).toList());
+
+        // single column sorts keep their order, equal values in name order
+        assertEquals(many.stream().sorted(Comparator.comparingInt(BoardGame::getMinPlayers)
+                .reversed().thenComparing(byName)).toList(),
+                planner.filter("", GameData.MIN_PLAYERS, false).toList());
+        assertThrows(IllegalArgumentException.class, () -> SortOrder.parse("rating, colour"));
+        assertThrows(IllegalArgumentException.class,
+                () -> SortOrder.weighted(Map.of(GameData.NAME, 1.0), true));
+    }
+
+    // Test 27: counting, radix and packed sorts agree with comparators on every size of key.
+    @Test
+    public void testSortPaths() {
+        Set<BoardGame> many = copies(5_000);
+        IPlanner planner = new Planner(many);
+        Comparator<BoardGame> byName = Comparator
+                .comparing((BoardGame g) -> g.getName().trim(), String.CASE_INSENSITIVE_ORDER)
+                .thenComparingInt(BoardGame::getId);
+        Map<String, Comparator<BoardGame>> orders = Map.of(
+                "year desc", Comparator.comparingInt(BoardGame::getYearPublished).reversed(),
+                "minPlayers, maxPlayTime desc", Comparator.comparingInt(BoardGame::getMinPlayers)
+                        .thenComparing(Comparator.comparingInt(BoardGame::getMaxPlayTime)
+                                .reversed()),
+                "rank desc, id", Comparator.comparingInt(BoardGame::getRank).reversed()
+                        .thenComparingInt(BoardGame::getId),
+                "id desc", Comparator.comparingInt(BoardGame::getId).reversed(),
+                "name desc", Comparator.comparing((BoardGame g) -> g.getName().trim(),
+                        String.CASE_INSENSITIVE_ORDER).reversed());
+        for (String filter : new String[] {"", "rank==100", "minPlayers>=2"}) {
+            for (Map.Entry<String, Comparator<BoardGame>> order : orders.entrySet()) {
+                Set<BoardGame> matches = planner.filter(filter).collect(Collectors.toSet());
+                assertEquals(matches.stream().sorted(order.getValue().thenComparing(byName))
+                        .toList(), planner.filter(filter, SortOrder.parse(order.getKey()))
+                        .toList(), filter + " sort:" + order.getKey());
+            }
+        }
+        // keys wide enough that the packed sort cannot also carry the row, and no match
+        for (String order : new String[] {"id, id desc, id, id", "rank desc, rating, year"}) {
+            assertEquals(List.of(), planner.filter("minPlayers>100", SortOrder.parse(order))
+                    .toList(), order);
+            String one = "name==" + many.iterator().next().getName();
+            assertEquals(1, planner.filter(one, SortOrder.parse(order)).count(), order);
+        }
+    }
+
+    // Test 28: a batch run times each command, skips comments and stops at exit.
+    @Test
+    public void testBatchMode() {
+        String script = "filter minPlayers>=2\n"
+                + "# a comment\n"
+                + "\n"
+                + "bogus\n"
+                + "list add 1\n"
+                + "exit\n"
+                + "filter\n";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ConsoleApp app = new ConsoleApp(new GameList(), new Planner(games),
+                new Scanner(script), new PrintStream(bytes, true), false);
+        BatchSummary summary = app.runBatch();
+
+        List<BatchSummary.Command> commands = summary.getCommands();
+        assertEquals(3, commands.size());
+        assertEquals(List.of(1, 4, 5), commands.stream().map(BatchSummary.Command::getLine)
+                .toList());
+        long twoPlus = new Planner(games).filter("minPlayers>=2").count();
+        assertEquals(twoPlus, commands.get(0).getRows());
+        assertTrue(commands.get(0).isOk());
+        assertFalse(commands.get(1).isOk());
+        assertTrue(commands.get(2).isOk());
+        assertEquals(1, summary.getFailed());
+        assertEquals(twoPlus, summary.getTotalRows());
+        assertEquals(3, summary.getLatency().getCount());
+        assertTrue(summary.toJson().startsWith("{\"commands\":3,\"failed\":1,"));
+        assertTrue(summary.toJson().contains("{\"line\":4,\"command\":\"bogus\","));
+
+        String output = bytes.toString();
+        assertTrue(output.startsWith("1: "));
+        assertFalse(output.contains(">"), "no prompts in batch mode");
+    }
+
+    // Test 29: the async planner runs identical queries once and turns away the overflow.
+    @Test
+    public void testAsyncPlanner() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Planner slow = new Planner(games) {
+            @Override
+            public Stream<BoardGame> filter(String filter) {
+                calls.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.filter(filter);
+            }
+        };
+        try (AsyncPlanner async = new AsyncPlanner(slow, 1, 2, 0)) {
+            CompletableFuture<QueryResult> first = async.filter("minPlayers>=2");
+            CompletableFuture<QueryResult> second = async.filter("minPlayers>=2");
+            CompletableFuture<QueryResult> other = async.filter("rank>300");
+            CompletableFuture<QueryResult> overflow = async.filter("year>2003");
+            assertEquals(1, async.getCoalesced());
+            assertEquals(1, async.getRejected());
+            assertEquals(2, async.getPending());
+            assertTrue(overflow.isCompletedExceptionally());
+            assertFalse(first.isDone());
+            // cancelling one caller's copy leaves the shared query running
+            second.cancel(true);
+
+            release.countDown();
+            List<BoardGame> expected = new Planner(games).filter("minPlayers>=2").toList();
+            assertEquals(expected, first.get(5, TimeUnit.SECONDS).getGames());
+            assertEquals(new Planner(games).filter("rank>300").toList(),
+                    other.get(5, TimeUnit.SECONDS).getGames());
+            assertEquals(2, calls.get());
+
+            // once finished, the same query runs again and sorts when asked
+            QueryResult sorted = async.filter("minPlayers>=2", SortOrder.parse("rating desc"))
+                    .get(5, TimeUnit.SECONDS);
+            assertEquals(new Planner(games).filter("minPlayers>=2", GameData.RATING, false)
+                    .toList(), sorted.getGames());
+            assertEquals(0, async.getPending());
+            assertThrows(ExecutionException.class, () -> overflow.get());
+        }
+    }
+
+    // Test 30: a sharded planner returns what a single planner does over the same games.
+    @Test
+    public void testShardedPlanner() {
+        Set<BoardGame> many = copies(5_000);
+        many.add(new BoardGame("Go", 90_001, 2, 2, 30, 30, 8.0, 50, 7.5, 2000));
+        many.add(new BoardGame(" go ", 90_002, 2, 4, 45, 60, 6.0, 0, 7.0, 1999));
+        String[] odd = {"Éclair", "eclair", "éclair", "Über", "uber", "\u212Aelvin", "kelvin",
+            "Zebra ", "zebra", "[brackets]", "_under"};
+        for (int i = 0; i < odd.length; i++) {
+            many.add(new BoardGame(odd[i], 91_000 + i, 2, 4, 30, 60, 2.0, 10 + i, 6.0, 2010));
+        }
+        IPlanner single = new Planner(many);
+        IPlanner sharded = new ShardedPlanner(many, 4);
+        assertEquals(many.stream().sorted(Comparator
+                .comparing((BoardGame g) -> g.getName().trim(), String.CASE_INSENSITIVE_ORDER)
+                .thenComparingInt(BoardGame::getId)).toList(), single.filter("").toList());
+
+        for (String filter : new String[] {"", "minPlayers>=2", "name~=go,rating>7", "rank==100"}) {
+            assertEquals(single.filter(filter).toList(), sharded.filter(filter).toList(), filter);
+            for (String order : new String[] {"rating desc", "year, difficulty desc", "name desc",
+                "id desc", "minPlayers, maxPlayTime desc, name"}) {
+                assertEquals(single.filter(filter, SortOrder.parse(order)).toList(),
+                        sharded.filter(filter, SortOrder.parse(order)).toList(),
+                        filter + " sort:" + order);
+            }
+            SortOrder weighted = SortOrder.weighted(
+                    Map.of(GameData.RATING, 2.0, GameData.DIFFICULTY, -1.0), false);
+            assertEquals(single.filter(filter, weighted).toList(),
+                    sharded.filter(filter, weighted).toList(), filter + " weighted");
+        }
+        assertEquals(single.fits(2, 45, "rating>7").toList(),
+                sharded.fits(2, 45, "rating>7").toList());
+        assertEquals(single.suggest("go", 10), sharded.suggest("go", 10));
+        assertEquals(single.suggest("", 25), sharded.suggest("", 25));
+        assertEquals(single.fuzzyMatch("golang 12", 2), sharded.fuzzyMatch("golang 12", 2));
+        assertEquals(single.similarTo("go", 15), sharded.similarTo("go", 15));
+        assertEquals(single.similarTo("chess 1", 5), sharded.similarTo("chess 1", 5));
+        assertTrue(sharded.similarTo("no such game", 5).isEmpty());
+
+        Map<GameData, Facet> expected = single.facets("minPlayers>=2", GameData.MAX_PLAYERS,
+                GameData.RATING);
+        Map<GameData, Facet> actual = sharded.facets("minPlayers>=2", GameData.MAX_PLAYERS,
+                GameData.RATING);
+        assertEquals(List.copyOf(expected.keySet()), List.copyOf(actual.keySet()));
+        for (GameData column : expected.keySet()) {
+            assertEquals(expected.get(column).getCount(), actual.get(column).getCount());
+            assertEquals(expected.get(column).getMean(), actual.get(column).getMean(), 1e-9);
+            assertEquals(expected.get(column).getBuckets().stream().map(b -> b.getCount())
+                    .toList(), actual.get(column).getBuckets().stream().map(b -> b.getCount())
+                    .toList());
+        }
+        assertTrue(sharded.explain("minPlayers>=2").startsWith("Shard 1 of 4"));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedPlanner(many, 0));
+    }
+
+    // Test 31: games kept off the heap come back as they went in, and query the same.
+    @Test
+    public void testOffHeapStorage() {
+        Set<BoardGame> many = copies(3_000);
+        many.add(new BoardGame(" Éclair ", 92_001, 1, 8, 5, 600, 4.75, 0, 9.125, -500));
+        many.add(new BoardGame("Kelvin 日本", 92_002, 2, 2, 0, 0, 0.0, 7, 0.0, 0));
+        IPlanner heap = new Planner(many, new PlannerMetrics(), Storage.HEAP);
+        IPlanner offHeap = new Planner(many, new PlannerMetrics(), Storage.OFF_HEAP);
+
+        for (String filter : new String[] {"", "minPlayers>=2", "name~=go,rating>7",
+            "rank==100", "difficulty<2.5,maxPlayTime>=60", "year in 2000|-500"}) {
+            assertEquals(heap.filter(filter).map(BoardGame::toString).toList(),
+                    offHeap.filter(filter).map(BoardGame::toString).toList(), filter);
+            for (String order : new String[] {"rating desc", "year, difficulty desc", "name desc",
+                "id desc"}) {
+                assertEquals(heap.filter(filter, SortOrder.parse(order)).toList(),
+                        offHeap.filter(filter, SortOrder.parse(order)).toList(),
+                        filter + " sort:" + order);
+            }
+            SortOrder weighted = SortOrder.weighted(
+                    Map.of(GameData.RATING, 2.0, GameData.DIFFICULTY, -1.0), false);
+            assertEquals(heap.filter(filter, weighted).toList(),
+                    offHeap.filter(filter, weighted).toList(), filter + " weighted");
+        }
+        assertEquals(heap.fits(2, 45, "rating>7").toList(),
+                offHeap.fits(2, 45, "rating>7").toList());
+        assertEquals(heap.suggest("éc", 10), offHeap.suggest("éc", 10));
+        assertEquals(heap.fuzzyMatch("golang 12", 2), offHeap.fuzzyMatch("golang 12", 2));
+        assertEquals(heap.similarTo("kelvin 日本", 5), offHeap.similarTo("kelvin 日本", 5));
+        assertEquals(heap.explain("minPlayers>=2"), offHeap.explain("minPlayers>=2"));
+        assertEquals(heap.facets("", GameData.RATING, GameData.YEAR).toString(),
+                offHeap.facets("", GameData.RATING, GameData.YEAR).toString());
+
+        assertEquals(Storage.OFF_HEAP, Storage.fromString("off-heap"));
+        assertEquals(Storage.HEAP, Storage.fromString(" Heap "));
+        assertThrows(IllegalArgumentException.class, () -> Storage.fromString("disk"));
+    }
+
+    // Test 32: indexes saved to an index file are mapped by the next table over the same
+    // games, and a file for other games, or a damaged one, is never used.
+    @Test
+    public void testIndexFile() throws IOException {
+        Path dir = tempDir.resolve("indexes");
+        Set<BoardGame> many = copies(2_000);
+        GameTable built = new GameTable(many, Storage.HEAP, dir);
+        assertNull(built.indexFile());
+        List<Path> files;
+        try (Stream<Path> listed = Files.list(dir)) {
+            files = listed.toList();
+        }
+        assertEquals(1, files.size());
+        assertTrue(files.get(0).getFileName().toString().startsWith("games-v" + IndexFile.VERSION));
+        assertEquals(files.get(0), new GameTable(many, Storage.HEAP, dir).indexFile());
+
+        IPlanner fresh = new Planner(many, null, Storage.HEAP, tempDir.resolve("other"));
+        IPlanner shared = new Planner(many, null, Storage.OFF_HEAP, dir);
+        for (String filter : new String[] {"", "rating>7", "year>=2000,minPlayers<=2",
+            "rank==100", "difficulty<2.5,name~=go"}) {
+            assertEquals(fresh.filter(filter, GameData.RATING, false).toList(),
+                    shared.filter(filter, GameData.RATING, false).toList(), filter);
+            assertEquals(fresh.explain(filter), shared.explain(filter), filter);
+        }
+        assertEquals(fresh.suggest("go", 10), shared.suggest("go", 10));
+        assertEquals(fresh.suggest("", 10), shared.suggest("", 10));
+        assertEquals(fresh.fuzzyMatch("golang 12", 2), shared.fuzzyMatch("golang 12", 2));
+        assertEquals(fresh.similarTo("go", 5), shared.similarTo("go", 5));
+
+        Set<BoardGame> more = new HashSet<>(many);
+        more.add(new BoardGame("Another", 95_000, 2, 4, 30, 60, 2.0, 1, 7.0, 2020));
+        assertNull(new GameTable(more, Storage.HEAP, dir).indexFile());
+        assertNotNull(new GameTable(more, Storage.HEAP, dir).indexFile());
+
+        Path file = files.get(0);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertNull(new GameTable(many, Storage.HEAP, dir).indexFile());
+        assertEquals(file, new GameTable(many, Storage.HEAP, dir).indexFile());
+
+        // "Aa" and "BB" share a hash code and a length, but not their indexes
+        Path names = tempDir.resolve("names");
+        Set<BoardGame> aa = Set.of(new BoardGame("Aa", 1, 2, 4, 30, 60, 2.0, 1, 7.0, 2020));
+        Set<BoardGame> bb = Set.of(new BoardGame("BB", 1, 2, 4, 30, 60, 2.0, 1, 7.0, 2020));
+        assertNull(new GameTable(aa, Storage.HEAP, names).indexFile());
+        assertNull(new GameTable(bb, Storage.HEAP, names).indexFile());
+        assertEquals("BB", new Planner(bb, null, Storage.HEAP, names).suggest("b", 1).get(0)
+                .getName());
+    }
+
+    // Test 33: a column's index is built in the background once enough conditions on it
+    // could use one, and filters switch to it.
+    @Test
+    public void testAdaptiveIndexes() throws InterruptedException {
+        Planner planner = new Planner(copies(5_000), null, Storage.HEAP, null);
+        planner.setIndexThreshold(3);
+        for (IndexStatus status : planner.indexStatus()) {
+            assertEquals(IndexStatus.State.NOT_BUILT, status.getState(), status.toString());
+        }
+        List<BoardGame> expected = planner.filter("rating>7").toList();
+        assertTrue(planner.explain("rating>7").contains("SCAN"));
+        planner.filter("minPlayers!=2").toList();
+        planner.filter("rating>7", GameData.NAME, false).toList();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (status(planner, GameData.RATING).getState() != IndexStatus.State.READY
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        IndexStatus rating = status(planner, GameData.RATING);
+        assertEquals(IndexStatus.State.READY, rating.getState(), rating.toString());
+        assertTrue(rating.getBuildNanos() > 0);
+        assertTrue(planner.explain("rating>7").contains("INDEX"));
+        assertEquals(expected, planner.filter("rating>7").toList());
+        assertEquals(5, status(planner, GameData.RATING).getQueries());
+        assertEquals(Map.of(Operations.GREATER_THAN, 5L),
+                status(planner, GameData.RATING).getOperations());
+        assertTrue(rating.toString().startsWith("RATING READY queries=3 >:3 built in "),
+                rating.toString());
+
+        IndexStatus minPlayers = status(planner, GameData.MIN_PLAYERS);
+        assertEquals(IndexStatus.State.NOT_BUILT, minPlayers.getState());
+        assertEquals(Map.of(Operations.NOT_EQUALS, 1L), minPlayers.getOperations());
+        assertEquals(0, status(planner, GameData.YEAR).getQueries());
+        assertThrows(IllegalArgumentException.class, () -> planner.setIndexThreshold(0));
+    }
+
+    /**
+     * Finds the index status of a column.
+     *
+     * @param planner the planner
+     * @param column  the column
+     * @return its status
+     */
+    private static IndexStatus status(Planner planner, GameData column) {
+        return planner.indexStatus().stream().filter(s -> s.getColumn() == column)
+                .findFirst().orElseThrow();
+    }
+
+    // Test 34: a saved list logs every change, replays it on opening, survives a torn
+    // write, and compacts its log into a snapshot.
+    @Test
+    public void testSavedGameList() throws IOException {
+        Path file = tempDir.resolve("lists").resolve("wishlist");
+        Set<BoardGame> many = copies(6_000);
+        List<BoardGame> sorted = many.stream()
+                .sorted(Comparator.comparing(BoardGame::getName)).toList();
+        try (GameList list = new GameList(file, many)) {
+            list.addToList("1-5", sorted.stream());
+            list.removeFromList("2");
+            list.addToList(sorted.get(10).getName(), sorted.stream());
+            assertThrows(IllegalArgumentException.class,
+                    () -> list.addToList("no such game", sorted.stream()));
+        }
+        List<String> expected;
+        try (GameList list = new GameList(file, many)) {
+            expected = list.getGameNames();
+            assertEquals(5, expected.size());
+            assertFalse(expected.contains(sorted.get(1).getName()));
+            assertTrue(expected.contains(sorted.get(10).getName()));
+        }
+
+        Path log = file.resolveSibling("wishlist.log");
+        Files.write(log, new byte[] {'A', 1, 2}, StandardOpenOption.APPEND);
+        long size = Files.size(log);
+        try (GameList list = new GameList(file, many)) {
+            assertEquals(expected, list.getGameNames());
+            assertEquals(size - 3, Files.size(log));
+            list.addToList("all", sorted.stream());
+            list.removeFromList("all");
+            list.addToList("all", sorted.stream());
+            assertEquals(many.size(), list.count());
+            assertTrue(Files.exists(file.resolveSibling("wishlist.snapshot")));
+            assertTrue(Files.size(log) <= 8 + 9L * many.size(), "log was not compacted");
+            list.removeFromList("1-10");
+        }
+        Set<BoardGame> fewer = new HashSet<>(sorted.subList(0, 20));
+        try (GameList list = new GameList(file, many)) {
+            assertEquals(sorted.subList(10, sorted.size()).stream().map(BoardGame::getName)
+                    .toList(), list.getGameNames());
+            list.clear();
+            list.addToList("1-12", sorted.stream());
+            list.compact();
+            assertEquals(8, Files.size(log));
+        }
+        try (GameList list = new GameList(file, fewer)) {
+            assertEquals(sorted.subList(0, 12).stream().map(BoardGame::getName).toList(),
+                    list.getGameNames());
+        }
+    }
+
+    // Test 35: writers on many threads share a registry of saved lists; lists closed to
+    // make room, or idle, are reopened from disk with every change; user names ignore case.
+    @Test
+    public void testGameListRegistry() throws Exception {
+        Path dir = tempDir.resolve("users");
+        List<BoardGame> sorted = copies(80).stream()
+                .sorted(Comparator.comparing(BoardGame::getName)).toList();
+        int threads = 8;
+        int users = 40;
+        CountDownLatch start = new CountDownLatch(1);
+        CompletableFuture<?>[] writers = new CompletableFuture<?>[threads];
+        try (GameListRegistry registry = new GameListRegistry(dir, sorted, 5, 4)) {
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                writers[t] = CompletableFuture.runAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int g = first; g < sorted.size(); g += threads) {
+                        for (int u = 0; u < users; u++) {
+                            registry.addToList("user" + u, "1", Stream.of(sorted.get(g)));
+                        }
+                    }
+                }, command -> new Thread(command).start());
+            }
+            start.countDown();
+            CompletableFuture.allOf(writers).get(60, TimeUnit.SECONDS);
+            assertTrue(registry.getOpenCount() <= 5);
+            assertTrue(registry.getEvicted() > 0);
+            for (int u = 0; u < users; u++) {
+                assertEquals(sorted.size(), registry.count("user" + u));
+            }
+            registry.removeFromList("user0", "1-10");
+            assertThrows(IllegalArgumentException.class,
+                    () -> registry.count("../user0"));
+            assertThrows(IllegalArgumentException.class,
+                    () -> registry.removeFromList("user1", "no such game"));
+            assertEquals(registry.getOpenCount(), registry.evictIdle(Duration.ZERO));
+            assertEquals(0, registry.getOpenCount());
+        }
+        GameListRegistry registry = new GameListRegistry(dir, sorted, 5);
+        try {
+            assertEquals(sorted.subList(10, sorted.size()).stream().map(BoardGame::getName)
+                    .toList(), registry.getGameNames("user0"));
+            assertEquals(sorted.size(), registry.count("user" + (users - 1)));
+            registry.addToList("Alice", "1", Stream.of(sorted.get(0)));
+            registry.addToList("alice", "1", Stream.of(sorted.get(1)));
+            assertEquals(List.of(sorted.get(0).getName(), sorted.get(1).getName()),
+                    registry.getGameNames("ALICE"));
+            assertTrue(Files.exists(dir.resolve("alice.log")));
+            for (String reserved : List.of("con", "NUL", "Aux", "com1", "lpt9")) {
+                assertThrows(IllegalArgumentException.class, () -> registry.count(reserved));
+            }
+        } finally {
+            registry.close();
+        }
+        assertThrows(IllegalStateException.class, () -> registry.count("user0"));
+        registry.close(); // closing again does nothing
+        assertThrows(IllegalStateException.class, () -> registry.count("user0"));
+    }
+
+    // Test 36: the console prints games as toStringWithInfo does for every sort column, and
+    // the pager reads no further after q.
+    @Test
+    public void testConsoleOutput() {
+        String nl = System.lineSeparator();
+        for (GameData column : GameData.values()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new ConsoleApp(new GameList(), new Planner(games),
+                    new Scanner("filter minPlayers>=1 sort:" + column.getColumnName()
+                            + " desc" + nl),
+                    new PrintStream(bytes, true), false).runBatch();
+            List<BoardGame> expected = new Planner(games)
+                    .filter("minPlayers>=1", column, false).toList();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < expected.size(); i++) {
+                sb.append(i + 1).append(": ").append(expected.get(i).toStringWithInfo(column))
+                        .append(nl);
+            }
+            assertEquals(sb.toString(), bytes.toString(), column.toString());
+        }
+
+        AtomicInteger read = new AtomicInteger();
+        Planner counting = new Planner(games) {
+            @Override
+            public Stream<BoardGame> filter(String filter) {
+                return super.filter(filter).peek(game -> read.incrementAndGet());
+            }
+        };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ConsoleApp(new GameList(), counting,
+                new Scanner("page 2" + nl + "filter" + nl + "q" + nl + "exit" + nl),
+                new PrintStream(bytes, true), true).start();
+        String output = bytes.toString();
+        assertTrue(output.contains("2: "), output);
+        assertFalse(output.contains("3: "), output);
+        // the pager looks one game ahead to know whether to ask for more
+        assertEquals(3, read.get());
+    }
 }